@@ -0,0 +1,58 @@
+package org.fusesource.lmdbjni;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+
+/**
+ * Write path of {@link BufferCursor}. Run with -prof gc, the
+ * gc.alloc.rate.norm of each benchmark should be 0 bytes per op.
+ */
+@Measurement(iterations = 5)
+@Warmup(iterations = 10)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class BufferCursorPut {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  Env env;
+  Database db;
+  Transaction tx;
+  BufferCursor cursor;
+  long counter;
+
+  @org.openjdk.jmh.annotations.Setup(Level.Iteration)
+  public void open() {
+    File dir = new File("/tmp/lmdb-put");
+    Setup.recreateDir(dir);
+    env = new Env();
+    env.setMapSize(4_294_967_296L);
+    env.open(dir.getAbsolutePath(), Constants.NOSYNC);
+    db = env.openDatabase("test");
+    tx = env.createWriteTransaction();
+    cursor = db.bufferCursor(tx);
+    counter = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void close() {
+    cursor.close();
+    tx.commit();
+    db.close();
+    env.close();
+  }
+
+  @Benchmark
+  public void append() {
+    long k = counter++;
+    cursor.keyWriteLong(k).valWriteLong(k).append();
+  }
+
+  @Benchmark
+  public boolean overwrite() {
+    long k = Long.reverse(counter++);
+    return cursor.keyWriteLong(k).valWriteLong(k).overwrite();
+  }
+}
@@ -0,0 +1,90 @@
+package org.fusesource.lmdbjni;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Comparator;
+
+/**
+ * Insert throughput with a custom comparator. Run on the previous commit with
+ * the byte_array and direct params to get the numbers before the comparator
+ * bridge stopped allocating per comparison, and add -prof gc to see the
+ * allocation rate.
+ */
+@Measurement(iterations = 5)
+@Warmup(iterations = 10)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class ComparatorInsert {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Param({"byte_array", "direct", "key", "native"})
+  String comparator;
+
+  Env env;
+  Database db;
+  Transaction tx;
+  DirectBuffer key = new DirectBuffer(ByteBuffer.allocateDirect(8));
+  DirectBuffer value = new DirectBuffer(ByteBuffer.allocateDirect(8));
+  long counter;
+
+  @org.openjdk.jmh.annotations.Setup(Level.Iteration)
+  public void open() {
+    File dir = new File("/tmp/lmdb-comparator");
+    Setup.recreateDir(dir);
+    env = new Env();
+    env.setMapSize(4_294_967_296L);
+    env.open(dir.getAbsolutePath(), Constants.NOSYNC);
+    db = env.openDatabase("test");
+    tx = env.createWriteTransaction();
+    if ("byte_array".equals(comparator)) {
+      db.setComparator(tx, new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] key1, byte[] key2) {
+          return Long.compare(Bytes.getLong(key1), Bytes.getLong(key2));
+        }
+      });
+    } else if ("direct".equals(comparator)) {
+      db.setDirectComparator(tx, new Comparator<DirectBuffer>() {
+        @Override
+        public int compare(DirectBuffer key1, DirectBuffer key2) {
+          return Long.compare(key1.getLong(0, ByteOrder.BIG_ENDIAN), key2.getLong(0, ByteOrder.BIG_ENDIAN));
+        }
+      });
+    } else if ("key".equals(comparator)) {
+      final DirectBuffer key1 = new DirectBuffer();
+      final DirectBuffer key2 = new DirectBuffer();
+      db.setKeyComparator(tx, new KeyComparator() {
+        @Override
+        public int compare(long addressA, int lengthA, long addressB, int lengthB) {
+          key1.wrap(addressA, lengthA);
+          key2.wrap(addressB, lengthB);
+          return Long.compare(key1.getLong(0, ByteOrder.BIG_ENDIAN), key2.getLong(0, ByteOrder.BIG_ENDIAN));
+        }
+      });
+    } else {
+      db.setNativeComparator(tx, NativeComparator.SIGNED_LONG_BE);
+    }
+    counter = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void close() {
+    tx.commit();
+    db.close();
+    env.close();
+  }
+
+  @Benchmark
+  public void insert() {
+    // scramble the insert order so each put descends the tree
+    long k = Long.reverse(counter++);
+    key.putLong(0, k, ByteOrder.BIG_ENDIAN);
+    value.putLong(0, k);
+    db.put(tx, key, value);
+  }
+}
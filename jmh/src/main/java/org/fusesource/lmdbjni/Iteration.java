@@ -66,6 +66,26 @@ public class Iteration extends Setup {
       bufferCursor.valLong(0);
     }
   }
+
+  static BufferCursor batchCursor;
+  static int batchIndex;
+
+  @Benchmark
+  public void lmdb_zero_copy_batch() {
+    if (batchCursor == null) {
+      batchCursor = database.bufferCursor(env.createReadTransaction());
+    }
+    if (batchIndex >= batchCursor.batchSize()) {
+      batchIndex = 0;
+      if (batchCursor.nextBatch(256) == 0) {
+        batchCursor.firstBatch(256);
+      }
+    }
+    batchCursor.batchKey(batchIndex).getLong(0);
+    batchCursor.batchVal(batchIndex).getLong(0);
+    batchIndex++;
+  }
+
   static AtomicInteger counter = new AtomicInteger(0);
   static byte[] bytes = null;
 
@@ -0,0 +1,83 @@
+package org.fusesource.lmdbjni;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+
+/**
+ * Random lookups of long ids through {@link LongLongStore} compared with
+ * big endian byte[] keys and values through {@link Database#get(Transaction, byte[])}.
+ * Run with -prof gc to compare the allocation rate.
+ */
+@Measurement(iterations = 5)
+@Warmup(iterations = 10)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class LongLongGet {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  static final int SIZE = 1_000_000;
+  static final int BATCH = 64;
+
+  Env env;
+  Database bytes;
+  LongLongStore longs;
+  Transaction tx;
+  long[] keys = new long[BATCH];
+  long[] values = new long[BATCH];
+  long counter;
+
+  @org.openjdk.jmh.annotations.Setup(Level.Trial)
+  public void open() {
+    File dir = new File("/tmp/lmdb-longlong");
+    Setup.recreateDir(dir);
+    env = new Env();
+    env.setMapSize(4_294_967_296L);
+    env.setMaxDbs(2);
+    env.open(dir.getAbsolutePath(), Constants.NOSYNC);
+    bytes = env.openDatabase("bytes");
+    longs = new LongLongStore(env.openDatabase("longs", Constants.CREATE | Constants.INTEGERKEY));
+    try (Transaction tx = env.createWriteTransaction()) {
+      for (long i = 0; i < SIZE; i++) {
+        bytes.put(tx, Bytes.fromLong(i), Bytes.fromLong(i));
+        longs.append(tx, i, i);
+      }
+      tx.commit();
+    }
+    tx = env.createReadTransaction();
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    tx.abort();
+    bytes.close();
+    longs.getDatabase().close();
+    env.close();
+  }
+
+  private long nextKey() {
+    // spread lookups over the whole key space
+    return (counter++ * 0x9E3779B97F4A7C15L >>> 1) % SIZE;
+  }
+
+  @Benchmark
+  public long byteArray() {
+    return Bytes.getLong(bytes.get(tx, Bytes.fromLong(nextKey())));
+  }
+
+  @Benchmark
+  public long longLong() {
+    return longs.get(tx, nextKey(), -1);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public int longLongBatch() {
+    for (int i = 0; i < BATCH; i++) {
+      keys[i] = nextKey();
+    }
+    return longs.getBatch(tx, keys, values, BATCH, -1);
+  }
+}
@@ -0,0 +1,561 @@
+package org.fusesource.lmdbjni;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.fusesource.lmdbjni.JNI.MDB_NOTFOUND;
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
+import static org.fusesource.lmdbjni.Util.checkErrorCode;
+
+/**
+ * <p>
+ * Stores large objects split into fixed size chunks.
+ * </p>
+ *
+ * A value too large for a page is stored on its own run of contiguous
+ * overflow pages, which fragments the freelist and slows down compacting
+ * copies. A blob store keeps every chunk small enough to stay on a leaf
+ * page by default, so blobs are made of ordinary pages, and a range read
+ * only touches the chunks it needs.
+ * <p>
+ * A blob with id {@code blobId} is stored as a header under the 8 byte big
+ * endian key {@code blobId}, holding its length and chunk size, followed
+ * by its chunks under 12 byte keys of {@code blobId} and the big endian
+ * chunk number. The database should not be used for anything else and
+ * must use the default key order.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * BlobStore blobs = new BlobStore(db);
+ * try (Transaction tx = env.createWriteTransaction()) {
+ *   try (OutputStream out = blobs.openOutputStream(tx, 7)) {
+ *     Files.copy(path, out);
+ *   }
+ *   tx.commit();
+ * }
+ * try (Transaction tx = env.createReadTransaction();
+ *      InputStream in = blobs.openInputStream(tx, 7, offset, length)) {
+ *   ...
+ * }
+ * }
+ * </pre>
+ */
+public class BlobStore {
+  private static final int HEADER_SIZE = 12;
+  private static final int CHUNK_KEY_SIZE = 12;
+
+  /** header key and value of the calling thread */
+  private static final ThreadLocal<HeaderBuffers> HEADER_BUFFERS = new ThreadLocal<HeaderBuffers>() {
+    @Override
+    protected HeaderBuffers initialValue() {
+      return new HeaderBuffers();
+    }
+  };
+
+  private final Database db;
+  private final int chunkSize;
+
+  private static final class HeaderBuffers {
+    final DirectBuffer key = new DirectBuffer(ByteBuffer.allocateDirect(8));
+    final DirectBuffer value = new DirectBuffer(0, 0);
+  }
+
+  /**
+   * Create a store with the largest chunk size that fits on a leaf page.
+   *
+   * @param db database to store blobs in
+   */
+  public BlobStore(Database db) {
+    this(db, defaultChunkSize(db));
+  }
+
+  private static int defaultChunkSize(Database db) {
+    checkArgNotNull(db, "db");
+    return maxInlineChunkSize(db.env.stat().ms_psize);
+  }
+
+  /**
+   * @param db database to store blobs in
+   * @param chunkSize size of the chunks new blobs are split into. Larger
+   *                  chunks than {@link #maxInlineChunkSize(long)} are
+   *                  stored on overflow pages.
+   */
+  public BlobStore(Database db, int chunkSize) {
+    checkArgNotNull(db, "db");
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    this.db = db;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * @param pageSize page size of the environment
+   * @return the largest chunk that is stored on a leaf page rather than
+   * on overflow pages, which is a little less than half a page.
+   */
+  public static int maxInlineChunkSize(long pageSize) {
+    // see mdb_leaf_size, nodes larger than me_nodemax go to overflow pages
+    long nodeMax = (((pageSize - 16) / 2) & -2) - 2;
+    return (int) (nodeMax - 8 - CHUNK_KEY_SIZE);
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public Database getDatabase() {
+    return db;
+  }
+
+  /**
+   * @param tx transaction handle
+   * @param blobId id of the blob
+   * @return the length of the blob in bytes, or -1 if it does not exist.
+   */
+  public long length(Transaction tx, long blobId) {
+    checkArgNotNull(tx, "tx");
+    DirectBuffer header = header(tx, blobId);
+    return header == null ? -1 : header.getLong(0, ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * <p>
+   * Write a blob of any length, replacing the blob if it exists.
+   * </p>
+   *
+   * Chunks are stored as they fill up and the blob becomes visible when
+   * the stream is closed, which must happen before the transaction is
+   * committed.
+   *
+   * @param tx write transaction handle
+   * @param blobId id of the blob
+   * @return a stream to write the blob to.
+   */
+  public OutputStream openOutputStream(Transaction tx, long blobId) {
+    checkArgNotNull(tx, "tx");
+    delete(tx, blobId);
+    return new BlobOutputStream(tx, blobId);
+  }
+
+  /**
+   * @see #openInputStream(Transaction, long, long, long)
+   */
+  public InputStream openInputStream(Transaction tx, long blobId) {
+    return openInputStream(tx, blobId, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Read a range of a blob, touching only the chunks that hold it. The
+   * stream must be closed and is only valid until the transaction ends.
+   *
+   * @param tx transaction handle
+   * @param blobId id of the blob
+   * @param offset byte offset in the blob to start reading at
+   * @param length maximum number of bytes to read
+   * @return a stream of the range, cut short at the end of the blob, or
+   * null if the blob does not exist.
+   */
+  public InputStream openInputStream(Transaction tx, long blobId, long offset, long length) {
+    checkArgNotNull(tx, "tx");
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("offset and length must not be negative");
+    }
+    DirectBuffer header = header(tx, blobId);
+    if (header == null) {
+      return null;
+    }
+    long blobLength = header.getLong(0, ByteOrder.BIG_ENDIAN);
+    int blobChunkSize = header.getInt(8, ByteOrder.BIG_ENDIAN);
+    long end = Math.min(blobLength, offset + Math.min(length, Long.MAX_VALUE - offset));
+    return new BlobInputStream(tx, blobId, blobChunkSize, Math.min(offset, end), end);
+  }
+
+  /**
+   * Copy a range of a blob into an array.
+   *
+   * @param tx transaction handle
+   * @param blobId id of the blob
+   * @param offset byte offset in the blob to start reading at
+   * @param dst array to copy the bytes into
+   * @param dstOffset index in dst to copy to
+   * @param length maximum number of bytes to copy
+   * @return the number of bytes copied, which is less than length at the
+   * end of the blob, or -1 if the blob does not exist.
+   */
+  public int read(Transaction tx, long blobId, long offset, byte[] dst, int dstOffset, int length) {
+    checkArgNotNull(dst, "dst");
+    if (dstOffset < 0 || length < 0 || length > dst.length - dstOffset) {
+      throw new IndexOutOfBoundsException();
+    }
+    try (InputStream in = openInputStream(tx, blobId, offset, length)) {
+      if (in == null) {
+        return -1;
+      }
+      int count = 0;
+      for (int n; count < length && (n = in.read(dst, dstOffset + count, length - count)) > 0; ) {
+        count += n;
+      }
+      return count;
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param tx write transaction handle
+   * @param blobId id of the blob
+   * @return true if the blob existed and was deleted.
+   */
+  public boolean delete(Transaction tx, long blobId) {
+    checkArgNotNull(tx, "tx");
+    boolean found = false;
+    try (BufferCursor cursor = db.bufferCursor(tx)) {
+      cursor.keyWriteLong(blobId);
+      for (boolean more = cursor.seekRange(); more && isBlobKey(cursor, blobId); more = cursor.next()) {
+        cursor.delete();
+        found = true;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * <p>
+   * Fault the pages of a range of a blob into memory in parallel, ahead of
+   * a sequential read of the range.
+   * </p>
+   *
+   * The chunks are split into contiguous slices, each walked in its own
+   * read transaction on the executor. A slice whose transaction sees
+   * another length or chunk size of the blob, because the blob was
+   * replaced in between, touches nothing. The call returns once every
+   * slice is done.
+   *
+   * @param blobId id of the blob
+   * @param offset byte offset in the blob the range starts at
+   * @param length length of the range
+   * @param executor runs the slices
+   * @param parallelism number of slices
+   * @return the number of chunks touched.
+   */
+  public long prefetch(final long blobId, long offset, long length, ExecutorService executor, int parallelism)
+    throws InterruptedException {
+    checkArgNotNull(executor, "executor");
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("offset and length must not be negative");
+    }
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    final Env env = db.env;
+    final long blobLength;
+    final int blobChunkSize;
+    try (Transaction tx = env.createReadTransaction()) {
+      DirectBuffer header = header(tx, blobId);
+      if (header == null) {
+        return 0;
+      }
+      blobLength = header.getLong(0, ByteOrder.BIG_ENDIAN);
+      blobChunkSize = header.getInt(8, ByteOrder.BIG_ENDIAN);
+    }
+    long end = Math.min(blobLength, offset + Math.min(length, Long.MAX_VALUE - offset));
+    if (offset >= end) {
+      return 0;
+    }
+    final int stride = (int) env.stat().ms_psize;
+    long firstChunk = offset / blobChunkSize;
+    long chunks = (end - 1) / blobChunkSize + 1 - firstChunk;
+    long perSlice = (chunks + parallelism - 1) / parallelism;
+    List<Future<Long>> futures = new ArrayList<>();
+    for (long from = firstChunk; from < firstChunk + chunks; from += perSlice) {
+      final int first = (int) from;
+      final int last = (int) Math.min(from + perSlice, firstChunk + chunks) - 1;
+      futures.add(executor.submit(new Callable<Long>() {
+        @Override
+        public Long call() {
+          return touch(env, blobId, blobLength, blobChunkSize, first, last, stride);
+        }
+      }));
+    }
+    long touched = 0;
+    try {
+      for (Future<Long> future : futures) {
+        touched += future.get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      for (Future<Long> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return touched;
+  }
+
+  /** keeps the JIT from dropping the reads of a prefetch */
+  private static volatile int sink;
+
+  private long touch(Env env, long blobId, long blobLength, int blobChunkSize, int first, int last, int stride) {
+    long touched = 0;
+    int sum = 0;
+    try (Transaction tx = env.createReadTransaction();
+         BufferCursor cursor = db.bufferCursor(tx)) {
+      DirectBuffer header = header(tx, blobId);
+      if (header == null || header.getLong(0, ByteOrder.BIG_ENDIAN) != blobLength
+        || header.getInt(8, ByteOrder.BIG_ENDIAN) != blobChunkSize) {
+        // the chunks no longer belong to the planned version of the blob
+        return 0;
+      }
+      cursor.keyWriteLong(blobId).keyWriteInt(first);
+      for (boolean more = cursor.seekKey(); more && isChunkKey(cursor, blobId); more = cursor.next()) {
+        if (cursor.keyInt(8) > last) {
+          break;
+        }
+        DirectBuffer value = cursor.valDirectBuffer();
+        for (int i = 0; i < value.capacity(); i += stride) {
+          sum += value.getByte(i);
+        }
+        touched++;
+      }
+    }
+    sink += sum;
+    return touched;
+  }
+
+  /**
+   * @return the header, wrapped by a buffer of the calling thread until its
+   * next call, or null if the blob does not exist.
+   */
+  private DirectBuffer header(Transaction tx, long blobId) {
+    HeaderBuffers buffers = HEADER_BUFFERS.get();
+    DirectBuffer key = buffers.key;
+    key.putLong(0, blobId, ByteOrder.BIG_ENDIAN);
+    DirectBuffer value = buffers.value;
+    int rc = db.get(tx, key, value);
+    if (rc == MDB_NOTFOUND) {
+      return null;
+    }
+    checkErrorCode(rc);
+    if (value.capacity() != HEADER_SIZE) {
+      throw new IllegalStateException("Bad header of blob " + blobId);
+    }
+    return value;
+  }
+
+  private static boolean isBlobKey(BufferCursor cursor, long blobId) {
+    int length = cursor.keyLength();
+    return (length == 8 || length == CHUNK_KEY_SIZE) && cursor.keyLong(0) == blobId;
+  }
+
+  private static boolean isChunkKey(BufferCursor cursor, long blobId) {
+    return cursor.keyLength() == CHUNK_KEY_SIZE && cursor.keyLong(0) == blobId;
+  }
+
+  /**
+   * Collects a chunk at a time and reserves space for it once it is full.
+   */
+  private class BlobOutputStream extends OutputStream {
+    private final Transaction tx;
+    private final long blobId;
+    private final DirectBuffer key = new DirectBuffer(ByteBuffer.allocateDirect(CHUNK_KEY_SIZE));
+    private final DirectBuffer value = new DirectBuffer(0, 0);
+    private final byte[] chunk = new byte[chunkSize];
+    private int chunkLength;
+    private int chunkNo;
+    private long length;
+    private boolean open = true;
+
+    BlobOutputStream(Transaction tx, long blobId) {
+      this.tx = tx;
+      this.blobId = blobId;
+      key.putLong(0, blobId, ByteOrder.BIG_ENDIAN);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      checkOpen();
+      chunk[chunkLength++] = (byte) b;
+      length++;
+      if (chunkLength == chunk.length) {
+        flushChunk();
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      checkOpen();
+      if (off < 0 || len < 0 || len > b.length - off) {
+        throw new IndexOutOfBoundsException();
+      }
+      while (len > 0) {
+        int n = Math.min(len, chunk.length - chunkLength);
+        System.arraycopy(b, off, chunk, chunkLength, n);
+        chunkLength += n;
+        length += n;
+        off += n;
+        len -= n;
+        if (chunkLength == chunk.length) {
+          flushChunk();
+        }
+      }
+    }
+
+    /**
+     * Store the last chunk and the header.
+     */
+    @Override
+    public void close() throws IOException {
+      if (!open) {
+        return;
+      }
+      open = false;
+      if (chunkLength > 0) {
+        flushChunk();
+      }
+      DirectBuffer header = new DirectBuffer(key.addressOffset(), 8);
+      checkErrorCode(db.reserve(tx, header, HEADER_SIZE, 0, value));
+      value.putLong(0, length, ByteOrder.BIG_ENDIAN);
+      value.putInt(8, chunkSize, ByteOrder.BIG_ENDIAN);
+    }
+
+    private void flushChunk() {
+      key.putInt(8, chunkNo++, ByteOrder.BIG_ENDIAN);
+      checkErrorCode(db.reserve(tx, key, chunkLength, 0, value));
+      value.putBytes(0, chunk, 0, chunkLength);
+      chunkLength = 0;
+    }
+
+    private void checkOpen() throws IOException {
+      if (!open) {
+        throw new ClosedChannelException();
+      }
+    }
+  }
+
+  /**
+   * Walks the chunks of a range with a cursor, starting with a seek to the
+   * first chunk of the range.
+   */
+  private class BlobInputStream extends InputStream {
+    private final BufferCursor cursor;
+    private final long blobId;
+    private final int blobChunkSize;
+    private final long end;
+    private long position;
+    private DirectBuffer chunk;
+    private int chunkPosition;
+    private boolean open = true;
+
+    BlobInputStream(Transaction tx, long blobId, int blobChunkSize, long position, long end) {
+      this.cursor = db.bufferCursor(tx);
+      this.blobId = blobId;
+      this.blobChunkSize = blobChunkSize;
+      this.position = position;
+      this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!nextChunk()) {
+        return -1;
+      }
+      position++;
+      return chunk.getByte(chunkPosition++) & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (off < 0 || len < 0 || len > b.length - off) {
+        throw new IndexOutOfBoundsException();
+      }
+      if (len == 0) {
+        return 0;
+      }
+      if (!nextChunk()) {
+        return -1;
+      }
+      int n = (int) Math.min(Math.min(len, chunk.capacity() - chunkPosition), end - position);
+      chunk.getBytes(chunkPosition, b, off, n);
+      chunkPosition += n;
+      position += n;
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      if (!open) {
+        throw new ClosedChannelException();
+      }
+      long skipped = Math.max(0, Math.min(n, end - position));
+      if (chunk != null) {
+        long inChunk = chunk.capacity() - chunkPosition;
+        if (skipped < inChunk) {
+          chunkPosition += skipped;
+        } else {
+          // seek to the chunk of the new position rather than walking to it
+          chunk = null;
+        }
+      }
+      position += skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return chunk == null ? 0 : (int) Math.min(chunk.capacity() - chunkPosition, end - position);
+    }
+
+    @Override
+    public void close() {
+      if (open) {
+        open = false;
+        cursor.close();
+      }
+    }
+
+    /**
+     * @return true if there are bytes left in the current chunk, moving to
+     * the next chunk of the range if needed.
+     */
+    private boolean nextChunk() throws IOException {
+      if (!open) {
+        throw new ClosedChannelException();
+      }
+      if (position >= end) {
+        return false;
+      }
+      if (chunk != null && chunkPosition < chunk.capacity()) {
+        return true;
+      }
+      int chunkNo = (int) (position / blobChunkSize);
+      boolean found;
+      if (chunk == null) {
+        cursor.keyWriteLong(blobId).keyWriteInt(chunkNo);
+        found = cursor.seekKey();
+      } else {
+        found = cursor.next() && isChunkKey(cursor, blobId) && cursor.keyInt(8) == chunkNo;
+      }
+      if (!found) {
+        throw new IOException("Chunk " + chunkNo + " of blob " + blobId + " is missing");
+      }
+      chunk = cursor.valDirectBuffer();
+      chunkPosition = (int) (position - (long) chunkNo * blobChunkSize);
+      return true;
+    }
+  }
+}
@@ -2,8 +2,10 @@ package org.fusesource.lmdbjni;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.fusesource.lmdbjni.JNI.mdb_strerror;
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
 
 /**
  * Cursor mode that allow for zero-copy lookup, navigation and modification
@@ -127,6 +129,17 @@ public class BufferCursor implements AutoCloseable {
   private int keyWriteIndex = 0;
   private int valWriteIndex = 0;
   private boolean validPosition = false;
+  private DirectBuffer batchTable;
+  private final DirectBuffer batchKey = new DirectBuffer(0, 0);
+  private final DirectBuffer batchVal = new DirectBuffer(0, 0);
+  private int batchSize = 0;
+  private boolean batchKeysOnly = false;
+  private int dupFixedSize = 0;
+  private TupleWriter keyTupleWriter;
+  private TupleReader keyTupleReader;
+  CursorCache cache;
+  /** set by the close that releases the cursor to its cache */
+  final AtomicBoolean cached = new AtomicBoolean();
 
   BufferCursor(Cursor cursor, DirectBuffer key, DirectBuffer value) {
     this.cursor = cursor;
@@ -229,6 +242,35 @@ public class BufferCursor implements AutoCloseable {
     return rc == 0;
   }
 
+  /**
+   * Position at the first key/data item of a range. Move through the range
+   * with {@link BufferCursor#next(KeyRange)}.
+   *
+   * @param range keys to iterate over and their order
+   * @return true if found
+   */
+  public boolean first(KeyRange range) {
+    checkArgNotNull(range, "range");
+    int rc = cursor.positionRange(key, value, range, true);
+    setDatabaseMemoryLocation(rc);
+    return rc == 0;
+  }
+
+  /**
+   * Position at the next key/data item of a range, in the direction of the
+   * range. The stop bound is checked natively so no item outside of the
+   * range is returned.
+   *
+   * @param range the range passed to {@link BufferCursor#first(KeyRange)}
+   * @return true if found, false once the range is exhausted.
+   */
+  public boolean next(KeyRange range) {
+    checkArgNotNull(range, "range");
+    int rc = cursor.positionRange(key, value, range, false);
+    setDatabaseMemoryLocation(rc);
+    return rc == 0;
+  }
+
   /**
    * Position at first data item of current key. Only for
    * {@link org.fusesource.lmdbjni.Constants#DUPSORT}.
@@ -311,6 +353,361 @@ public class BufferCursor implements AutoCloseable {
     return rc == 0;
   }
 
+  /**
+   * <p>
+   * Return up to a page of duplicate data items from the current cursor
+   * position. Only for {@link org.fusesource.lmdbjni.Constants#DUPFIXED}.
+   * </p>
+   *
+   * The value buffer is set to the page of fixed size duplicates, which are
+   * accessed with {@link BufferCursor#dupFixedCount()} and
+   * {@link BufferCursor#dupFixedLong(int)} without copying. Move to the
+   * following pages of the same key with {@link BufferCursor#nextMultiple()}.
+   *
+   * <pre>
+   * {@code
+   * cursor.keyWriteBytes(key);
+   * if (cursor.seekKey() && cursor.getMultiple()) {
+   *   do {
+   *     for (int i = 0; i < cursor.dupFixedCount(); i++) {
+   *       cursor.dupFixedLong(i);
+   *     }
+   *   } while (cursor.nextMultiple());
+   * }
+   * }
+   * </pre>
+   *
+   * @return true if found
+   */
+  public boolean getMultiple() {
+    return multiple(GetOp.GET_MULTIPLE);
+  }
+
+  /**
+   * Return up to a page of duplicate data items from the next cursor
+   * position of the current key. Only for {@link org.fusesource.lmdbjni.Constants#DUPFIXED}.
+   *
+   * @return true if found
+   * @see org.fusesource.lmdbjni.BufferCursor#getMultiple()
+   */
+  public boolean nextMultiple() {
+    return multiple(GetOp.NEXT_MULTIPLE);
+  }
+
+  /**
+   * @return number of duplicates in the page returned by the last
+   * {@link BufferCursor#getMultiple()} or {@link BufferCursor#nextMultiple()},
+   * or <code>0</code> if the cursor was moved since.
+   */
+  public int dupFixedCount() {
+    if (!validPosition || dupFixedSize == 0) {
+      return 0;
+    }
+    return value.capacity() / dupFixedSize;
+  }
+
+  /**
+   * @return size of each duplicate in the current page, or <code>0</code>
+   * if the cursor was moved since.
+   */
+  public int dupFixedSize() {
+    return validPosition ? dupFixedSize : 0;
+  }
+
+  /**
+   * Get a long from a duplicate in the current page in big endian.
+   *
+   * @param index duplicate index, less than {@link BufferCursor#dupFixedCount()}.
+   * @return the long value
+   */
+  public long dupFixedLong(int index) {
+    return dupFixedLong(index, ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * Get a long from a duplicate in the current page.
+   *
+   * @param index duplicate index, less than {@link BufferCursor#dupFixedCount()}.
+   * @param byteOrder byte order of the stored long, native order for
+   *                  {@link org.fusesource.lmdbjni.Constants#INTEGERDUP}.
+   * @return the long value
+   */
+  public long dupFixedLong(int index, ByteOrder byteOrder) {
+    if (index < 0 || index >= dupFixedCount()) {
+      throw new IndexOutOfBoundsException("index=" + index + " dupFixedCount=" + dupFixedCount());
+    }
+    return value.getLong(index * dupFixedSize, byteOrder);
+  }
+
+  private boolean multiple(GetOp op) {
+    int size = cursor.positionMultiple(key, value, op);
+    int rc = size < 0 ? LMDBException.NOTFOUND : 0;
+    setDatabaseMemoryLocation(rc);
+    dupFixedSize = Math.max(size, 0);
+    return rc == 0;
+  }
+
+  /**
+   * <p>
+   * Position at the first key without reading its value.
+   * </p>
+   *
+   * The key only methods leave the value empty and never touch the overflow
+   * pages that hold large values, so a scan over the keys of a database with
+   * large values only reads branch and leaf pages. In a
+   * {@link org.fusesource.lmdbjni.Constants#DUPSORT} database every key is
+   * visited once, as with {@link GetOp#NEXT_NODUP}.
+   *
+   * @return true if found
+   * @see org.fusesource.lmdbjni.BufferCursor#nextKey()
+   */
+  public boolean firstKey() {
+    return positionKey(GetOp.FIRST);
+  }
+
+  /**
+   * Position at the last key without reading its value.
+   *
+   * @return true if found
+   * @see org.fusesource.lmdbjni.BufferCursor#firstKey()
+   */
+  public boolean lastKey() {
+    return positionKey(GetOp.LAST);
+  }
+
+  /**
+   * Position at the next key without reading its value.
+   *
+   * @return true if found
+   * @see org.fusesource.lmdbjni.BufferCursor#firstKey()
+   */
+  public boolean nextKey() {
+    return positionKey(GetOp.NEXT);
+  }
+
+  /**
+   * Position at the previous key without reading its value.
+   *
+   * @return true if found
+   * @see org.fusesource.lmdbjni.BufferCursor#firstKey()
+   */
+  public boolean prevKey() {
+    return positionKey(GetOp.PREV);
+  }
+
+  /**
+   * Position at first key greater than or equal to provided key without
+   * reading its value.
+   *
+   * @return true if a key was found.
+   * @see org.fusesource.lmdbjni.BufferCursor#firstKey()
+   */
+  public boolean seekRangeKey() {
+    if (keyWriteIndex != 0) {
+      this.key.wrap(this.key.addressOffset(), keyWriteIndex);
+    }
+    int rc = cursor.seekPositionKey(this.key, SeekOp.RANGE);
+    return keyPositioned(rc);
+  }
+
+  private boolean positionKey(GetOp op) {
+    int rc = cursor.positionKey(key, op);
+    return keyPositioned(rc);
+  }
+
+  private boolean keyPositioned(int rc) {
+    value.wrap(0, 0);
+    setDatabaseMemoryLocation(rc);
+    return rc == 0;
+  }
+
+  /**
+   * Position at the first key/data item and continue with up to max - 1
+   * next data items, collecting all of them in one native call.
+   *
+   * @param max maximum number of items to collect.
+   * @return number of items collected.
+   * @see org.fusesource.lmdbjni.BufferCursor#nextBatch(int)
+   */
+  public int firstBatch(int max) {
+    return batch(max, GetOp.FIRST, GetOp.NEXT);
+  }
+
+  /**
+   * Position at the last key/data item and continue with up to max - 1
+   * previous data items, collecting all of them in one native call.
+   *
+   * @param max maximum number of items to collect.
+   * @return number of items collected.
+   * @see org.fusesource.lmdbjni.BufferCursor#nextBatch(int)
+   */
+  public int lastBatch(int max) {
+    return batch(max, GetOp.LAST, GetOp.PREV);
+  }
+
+  /**
+   * <p>
+   * Move to the next data item up to max times in one native call.
+   * </p>
+   *
+   * The address and length of the key and value of every item is collected
+   * in a table that is reused between calls and accessed with
+   * {@link BufferCursor#batchKey(int)} and {@link BufferCursor#batchVal(int)}.
+   * The cursor is left at the last item collected, or in an unpositioned state
+   * if no item was found. Fewer than max items means that the end of the
+   * database was reached.
+   *
+   * @param max maximum number of items to collect.
+   * @return number of items collected.
+   */
+  public int nextBatch(int max) {
+    return batch(max, GetOp.NEXT, GetOp.NEXT);
+  }
+
+  /**
+   * Move to the previous data item up to max times in one native call.
+   *
+   * @param max maximum number of items to collect.
+   * @return number of items collected.
+   * @see org.fusesource.lmdbjni.BufferCursor#nextBatch(int)
+   */
+  public int prevBatch(int max) {
+    return batch(max, GetOp.PREV, GetOp.PREV);
+  }
+
+  /**
+   * Position at the first key and continue with up to max - 1 next keys,
+   * collecting the keys in one native call without reading any values.
+   * Access the keys with {@link BufferCursor#batchKey(int)}.
+   *
+   * @param max maximum number of keys to collect.
+   * @return number of keys collected.
+   * @see org.fusesource.lmdbjni.BufferCursor#firstKey()
+   */
+  public int firstKeyBatch(int max) {
+    return keyBatch(max, GetOp.FIRST, GetOp.NEXT);
+  }
+
+  /**
+   * Position at the last key and continue with up to max - 1 previous keys
+   * without reading any values.
+   *
+   * @param max maximum number of keys to collect.
+   * @return number of keys collected.
+   * @see org.fusesource.lmdbjni.BufferCursor#firstKeyBatch(int)
+   */
+  public int lastKeyBatch(int max) {
+    return keyBatch(max, GetOp.LAST, GetOp.PREV);
+  }
+
+  /**
+   * Move to the next key up to max times without reading any values.
+   *
+   * @param max maximum number of keys to collect.
+   * @return number of keys collected.
+   * @see org.fusesource.lmdbjni.BufferCursor#firstKeyBatch(int)
+   */
+  public int nextKeyBatch(int max) {
+    return keyBatch(max, GetOp.NEXT, GetOp.NEXT);
+  }
+
+  /**
+   * Move to the previous key up to max times without reading any values.
+   *
+   * @param max maximum number of keys to collect.
+   * @return number of keys collected.
+   * @see org.fusesource.lmdbjni.BufferCursor#firstKeyBatch(int)
+   */
+  public int prevKeyBatch(int max) {
+    return keyBatch(max, GetOp.PREV, GetOp.PREV);
+  }
+
+  /**
+   * @return number of items collected by the last batch operation.
+   */
+  public int batchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Key of an item collected by the last batch operation. The same buffer
+   * instance is returned for every call and points to memory owned by the
+   * database, which may not be modified.
+   *
+   * @param index item index, less than {@link BufferCursor#batchSize()}.
+   * @return key buffer
+   */
+  public DirectBuffer batchKey(int index) {
+    checkBatchIndex(index);
+    long table = batchTable.addressOffset();
+    int row = batchKeysOnly ? 2 * index : 4 * index;
+    batchKey.wrap(Unsafe.getAddress(table, row + 1), (int) Unsafe.getLong(table, row));
+    return batchKey;
+  }
+
+  /**
+   * Value of an item collected by the last batch operation. The same buffer
+   * instance is returned for every call and points to memory owned by the
+   * database, which may not be modified.
+   *
+   * @param index item index, less than {@link BufferCursor#batchSize()}.
+   * @return value buffer
+   * @throws IllegalStateException if the last batch collected keys only.
+   */
+  public DirectBuffer batchVal(int index) {
+    checkBatchIndex(index);
+    if (batchKeysOnly) {
+      throw new IllegalStateException("The last batch collected keys only");
+    }
+    long table = batchTable.addressOffset();
+    batchVal.wrap(Unsafe.getAddress(table, 4 * index + 3), (int) Unsafe.getLong(table, 4 * index + 2));
+    return batchVal;
+  }
+
+  private int batch(int max, GetOp firstOp, GetOp op) {
+    long table = batchTable(max, 4);
+    batchKeysOnly = false;
+    batchSize = cursor.getBatch(table, max, firstOp, op);
+    if (batchSize > 0) {
+      int last = 4 * (batchSize - 1);
+      key.wrap(Unsafe.getAddress(table, last + 1), (int) Unsafe.getLong(table, last));
+      value.wrap(Unsafe.getAddress(table, last + 3), (int) Unsafe.getLong(table, last + 2));
+      setDatabaseMemoryLocation(0);
+    } else {
+      setDatabaseMemoryLocation(LMDBException.NOTFOUND);
+    }
+    return batchSize;
+  }
+
+  private int keyBatch(int max, GetOp firstOp, GetOp op) {
+    long table = batchTable(max, 2);
+    batchKeysOnly = true;
+    batchSize = cursor.getKeyBatch(table, max, firstOp, op);
+    if (batchSize > 0) {
+      int last = 2 * (batchSize - 1);
+      key.wrap(Unsafe.getAddress(table, last + 1), (int) Unsafe.getLong(table, last));
+    }
+    keyPositioned(batchSize > 0 ? 0 : LMDBException.NOTFOUND);
+    return batchSize;
+  }
+
+  private long batchTable(int max, int words) {
+    if (max < 1) {
+      throw new IllegalArgumentException("max must be positive");
+    }
+    int tableSize = max * words * Unsafe.ADDRESS_SIZE;
+    if (batchTable == null || batchTable.capacity() < tableSize) {
+      batchTable = new DirectBuffer(ByteBuffer.allocateDirect(tableSize));
+    }
+    return batchTable.addressOffset();
+  }
+
+  private void checkBatchIndex(int index) {
+    if (index < 0 || index >= batchSize) {
+      throw new IndexOutOfBoundsException("index=" + index + " batchSize=" + batchSize);
+    }
+  }
+
   /**
    * <p>
    * Delete key/data pair at current cursor position.
@@ -325,21 +722,35 @@ public class BufferCursor implements AutoCloseable {
    */
   @Override
   public void close() {
+    if (cache != null && cache.release(this)) {
+      return;
+    }
     cursor.close();
   }
 
+  /**
+   * Bind a cached cursor to a new read only transaction and
+   * return it to an unpositioned state.
+   */
+  void renew(Transaction tx) {
+    cursor.renew(tx);
+    key.wrap(keyByteBuffer);
+    value.wrap(valueByteBuffer);
+    keyDatbaseMemoryLocation = false;
+    valDatbaseMemoryLocation = false;
+    keyWriteIndex = 0;
+    valWriteIndex = 0;
+    validPosition = false;
+    batchSize = 0;
+    dupFixedSize = 0;
+  }
+
   /**
    * Stores key/data pairs in the database replacing any
    * previously existing key.
    */
   public boolean put() {
-    DirectBuffer k = (keyWriteIndex != 0) ?
-      new DirectBuffer(key.addressOffset(), keyWriteIndex) : key;
-    DirectBuffer v = (valWriteIndex != 0) ?
-      new DirectBuffer(value.addressOffset(), valWriteIndex) : value;
-    keyWriteIndex = 0;
-    valWriteIndex = 0;
-    int rc = cursor.put(k, v, Constants.NOOVERWRITE);
+    int rc = putWritten(Constants.NOOVERWRITE);
     if (rc == 0) {
       return true;
     } else if (rc == LMDBException.KEYEXIST) {
@@ -355,13 +766,7 @@ public class BufferCursor implements AutoCloseable {
    * previously existing key. Also used for adding duplicates.
    */
   public boolean overwrite() {
-    DirectBuffer k = (keyWriteIndex != 0) ?
-      new DirectBuffer(key.addressOffset(), keyWriteIndex) : key;
-    DirectBuffer v = (valWriteIndex != 0) ?
-      new DirectBuffer(value.addressOffset(), valWriteIndex) : value;
-    keyWriteIndex = 0;
-    valWriteIndex = 0;
-    int rc = cursor.put(k, v, 0);
+    int rc = putWritten(0);
     if (rc == 0) {
       return true;
     } else if (rc == LMDBException.KEYEXIST) {
@@ -372,6 +777,44 @@ public class BufferCursor implements AutoCloseable {
     }
   }
 
+  /**
+   * Store count fixed size duplicates for the key written into the cursor
+   * in a single call. Only for {@link org.fusesource.lmdbjni.Constants#DUPFIXED}.
+   *
+   * @param contiguousValues count elements of elementSize bytes each, stored back to back.
+   * @param elementSize size of a single data element.
+   * @param count number of data elements to store.
+   * @return the number of elements written.
+   * @see org.fusesource.lmdbjni.Cursor#putMultiple(DirectBuffer, DirectBuffer, int, int, int)
+   */
+  public int putMultiple(DirectBuffer contiguousValues, int elementSize, int count) {
+    Cursor.checkMultiple(contiguousValues, elementSize, count);
+    return putMultiple(contiguousValues.addressOffset(), elementSize, count);
+  }
+
+  /**
+   * Store the value written into the cursor as a run of fixed size
+   * duplicates of elementSize bytes each, for the key written into
+   * the cursor. Only for {@link org.fusesource.lmdbjni.Constants#DUPFIXED}.
+   *
+   * @param elementSize size of a single data element.
+   * @return the number of elements written.
+   */
+  public int putMultiple(int elementSize) {
+    if (elementSize <= 0) {
+      throw new IllegalArgumentException("elementSize must be positive");
+    }
+    int size = valWriteIndex != 0 ? valWriteIndex : value.capacity();
+    return putMultiple(value.addressOffset(), elementSize, size / elementSize);
+  }
+
+  private int putMultiple(long valuesAddress, int elementSize, int count) {
+    int keySize = keyWriteIndex != 0 ? keyWriteIndex : key.capacity();
+    keyWriteIndex = 0;
+    valWriteIndex = 0;
+    return cursor.putMultiple(key.addressOffset(), keySize, valuesAddress, elementSize, count, 0);
+  }
+
   /**
    * Append the given key/data pair to the end of the database.
    * No key comparisons are performed. This option allows
@@ -380,19 +823,60 @@ public class BufferCursor implements AutoCloseable {
    * data corruption.
    */
   public void append() {
-    DirectBuffer k = (keyWriteIndex != 0) ?
-      new DirectBuffer(key.addressOffset(), keyWriteIndex) : key;
-    DirectBuffer v = (valWriteIndex != 0) ?
-      new DirectBuffer(value.addressOffset(), valWriteIndex) : value;
-    keyWriteIndex = 0;
-    valWriteIndex = 0;
-    int rc = cursor.put(k, v, Constants.APPEND);
+    int rc = putWritten(Constants.APPEND);
     if (rc != 0) {
       String msg = Util.string(mdb_strerror(rc));
       throw new LMDBException(msg, rc);
     }
   }
 
+  /**
+   * Put the bytes written into key and value, or their whole capacity if
+   * nothing was written, and reset the write indexes.
+   */
+  private int putWritten(int flags) {
+    int keySize = keyWriteIndex != 0 ? keyWriteIndex : key.capacity();
+    int valSize = valWriteIndex != 0 ? valWriteIndex : value.capacity();
+    keyWriteIndex = 0;
+    valWriteIndex = 0;
+    return cursor.put(key.addressOffset(), keySize, value.addressOffset(), valSize, flags);
+  }
+
+  /**
+   * Write an order preserving tuple into the key, starting at the current
+   * write index. Every element written moves the write index forward.
+   *
+   * @return a writer over the key, reused by the cursor and only valid
+   * until the cursor is moved.
+   * @see org.fusesource.lmdbjni.TupleWriter
+   */
+  public TupleWriter keyWriteTuple() {
+    setSafeKeyMemoryLocation();
+    if (keyTupleWriter == null) {
+      keyTupleWriter = new TupleWriter(this);
+    }
+    return keyTupleWriter.wrap(key, keyWriteIndex);
+  }
+
+  void setKeyWriteIndex(int index) {
+    keyWriteIndex = index;
+  }
+
+  /**
+   * Read the key at the current position as a tuple written by
+   * {@link org.fusesource.lmdbjni.TupleWriter}, without copying it.
+   *
+   * @return a reader over the key, reused by the cursor and only valid
+   * until the cursor is moved.
+   */
+  public TupleReader keyReadTuple() {
+    checkForValidPosition();
+    if (keyTupleReader == null) {
+      keyTupleReader = new TupleReader();
+    }
+    return keyTupleReader.wrap(key);
+  }
+
   /**
    * Write data to key at current cursor position and
    * move write index forward.
@@ -1123,11 +1607,13 @@ public class BufferCursor implements AutoCloseable {
     if (valDatbaseMemoryLocation) {
       this.value.wrap(valueByteBuffer);
       valDatbaseMemoryLocation = false;
+      dupFixedSize = 0;
     }
   }
 
   private void setDatabaseMemoryLocation(int rc) {
     validPosition = rc == 0;
+    dupFixedSize = 0;
     this.valDatbaseMemoryLocation = true;
     this.keyDatbaseMemoryLocation = true;
     keyWriteIndex = 0;
@@ -0,0 +1,51 @@
+package org.fusesource.lmdbjni;
+
+/**
+ * Key and value as zero copy views into the memory map.
+ * <p>
+ * A {@link BufferEntryIterator} returns the same instance from every call
+ * to next, and the buffers are only valid until the next call to next or
+ * until the transaction ends. Use {@link #copy()} to keep an entry.
+ * </p>
+ */
+public final class BufferEntry {
+  final DirectBuffer key = new DirectBuffer(0, 0);
+  final DirectBuffer value = new DirectBuffer(0, 0);
+
+  BufferEntry() {
+  }
+
+  public DirectBuffer getKey() {
+    return key;
+  }
+
+  public DirectBuffer getValue() {
+    return value;
+  }
+
+  /**
+   * @return the key copied into a new array.
+   */
+  public byte[] getKeyBytes() {
+    byte[] bytes = new byte[key.capacity()];
+    key.getBytes(0, bytes);
+    return bytes;
+  }
+
+  /**
+   * @return the value copied into a new array.
+   */
+  public byte[] getValueBytes() {
+    byte[] bytes = new byte[value.capacity()];
+    value.getBytes(0, bytes);
+    return bytes;
+  }
+
+  /**
+   * @return the key and value copied into an entry that stays valid
+   * after the iterator moves on.
+   */
+  public Entry copy() {
+    return new Entry(getKeyBytes(), getValueBytes());
+  }
+}
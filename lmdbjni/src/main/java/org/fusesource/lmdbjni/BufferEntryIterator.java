@@ -0,0 +1,123 @@
+package org.fusesource.lmdbjni;
+
+import org.fusesource.lmdbjni.EntryIterator.IteratorType;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Zero copy iterator that follows the same semantics as {@link EntryIterator}
+ * but returns a single reused {@link BufferEntry} whose key and value point
+ * into the memory map. Nothing is allocated per entry.
+ * <p/>
+ * <pre>
+ * {@code
+ * try (BufferEntryIterator it = db.iterateBuffers(tx)) {
+ *   for (BufferEntry next : it.iterable()) {
+ *     long id = next.getKey().getLong(0);
+ *   }
+ * }
+ * }
+ * </pre>
+ */
+public class BufferEntryIterator implements Iterator<BufferEntry>, AutoCloseable {
+  private final Cursor cursor;
+  private final IteratorType type;
+  private final DirectBuffer key;
+  private final KeyRange range;
+  private final BufferEntry entry = new BufferEntry();
+  private State state = State.NOT_READY;
+  private boolean first = true;
+
+  BufferEntryIterator(Cursor cursor, DirectBuffer key, IteratorType type) {
+    if (key != null && key.byteArray() != null) {
+      throw new IllegalArgumentException("Key buffer is not direct.");
+    }
+    this.cursor = cursor;
+    this.type = type;
+    this.key = key;
+    this.range = null;
+  }
+
+  BufferEntryIterator(Cursor cursor, KeyRange range) {
+    this.cursor = cursor;
+    this.type = range.isBackward() ? IteratorType.BACKWARD : IteratorType.FORWARD;
+    this.key = null;
+    this.range = range;
+  }
+
+  private enum State {
+    READY, NOT_READY, DONE,
+  }
+
+  @Override
+  public boolean hasNext() {
+    switch (state) {
+      case DONE:
+        return false;
+      case READY:
+        return true;
+      default:
+    }
+    return tryToComputeNext();
+  }
+
+  private boolean tryToComputeNext() {
+    int rc;
+    if (range != null) {
+      rc = cursor.positionRange(entry.key, entry.value, range, first);
+      first = false;
+    } else if (first) {
+      first = false;
+      if (key != null) {
+        entry.key.wrap(key);
+        rc = cursor.seekPosition(entry.key, entry.value, SeekOp.RANGE);
+      } else if (type == IteratorType.FORWARD) {
+        rc = cursor.position(entry.key, entry.value, GetOp.FIRST);
+      } else {
+        rc = cursor.position(entry.key, entry.value, GetOp.LAST);
+      }
+    } else if (type == IteratorType.FORWARD) {
+      rc = cursor.position(entry.key, entry.value, GetOp.NEXT);
+    } else {
+      rc = cursor.position(entry.key, entry.value, GetOp.PREV);
+    }
+    if (rc == JNI.MDB_NOTFOUND) {
+      state = State.DONE;
+      return false;
+    }
+    state = State.READY;
+    return true;
+  }
+
+  /**
+   * @return the reused entry, valid until the next call to next.
+   */
+  @Override
+  public BufferEntry next() throws NoSuchElementException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    state = State.NOT_READY;
+    return entry;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  public Iterable<BufferEntry> iterable() {
+    return new Iterable<BufferEntry>() {
+      @Override
+      public Iterator<BufferEntry> iterator() {
+        return BufferEntryIterator.this;
+      }
+    };
+  }
+
+  @Override
+  public void close() {
+    cursor.close();
+  }
+}
@@ -0,0 +1,420 @@
+package org.fusesource.lmdbjni;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import static org.fusesource.lmdbjni.JNI.MDB_NOTFOUND;
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
+import static org.fusesource.lmdbjni.Util.checkErrorCode;
+
+/**
+ * <p>
+ * A database that compresses values on put and decompresses them on get.
+ * </p>
+ *
+ * Values are compressed with {@link LzCompressor}, optionally against a
+ * dictionary trained from sample values and kept in a second database.
+ * Values smaller than the threshold, and values that do not get smaller,
+ * are stored raw. Every stored value starts with a byte that tells how it
+ * is encoded, so the threshold and dictionary can change at any time.
+ * <p>
+ * Reads through {@link #get(Transaction, DirectBuffer, DirectBuffer)} do not
+ * allocate. Raw values are read from the memory map and compressed values
+ * are decompressed into a buffer owned by the calling thread, which is
+ * valid until the next get on that thread.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * CompressedDatabase compressed = new CompressedDatabase(db, env.openDatabase("dictionaries"));
+ * try (Transaction tx = env.createWriteTransaction()) {
+ *   compressed.trainDictionary(tx, samples, 16 * 1024);
+ *   compressed.put(tx, key, json);
+ *   tx.commit();
+ * }
+ * }
+ * </pre>
+ */
+public class CompressedDatabase {
+  /** values shorter than this are stored raw by default */
+  public static final int DEFAULT_THRESHOLD = 128;
+
+  private static final byte RAW = 0;
+  private static final byte LZ = 1;
+  private static final byte LZ_DICTIONARY = 2;
+
+  private final Database db;
+  private final Database dictionaries;
+  private final ConcurrentHashMap<Integer, Dictionary> dictionaryCache = new ConcurrentHashMap<>();
+  private final ThreadLocal<Buffers> buffers;
+  private volatile int threshold = DEFAULT_THRESHOLD;
+
+  /** a dictionary and its hash table, values compressed with it start with its id and checksum */
+  private static final class Dictionary {
+    final int id;
+    final int checksum;
+    final DirectBuffer data;
+    final int[] table;
+
+    Dictionary(int id, int checksum, DirectBuffer data) {
+      this.id = id;
+      this.checksum = checksum;
+      this.data = data;
+      this.table = LzCompressor.hashTable(data, data.capacity());
+    }
+  }
+
+  /**
+   * Buffers owned by one thread. The staging buffers grow as needed and
+   * are kept for the next call.
+   */
+  private static final class Buffers {
+    final LzCompressor compressor = new LzCompressor();
+    final DirectBuffer keySpace;
+    final DirectBuffer idKey = new DirectBuffer(ByteBuffer.allocateDirect(4));
+    final DirectBuffer dictionaryValue = new DirectBuffer(0, 0);
+    final DirectBuffer key = new DirectBuffer(0, 0);
+    final DirectBuffer input = new DirectBuffer(0, 0);
+    final DirectBuffer stored = new DirectBuffer(0, 0);
+    final DirectBuffer value = new DirectBuffer(0, 0);
+    DirectBuffer output;
+    DirectBuffer decompressed;
+
+    Buffers(int maxKeySize) {
+      keySpace = new DirectBuffer(ByteBuffer.allocateDirect(maxKeySize));
+    }
+
+    static DirectBuffer grow(DirectBuffer buffer, int size) {
+      if (buffer == null || buffer.capacity() < size) {
+        int capacity = buffer == null ? 1024 : buffer.capacity();
+        while (capacity < size) {
+          capacity = capacity < 1 << 30 ? capacity << 1 : Integer.MAX_VALUE;
+        }
+        return new DirectBuffer(ByteBuffer.allocateDirect(capacity));
+      }
+      return buffer;
+    }
+  }
+
+  /**
+   * Compress values without a dictionary.
+   *
+   * @param db database to store values in
+   */
+  public CompressedDatabase(Database db) {
+    this(db, null);
+  }
+
+  /**
+   * @param db database to store values in
+   * @param dictionaries database to keep dictionaries in, which should not
+   *                     be used for anything else, or null to compress
+   *                     without a dictionary.
+   */
+  public CompressedDatabase(Database db, Database dictionaries) {
+    checkArgNotNull(db, "db");
+    this.db = db;
+    this.dictionaries = dictionaries;
+    final int maxKeySize = (int) db.env.getMaxKeySize();
+    this.buffers = new ThreadLocal<Buffers>() {
+      @Override
+      protected Buffers initialValue() {
+        return new Buffers(maxKeySize);
+      }
+    };
+  }
+
+  public Database getDatabase() {
+    return db;
+  }
+
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * @param threshold values shorter than this many bytes are stored raw.
+   */
+  public void setThreshold(int threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold must not be negative");
+    }
+    this.threshold = threshold;
+  }
+
+  /**
+   * Train a dictionary from sample values and compress new values with it.
+   *
+   * @param tx write transaction handle
+   * @param samples typical values
+   * @param size maximum size of the dictionary
+   * @return the id of the dictionary.
+   * @see LzCompressor#trainDictionary(List, int)
+   */
+  public int trainDictionary(Transaction tx, List<byte[]> samples, int size) {
+    checkArgNotNull(samples, "samples");
+    return setDictionary(tx, LzCompressor.trainDictionary(samples, size));
+  }
+
+  /**
+   * <p>
+   * Store a dictionary and compress new values with it.
+   * </p>
+   *
+   * Values already stored keep the dictionary they were compressed with,
+   * so dictionaries are never deleted. Dictionaries get sequential ids and
+   * the id of the active one is kept under id 0. Puts look up the active
+   * dictionary in their own transaction, so they use the new dictionary
+   * once this transaction commits, and the previous one if it aborts.
+   * Compressed values carry the checksum of their dictionary, so a cached
+   * dictionary whose id was reused after an abort is never used to
+   * decompress them.
+   *
+   * @param tx write transaction handle
+   * @param dictionary dictionary of at most
+   *                   {@link LzCompressor#MAX_DICTIONARY_SIZE} bytes
+   * @return the id of the dictionary.
+   */
+  public int setDictionary(Transaction tx, byte[] dictionary) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(dictionary, "dictionary");
+    if (dictionaries == null) {
+      throw new IllegalStateException("No database to keep dictionaries in");
+    }
+    if (dictionary.length == 0 || dictionary.length > LzCompressor.MAX_DICTIONARY_SIZE) {
+      throw new IllegalArgumentException("Dictionary must have between 1 and "
+        + LzCompressor.MAX_DICTIONARY_SIZE + " bytes");
+    }
+    Buffers buffers = this.buffers.get();
+    DirectBuffer idKey = buffers.idKey;
+    DirectBuffer value = buffers.dictionaryValue;
+    int id = 1;
+    try (Cursor cursor = dictionaries.openCursor(tx)) {
+      Entry last = cursor.get(GetOp.LAST);
+      if (last != null) {
+        id = ByteBuffer.wrap(last.getKey()).getInt() + 1;
+      }
+    }
+    int checksum = checksum(dictionary);
+    DirectBuffer data = new DirectBuffer(ByteBuffer.allocateDirect(dictionary.length));
+    data.putBytes(0, dictionary);
+    Dictionary entry = new Dictionary(id, checksum, data);
+
+    idKey.putInt(0, id, ByteOrder.BIG_ENDIAN);
+    checkErrorCode(dictionaries.reserve(tx, idKey, dictionary.length, Constants.NOOVERWRITE, value));
+    value.putBytes(0, dictionary);
+    idKey.putInt(0, 0, ByteOrder.BIG_ENDIAN);
+    checkErrorCode(dictionaries.reserve(tx, idKey, 8, 0, value));
+    value.putInt(0, id, ByteOrder.BIG_ENDIAN);
+    value.putInt(4, checksum, ByteOrder.BIG_ENDIAN);
+
+    dictionaryCache.put(id, entry);
+    return id;
+  }
+
+  /**
+   * @see #put(Transaction, DirectBuffer, DirectBuffer)
+   */
+  public void put(Transaction tx, byte[] key, byte[] value) {
+    checkArgNotNull(value, "value");
+    Buffers buffers = this.buffers.get();
+    buffers.input.wrap(value);
+    put(tx, directKey(buffers, key), buffers.input, buffers);
+  }
+
+  /**
+   * Compress and store a value, replacing any previous value of the key.
+   *
+   * @param tx write transaction handle
+   * @param key key to store
+   * @param value value to store
+   */
+  public void put(Transaction tx, DirectBuffer key, DirectBuffer value) {
+    checkArgNotNull(key, "key");
+    checkArgNotNull(value, "value");
+    put(tx, key, value, buffers.get());
+  }
+
+  private void put(Transaction tx, DirectBuffer key, DirectBuffer value, Buffers buffers) {
+    checkArgNotNull(tx, "tx");
+    int length = value.capacity();
+    DirectBuffer output = buffers.output = Buffers.grow(buffers.output,
+      Math.max(13 + LzCompressor.maxCompressedLength(length), 1 + length));
+    int storedLength = 0;
+    if (length >= threshold) {
+      Dictionary dictionary = activeDictionary(tx, buffers);
+      if (dictionary == null) {
+        output.putByte(0, LZ);
+        output.putInt(1, length, ByteOrder.BIG_ENDIAN);
+        storedLength = 5 + buffers.compressor.compress(value, 0, length, output, 5);
+      } else {
+        output.putByte(0, LZ_DICTIONARY);
+        output.putInt(1, dictionary.id, ByteOrder.BIG_ENDIAN);
+        output.putInt(5, dictionary.checksum, ByteOrder.BIG_ENDIAN);
+        output.putInt(9, length, ByteOrder.BIG_ENDIAN);
+        storedLength = 13 + buffers.compressor.compress(value, 0, length, dictionary.data,
+          dictionary.data.capacity(), dictionary.table, output, 13);
+      }
+    }
+    if (storedLength == 0 || storedLength >= 1 + length) {
+      output.putByte(0, RAW);
+      output.putBytes(1, value, 0, length);
+      storedLength = 1 + length;
+    }
+    buffers.stored.wrap(output.addressOffset(), storedLength);
+    db.put(tx, key, buffers.stored, 0);
+  }
+
+  /**
+   * @param tx transaction handle
+   * @param key key to look up
+   * @return a copy of the decompressed value, or null if the key is not found.
+   */
+  public byte[] get(Transaction tx, byte[] key) {
+    Buffers buffers = this.buffers.get();
+    if (get(tx, directKey(buffers, key), buffers.value, buffers) == MDB_NOTFOUND) {
+      return null;
+    }
+    byte[] value = new byte[buffers.value.capacity()];
+    buffers.value.getBytes(0, value);
+    return value;
+  }
+
+  /**
+   * Get a value without allocating. The value buffer is wrapped around the
+   * value in the memory map, or around a buffer owned by the calling thread
+   * that is reused by its next get.
+   *
+   * @param tx transaction handle
+   * @param key key to look up
+   * @param value placeholder wrapped around the decompressed value
+   * @return 0 or {@link org.fusesource.lmdbjni.JNI#MDB_NOTFOUND}.
+   */
+  public int get(Transaction tx, DirectBuffer key, DirectBuffer value) {
+    checkArgNotNull(key, "key");
+    checkArgNotNull(value, "value");
+    return get(tx, key, value, buffers.get());
+  }
+
+  private int get(Transaction tx, DirectBuffer key, DirectBuffer value, Buffers buffers) {
+    checkArgNotNull(tx, "tx");
+    DirectBuffer stored = buffers.stored;
+    int rc = db.get(tx, key, stored);
+    if (rc == MDB_NOTFOUND) {
+      return rc;
+    }
+    checkErrorCode(rc);
+    int storedLength = stored.capacity();
+    byte encoding = storedLength == 0 ? -1 : stored.getByte(0);
+    if (encoding == RAW) {
+      value.wrap(stored.addressOffset() + 1, storedLength - 1);
+    } else if (encoding == LZ && storedLength >= 5) {
+      int length = stored.getInt(1, ByteOrder.BIG_ENDIAN);
+      DirectBuffer dst = buffers.decompressed = Buffers.grow(buffers.decompressed, length);
+      LzCompressor.decompress(stored, 5, storedLength - 5, dst, 0, length);
+      value.wrap(dst.addressOffset(), length);
+    } else if (encoding == LZ_DICTIONARY && storedLength >= 13) {
+      int id = stored.getInt(1, ByteOrder.BIG_ENDIAN);
+      int checksum = stored.getInt(5, ByteOrder.BIG_ENDIAN);
+      int length = stored.getInt(9, ByteOrder.BIG_ENDIAN);
+      Dictionary dictionary = dictionary(tx, id, checksum, buffers);
+      if (dictionary == null) {
+        throw new IllegalStateException("Dictionary " + id + " not found");
+      }
+      DirectBuffer dst = buffers.decompressed = Buffers.grow(buffers.decompressed, length);
+      LzCompressor.decompress(stored, 13, storedLength - 13, dst, 0, length,
+        dictionary.data, dictionary.data.capacity());
+      value.wrap(dst.addressOffset(), length);
+    } else {
+      throw new IllegalStateException("Unknown value encoding " + encoding);
+    }
+    return rc;
+  }
+
+  /**
+   * @param tx write transaction handle
+   * @param key key to delete
+   * @return true if the key was found and deleted.
+   */
+  public boolean delete(Transaction tx, byte[] key) {
+    checkArgNotNull(tx, "tx");
+    return db.delete(tx, directKey(buffers.get(), key));
+  }
+
+  /**
+   * @param tx write transaction handle
+   * @param key key to delete
+   * @return true if the key was found and deleted.
+   */
+  public boolean delete(Transaction tx, DirectBuffer key) {
+    checkArgNotNull(tx, "tx");
+    return db.delete(tx, key);
+  }
+
+  private DirectBuffer directKey(Buffers buffers, byte[] key) {
+    checkArgNotNull(key, "key");
+    if (key.length > buffers.keySpace.capacity()) {
+      throw new IllegalArgumentException("Key of " + key.length + " bytes is longer than the maximum key size of "
+        + buffers.keySpace.capacity() + " bytes");
+    }
+    buffers.keySpace.putBytes(0, key);
+    buffers.key.wrap(buffers.keySpace.addressOffset(), key.length);
+    return buffers.key;
+  }
+
+  private Dictionary activeDictionary(Transaction tx, Buffers buffers) {
+    if (dictionaries == null) {
+      return null;
+    }
+    DirectBuffer value = buffers.dictionaryValue;
+    buffers.idKey.putInt(0, 0, ByteOrder.BIG_ENDIAN);
+    int rc = dictionaries.get(tx, buffers.idKey, value);
+    if (rc == MDB_NOTFOUND) {
+      return null;
+    }
+    checkErrorCode(rc);
+    int id = value.getInt(0, ByteOrder.BIG_ENDIAN);
+    int checksum = value.getInt(4, ByteOrder.BIG_ENDIAN);
+    return dictionary(tx, id, checksum, buffers);
+  }
+
+  /**
+   * @return the dictionary with the id and checksum, cached or read from
+   * the transaction, or null if there is no dictionary with the id.
+   */
+  private Dictionary dictionary(Transaction tx, int id, int checksum, Buffers buffers) {
+    Dictionary dictionary = dictionaryCache.get(id);
+    if (dictionary != null && dictionary.checksum == checksum) {
+      return dictionary;
+    }
+    if (dictionaries == null) {
+      return null;
+    }
+    DirectBuffer value = buffers.dictionaryValue;
+    buffers.idKey.putInt(0, id, ByteOrder.BIG_ENDIAN);
+    int rc = dictionaries.get(tx, buffers.idKey, value);
+    if (rc == MDB_NOTFOUND) {
+      return null;
+    }
+    checkErrorCode(rc);
+    byte[] bytes = new byte[value.capacity()];
+    value.getBytes(0, bytes);
+    if (checksum(bytes) != checksum) {
+      throw new IllegalStateException("Dictionary " + id + " does not match the checksum of the value");
+    }
+    DirectBuffer data = new DirectBuffer(ByteBuffer.allocateDirect(bytes.length));
+    data.putBytes(0, bytes);
+    dictionary = new Dictionary(id, checksum, data);
+    dictionaryCache.put(id, dictionary);
+    return dictionary;
+  }
+
+  private static int checksum(byte[] dictionary) {
+    CRC32 crc = new CRC32();
+    crc.update(dictionary);
+    return (int) crc.getValue();
+  }
+}
@@ -20,6 +20,7 @@ package org.fusesource.lmdbjni;
 
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.fusesource.lmdbjni.JNI.*;
 import static org.fusesource.lmdbjni.Util.checkArgNotNull;
@@ -34,6 +35,10 @@ public class Cursor extends NativeObject implements AutoCloseable {
   DirectBuffer buffer;
   long bufferAddress;
   boolean isReadOnly;
+  CursorCache cache;
+  /** set by the close that releases the cursor to its cache */
+  final AtomicBoolean cached = new AtomicBoolean();
+  boolean criticalArrays;
 
   Cursor(long self, boolean isReadOnly) {
     super(self);
@@ -51,6 +56,9 @@ public class Cursor extends NativeObject implements AutoCloseable {
   @Override
   public void close() {
     if (self != 0) {
+      if (cache != null && cache.release(this)) {
+        return;
+      }
       mdb_cursor_close(self);
       self = 0;
     }
@@ -103,10 +111,7 @@ public class Cursor extends NativeObject implements AutoCloseable {
    * @see org.fusesource.lmdbjni.Cursor#get(GetOp)
    */
   public int position(DirectBuffer key, DirectBuffer value, GetOp op) {
-    if (buffer == null) {
-      buffer = new DirectBuffer(ByteBuffer.allocateDirect(Unsafe.ADDRESS_SIZE * 4));
-      bufferAddress = buffer.addressOffset();
-    }
+    ensureBuffer();
     checkArgNotNull(op, "op");
     int rc = mdb_cursor_get_address(pointer(), bufferAddress, bufferAddress + 2 * Unsafe.ADDRESS_SIZE, op.getValue());
     if (rc == MDB_NOTFOUND) {
@@ -117,6 +122,44 @@ public class Cursor extends NativeObject implements AutoCloseable {
     return rc;
   }
 
+  /**
+   * Position at the first entry of the range, or step to the next entry in the
+   * direction of the range, and wrap the key and value found.
+   *
+   * @return 0 or {@link org.fusesource.lmdbjni.JNI#MDB_NOTFOUND} once the range is exhausted.
+   */
+  int positionRange(DirectBuffer key, DirectBuffer value, KeyRange range, boolean first) {
+    int rc = rangeGet(range, first);
+    if (rc == 0) {
+      wrapBufferAddress(key, value);
+    }
+    return rc;
+  }
+
+  /**
+   * Same as {@link #positionRange(DirectBuffer, DirectBuffer, KeyRange, boolean)}
+   * with the key and value copied into an entry.
+   *
+   * @return the entry found or null once the range is exhausted.
+   */
+  Entry getRange(KeyRange range, boolean first) {
+    int rc = rangeGet(range, first);
+    if (rc == MDB_NOTFOUND) {
+      return null;
+    }
+    return new Entry(Unsafe.toByteArray(bufferAddress, 0), Unsafe.toByteArray(bufferAddress, 2));
+  }
+
+  private int rangeGet(KeyRange range, boolean first) {
+    ensureBuffer();
+    int rc = cursor_get_range(pointer(), bufferAddress, bufferAddress + 2 * Unsafe.ADDRESS_SIZE,
+      range.boundsAddress(), range.flags(), first ? 1 : 0);
+    if (rc != MDB_NOTFOUND) {
+      checkErrorCode(rc);
+    }
+    return rc;
+  }
+
   /**
    * Same as get but with a seek operation.
    * @see org.fusesource.lmdbjni.Cursor#get(GetOp)
@@ -125,10 +168,7 @@ public class Cursor extends NativeObject implements AutoCloseable {
     checkArgNotNull(key, "key");
     checkArgNotNull(value, "value");
     checkArgNotNull(op, "op");
-    if (buffer == null) {
-      buffer = new DirectBuffer(ByteBuffer.allocateDirect(Unsafe.ADDRESS_SIZE * 4));
-      bufferAddress = buffer.addressOffset();
-    }
+    ensureBuffer();
     Unsafe.putLong(bufferAddress, 0, key.capacity());
     Unsafe.putLong(bufferAddress, 1, key.addressOffset());
 
@@ -141,6 +181,105 @@ public class Cursor extends NativeObject implements AutoCloseable {
     return rc;
   }
 
+  /**
+   * Step the cursor up to max times, first with firstOp and then with op.
+   * The key and data MDB_val of each position are written into the table
+   * at tableAddress, four native order longs per row.
+   *
+   * @return number of rows written into the table.
+   */
+  int getBatch(long tableAddress, int max, GetOp firstOp, GetOp op) {
+    ensureBuffer();
+    int rc = cursor_get_batch(pointer(), tableAddress, max, firstOp.getValue(), op.getValue(), bufferAddress);
+    if (rc != MDB_NOTFOUND) {
+      checkErrorCode(rc);
+    }
+    return (int) Unsafe.getLong(bufferAddress, 0);
+  }
+
+  /**
+   * Same as {@link #position(DirectBuffer, DirectBuffer, GetOp)} without
+   * reading the value. {@link org.fusesource.lmdbjni.GetOp#NEXT} and
+   * {@link org.fusesource.lmdbjni.GetOp#PREV} skip the remaining duplicates
+   * of the current key in a {@link org.fusesource.lmdbjni.Constants#DUPSORT}
+   * database.
+   *
+   * @return 0 or {@link org.fusesource.lmdbjni.JNI#MDB_NOTFOUND}
+   */
+  int positionKey(DirectBuffer key, GetOp op) {
+    ensureBuffer();
+    int rc = cursor_get_keys(pointer(), bufferAddress, 1, op.getValue(), op.getValue(),
+      bufferAddress + 4 * Unsafe.ADDRESS_SIZE);
+    return wrapKey(key, rc);
+  }
+
+  /**
+   * Same as {@link #seekPosition(DirectBuffer, DirectBuffer, SeekOp)} without
+   * reading the value.
+   *
+   * @return 0 or {@link org.fusesource.lmdbjni.JNI#MDB_NOTFOUND}
+   */
+  int seekPositionKey(DirectBuffer key, SeekOp op) {
+    ensureBuffer();
+    Unsafe.putLong(bufferAddress, 0, key.capacity());
+    Unsafe.putLong(bufferAddress, 1, key.addressOffset());
+    int rc = cursor_get_keys(pointer(), bufferAddress, 1, op.getValue(), op.getValue(),
+      bufferAddress + 4 * Unsafe.ADDRESS_SIZE);
+    return wrapKey(key, rc);
+  }
+
+  private int wrapKey(DirectBuffer key, int rc) {
+    if (rc == MDB_NOTFOUND) {
+      return rc;
+    }
+    checkErrorCode(rc);
+    key.wrap(Unsafe.getAddress(bufferAddress, 1), (int) Unsafe.getLong(bufferAddress, 0));
+    return rc;
+  }
+
+  /**
+   * Same as {@link #getBatch(long, int, GetOp, GetOp)} without reading the
+   * values. Only the key MDB_val of each position is written into the table,
+   * two native order longs per row.
+   *
+   * @return number of rows written into the table.
+   */
+  int getKeyBatch(long tableAddress, int max, GetOp firstOp, GetOp op) {
+    ensureBuffer();
+    int rc = cursor_get_keys(pointer(), tableAddress, max, firstOp.getValue(), op.getValue(), bufferAddress);
+    if (rc != MDB_NOTFOUND) {
+      checkErrorCode(rc);
+    }
+    return (int) Unsafe.getLong(bufferAddress, 0);
+  }
+
+  /**
+   * Fetch a page of fixed size duplicates with
+   * {@link org.fusesource.lmdbjni.GetOp#GET_MULTIPLE} or
+   * {@link org.fusesource.lmdbjni.GetOp#NEXT_MULTIPLE}. The key is
+   * set to the current key and the value to the page of duplicates.
+   *
+   * @return size of one duplicate in the page, or -1 if not found.
+   */
+  int positionMultiple(DirectBuffer key, DirectBuffer value, GetOp op) {
+    ensureBuffer();
+    int rc = cursor_get_multiple(pointer(), bufferAddress, bufferAddress + 2 * Unsafe.ADDRESS_SIZE,
+      op.getValue(), bufferAddress + 4 * Unsafe.ADDRESS_SIZE);
+    if (rc == MDB_NOTFOUND) {
+      return -1;
+    }
+    checkErrorCode(rc);
+    wrapBufferAddress(key, value);
+    return (int) Unsafe.getLong(bufferAddress, 4);
+  }
+
+  private void ensureBuffer() {
+    if (buffer == null) {
+      buffer = new DirectBuffer(ByteBuffer.allocateDirect(Unsafe.ADDRESS_SIZE * 6));
+      bufferAddress = buffer.addressOffset();
+    }
+  }
+
   private void wrapBufferAddress(DirectBuffer key, DirectBuffer value) {
     int keySize = (int) Unsafe.getLong(bufferAddress, 0);
     key.wrap(Unsafe.getAddress(bufferAddress, 1), keySize);
@@ -156,6 +295,16 @@ public class Cursor extends NativeObject implements AutoCloseable {
   public Entry seek(SeekOp op, byte[] key) {
     checkArgNotNull(key, "key");
     checkArgNotNull(op, "op");
+    if (criticalArrays) {
+      ensureBuffer();
+      int rc = array_cursor_get(pointer(), key, key.length, bufferAddress, op.getValue());
+      if (rc == MDB_NOTFOUND) {
+        return null;
+      }
+      checkErrorCode(rc);
+      byte[] foundKey = Unsafe.toByteArray(bufferAddress, 0);
+      return new Entry(foundKey == null ? key.clone() : foundKey, Unsafe.toByteArray(bufferAddress, 2));
+    }
     NativeBuffer keyBuffer = NativeBuffer.create(key);
     try {
       Value keyValue = new Value(keyBuffer);
@@ -224,6 +373,10 @@ public class Cursor extends NativeObject implements AutoCloseable {
    *		of the second MDB_val is unused.
    * </ul>
    * @return the value that was stored
+   * @throws LMDBException if the put fails with any error other than
+   * {@link org.fusesource.lmdbjni.LMDBException#KEYEXIST}, such as
+   * {@link org.fusesource.lmdbjni.LMDBException#MAP_FULL}. Earlier versions
+   * ignored these errors and returned as if the value was stored.
    */
   public byte[] put(byte[] key, byte[] value, int flags) {
     checkArgNotNull(key, "key");
@@ -247,23 +400,89 @@ public class Cursor extends NativeObject implements AutoCloseable {
   public int put(DirectBuffer key, DirectBuffer value, int flags) {
     checkArgNotNull(key, "key");
     checkArgNotNull(value, "value");
-    if (buffer == null) {
-      buffer = new DirectBuffer(ByteBuffer.allocateDirect(Unsafe.ADDRESS_SIZE * 4));
-      bufferAddress = buffer.addressOffset();
-    }
-    Unsafe.putLong(bufferAddress, 0, key.capacity());
-    Unsafe.putLong(bufferAddress, 1, key.addressOffset());
-    Unsafe.putLong(bufferAddress, 2, value.capacity());
-    Unsafe.putLong(bufferAddress, 3, value.addressOffset());
+    return put(key.addressOffset(), key.capacity(), value.addressOffset(), value.capacity(), flags);
+  }
+
+  /**
+   * Put the key and value found at the given memory locations.
+   *
+   * @return the response code.
+   */
+  int put(long keyAddress, int keySize, long valueAddress, int valueSize, int flags) {
+    ensureBuffer();
+    Unsafe.putLong(bufferAddress, 0, keySize);
+    Unsafe.putLong(bufferAddress, 1, keyAddress);
+    Unsafe.putLong(bufferAddress, 2, valueSize);
+    Unsafe.putLong(bufferAddress, 3, valueAddress);
     return mdb_cursor_put_address(pointer(), bufferAddress, bufferAddress + 2 * Unsafe.ADDRESS_SIZE, flags);
   }
 
+  /**
+   * @see org.fusesource.lmdbjni.Cursor#putMultiple(DirectBuffer, DirectBuffer, int, int, int)
+   */
+  public int putMultiple(DirectBuffer key, DirectBuffer contiguousValues, int elementSize, int count) {
+    return putMultiple(key, contiguousValues, elementSize, count, 0);
+  }
+
+  /**
+   * Store a run of fixed size duplicates of a key in a single call, using
+   * {@link org.fusesource.lmdbjni.Constants#MULTIPLE}. Only for databases
+   * opened with {@link org.fusesource.lmdbjni.Constants#DUPFIXED}.
+   *
+   * @param key The key to store the duplicates under.
+   * @param contiguousValues count elements of elementSize bytes each, stored back to back.
+   * @param elementSize size of a single data element.
+   * @param count number of data elements to store.
+   * @param flags additional flags such as {@link org.fusesource.lmdbjni.Constants#APPENDDUP}
+   *              or {@link org.fusesource.lmdbjni.Constants#NODUPDATA}.
+   * @return the number of elements written.
+   */
+  public int putMultiple(DirectBuffer key, DirectBuffer contiguousValues, int elementSize, int count, int flags) {
+    checkArgNotNull(key, "key");
+    checkMultiple(contiguousValues, elementSize, count);
+    return putMultiple(key.addressOffset(), key.capacity(), contiguousValues.addressOffset(), elementSize, count, flags);
+  }
+
+  static void checkMultiple(DirectBuffer contiguousValues, int elementSize, int count) {
+    checkArgNotNull(contiguousValues, "contiguousValues");
+    if (contiguousValues.byteArray() != null) {
+      throw new IllegalArgumentException("Value buffer is not direct.");
+    }
+    if (elementSize <= 0 || count < 0 || (long) elementSize * count > contiguousValues.capacity()) {
+      throw new IllegalArgumentException("Value buffer does not hold " + count + " elements of size " + elementSize);
+    }
+  }
+
+  /**
+   * Store count fixed size duplicates found at the given memory location.
+   *
+   * @return the number of elements written.
+   */
+  int putMultiple(long keyAddress, int keySize, long valuesAddress, int elementSize, int count, int flags) {
+    if (count == 0) {
+      return 0;
+    }
+    ensureBuffer();
+    Unsafe.putLong(bufferAddress, 0, keySize);
+    Unsafe.putLong(bufferAddress, 1, keyAddress);
+    Unsafe.putLong(bufferAddress, 2, elementSize);
+    Unsafe.putLong(bufferAddress, 3, valuesAddress);
+    Unsafe.putLong(bufferAddress, 4, count);
+    Unsafe.putLong(bufferAddress, 5, 0);
+    int rc = mdb_cursor_put_address(pointer(), bufferAddress, bufferAddress + 2 * Unsafe.ADDRESS_SIZE, flags | Constants.MULTIPLE);
+    checkErrorCode(rc);
+    return (int) Unsafe.getLong(bufferAddress, 4);
+  }
+
   private byte[] put(NativeBuffer keyBuffer, NativeBuffer valueBuffer, int flags) {
     return put(new Value(keyBuffer), new Value(valueBuffer), flags);
   }
 
   private byte[] put(Value keySlice, Value valueSlice, int flags) {
-    mdb_cursor_put(pointer(), keySlice, valueSlice, flags);
+    int rc = mdb_cursor_put(pointer(), keySlice, valueSlice, flags);
+    if (rc != LMDBException.KEYEXIST) {
+      checkErrorCode(rc);
+    }
     return valueSlice.toByteArray();
   }
 
@@ -278,10 +497,7 @@ public class Cursor extends NativeObject implements AutoCloseable {
     if (key.byteArray() != null || !key.byteBuffer().isDirect()) {
       throw new IllegalArgumentException("Key buffer is not direct.");
     }
-    if (buffer == null) {
-      buffer = new DirectBuffer(ByteBuffer.allocateDirect(Unsafe.ADDRESS_SIZE * 4));
-      bufferAddress = buffer.addressOffset();
-    }
+    ensureBuffer();
     Unsafe.putLong(bufferAddress, 0, key.capacity());
     Unsafe.putLong(bufferAddress, 1, key.addressOffset());
     Unsafe.putLong(bufferAddress, 2, size);
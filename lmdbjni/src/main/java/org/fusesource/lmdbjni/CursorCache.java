@@ -0,0 +1,137 @@
+package org.fusesource.lmdbjni;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed read only cursors of a database, kept for reuse with
+ * {@link Cursor#renew(Transaction)} instead of opening new ones.
+ * <p>
+ * A cursor handed out by the cache is released by its first close, from
+ * any thread. Closing it again is ignored, so a cursor is never in the
+ * cache twice. A close after the cursor has been handed out to another
+ * caller cannot be told apart from that caller's close, which is why a
+ * closed cursor must not be used again.
+ * </p>
+ *
+ * @see Database#openCachedCursor(Transaction)
+ * @see Database#cachedBufferCursor(Transaction)
+ */
+class CursorCache {
+  private final ConcurrentLinkedDeque<Cursor> cursors = new ConcurrentLinkedDeque<>();
+  private final ConcurrentLinkedDeque<BufferCursor> bufferCursors = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger cursorCount = new AtomicInteger();
+  private final AtomicInteger bufferCursorCount = new AtomicInteger();
+  private volatile int maxSize;
+  private volatile boolean closed = false;
+
+  CursorCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  void setMaxSize(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @return a cached cursor renewed with the transaction, or null if there is none.
+   */
+  Cursor takeCursor(Transaction tx) {
+    Cursor cursor = cursors.pollFirst();
+    if (cursor == null) {
+      return null;
+    }
+    cursorCount.decrementAndGet();
+    cursor.cached.set(false);
+    try {
+      cursor.renew(tx);
+    } catch (LMDBException e) {
+      // close the broken cursor for good rather than releasing it again
+      cursor.cache = null;
+      cursor.close();
+      throw e;
+    }
+    return cursor;
+  }
+
+  /**
+   * @return true if the cursor was kept, false if it should be closed.
+   */
+  boolean release(Cursor cursor) {
+    if (!cursor.cached.compareAndSet(false, true)) {
+      // closed again, only the first close releases the cursor
+      return true;
+    }
+    if (closed || !reserve(cursorCount)) {
+      cursor.cache = null;
+      return false;
+    }
+    cursors.offerFirst(cursor);
+    return true;
+  }
+
+  /**
+   * @return a cached buffer cursor renewed with the transaction, or null if there is none.
+   */
+  BufferCursor takeBufferCursor(Transaction tx) {
+    BufferCursor cursor = bufferCursors.pollFirst();
+    if (cursor == null) {
+      return null;
+    }
+    bufferCursorCount.decrementAndGet();
+    cursor.cached.set(false);
+    try {
+      cursor.renew(tx);
+    } catch (LMDBException e) {
+      // close the broken cursor for good rather than releasing it again
+      cursor.cache = null;
+      cursor.close();
+      throw e;
+    }
+    return cursor;
+  }
+
+  /**
+   * @return true if the cursor was kept, false if it should be closed.
+   */
+  boolean release(BufferCursor cursor) {
+    if (!cursor.cached.compareAndSet(false, true)) {
+      // closed again, only the first close releases the cursor
+      return true;
+    }
+    if (closed || !reserve(bufferCursorCount)) {
+      cursor.cache = null;
+      return false;
+    }
+    bufferCursors.offerFirst(cursor);
+    return true;
+  }
+
+  /**
+   * Close all cached cursors. Cursors released afterwards are closed.
+   */
+  void close() {
+    closed = true;
+    Cursor cursor;
+    while ((cursor = cursors.pollFirst()) != null) {
+      cursor.cache = null;
+      cursor.close();
+    }
+    BufferCursor bufferCursor;
+    while ((bufferCursor = bufferCursors.pollFirst()) != null) {
+      bufferCursor.cache = null;
+      bufferCursor.close();
+    }
+  }
+
+  private boolean reserve(AtomicInteger count) {
+    int current;
+    do {
+      current = count.get();
+      if (current >= maxSize) {
+        return false;
+      }
+    } while (!count.compareAndSet(current, current + 1));
+    return true;
+  }
+}
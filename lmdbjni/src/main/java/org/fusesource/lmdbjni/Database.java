@@ -36,9 +36,10 @@ import static org.fusesource.lmdbjni.Util.checkErrorCode;
  */
 public class Database extends NativeObject implements AutoCloseable {
 
-  private final Env env;
-  private Callback comparatorCallback;
-  private Callback directComparatorCallback;
+  final Env env;
+  private Callback compareCallback;
+  private Callback dupSortCallback;
+  private final CursorCache cursorCache = new CursorCache(16);
 
   Database(Env env, long self) {
     super(self);
@@ -62,14 +63,15 @@ public class Database extends NativeObject implements AutoCloseable {
    */
   @Override
   public void close() {
-    if (comparatorCallback != null) {
-      comparatorCallback.dispose();
-      comparatorCallback = null;
+    if (compareCallback != null) {
+      compareCallback.dispose();
+      compareCallback = null;
     }
-    if (directComparatorCallback != null) {
-      directComparatorCallback.dispose();
-      directComparatorCallback = null;
+    if (dupSortCallback != null) {
+      dupSortCallback.dispose();
+      dupSortCallback = null;
     }
+    cursorCache.close();
     if (self != 0) {
       mdb_dbi_close(env.pointer(), self);
       self = 0;
@@ -80,8 +82,11 @@ public class Database extends NativeObject implements AutoCloseable {
    * @return Statistics for a database.
    */
   public Stat stat() {
-    try (Transaction tx = env.createReadTransaction()) {
+    Transaction tx = env.borrowReadTransaction();
+    try {
       return new Stat(stat(tx));
+    } finally {
+      env.releaseReadTransaction(tx);
     }
   }
 
@@ -92,6 +97,18 @@ public class Database extends NativeObject implements AutoCloseable {
     return new Stat(rc);
   }
 
+  /**
+   * @param tx transaction handle
+   * @return the flags the database was opened with, such as
+   * {@link org.fusesource.lmdbjni.Constants#DUPSORT}.
+   */
+  public int getFlags(Transaction tx) {
+    checkArgNotNull(tx, "tx");
+    long[] flags = new long[1];
+    checkErrorCode(mdb_dbi_flags(tx.pointer(), pointer(), flags));
+    return (int) flags[0];
+  }
+
   /**
    * @see org.fusesource.lmdbjni.Database#drop(Transaction, boolean)
    */
@@ -124,8 +141,11 @@ public class Database extends NativeObject implements AutoCloseable {
    */
   public int get(DirectBuffer key, DirectBuffer value) {
     checkArgNotNull(key, "key");
-    try (Transaction tx = env.createReadTransaction()) {
+    Transaction tx = env.borrowReadTransaction();
+    try {
       return get(tx, key, value);
+    } finally {
+      env.releaseReadTransaction(tx);
     }
   }
 
@@ -162,13 +182,97 @@ public class Database extends NativeObject implements AutoCloseable {
     return rc;
   }
 
+  /**
+   * <p>
+   *   Get many items from a database in a single native call.
+   * </p>
+   *
+   * Every key in the array is looked up and the value buffer at the same index
+   * is wrapped around the memory address of the data found. Value buffers of
+   * keys that are not found are wrapped with address and capacity 0.
+   *
+   * @param tx transaction handle
+   * @param keys The keys to search for in the database
+   * @param values Value placeholders, at least as many as there are keys.
+   * @return the number of keys found.
+   */
+  public int getMany(Transaction tx, DirectBuffer[] keys, DirectBuffer[] values) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(keys, "keys");
+    checkArgNotNull(values, "values");
+    if (values.length < keys.length) {
+      throw new IllegalArgumentException("Fewer values than keys.");
+    }
+    int count = keys.length;
+    long keysAddress = tx.getBatchAddress(count * 5 * Unsafe.ADDRESS_SIZE);
+    long resultsAddress = keysAddress + count * 2 * Unsafe.ADDRESS_SIZE;
+    for (int i = 0; i < count; i++) {
+      Unsafe.putLong(keysAddress, 2 * i, keys[i].capacity());
+      Unsafe.putLong(keysAddress, 2 * i + 1, keys[i].addressOffset());
+    }
+    int found = getMany(tx, keysAddress, resultsAddress, count);
+    for (int i = 0; i < count; i++) {
+      int valSize = (int) Unsafe.getLong(resultsAddress, 3 * i + 1);
+      long valAddress = Unsafe.getAddress(resultsAddress, 3 * i + 2);
+      values[i].wrap(valAddress, valSize);
+    }
+    return found;
+  }
+
+  /**
+   * <p>
+   *   Get many items from a database in a single native call.
+   * </p>
+   *
+   * The keys buffer holds count packed MDB_val structs, i.e. the length followed
+   * by the memory address of each key as native words, 8 bytes each on 64 bit
+   * platforms. For every key, three native words are written into the results
+   * buffer: 1 if the key was found and 0 otherwise, followed by the length and
+   * memory address of the data. Data of keys that are not found have length and
+   * address 0.
+   *
+   * Both buffers must be direct. Data addresses are owned by the database and are
+   * only valid until the transaction ends or the next update operation.
+   *
+   * @param tx transaction handle
+   * @param keys packed key lengths and addresses, 2 native words per key.
+   * @param results found flags, data lengths and addresses, 3 native words per key.
+   * @param count number of keys to look up.
+   * @return the number of keys found.
+   * @throws IllegalArgumentException if count is negative.
+   */
+  public int getMany(Transaction tx, DirectBuffer keys, DirectBuffer results, int count) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(keys, "keys");
+    checkArgNotNull(results, "results");
+    if (keys.byteArray() != null || results.byteArray() != null) {
+      throw new IllegalArgumentException("Keys and results buffers must be direct.");
+    }
+    if (count < 0 || count > Integer.MAX_VALUE / (3 * Unsafe.ADDRESS_SIZE)) {
+      throw new IllegalArgumentException("count=" + count);
+    }
+    keys.checkLimit(count * 2 * Unsafe.ADDRESS_SIZE);
+    results.checkLimit(count * 3 * Unsafe.ADDRESS_SIZE);
+    return getMany(tx, keys.addressOffset(), results.addressOffset(), count);
+  }
+
+  private int getMany(Transaction tx, long keysAddress, long resultsAddress, int count) {
+    long found = tx.getBufferAddress();
+    int rc = batch_get(tx.pointer(), pointer(), keysAddress, resultsAddress, count, found);
+    checkErrorCode(rc);
+    return (int) Unsafe.getLong(found, 0);
+  }
+
   /**
    * @see org.fusesource.lmdbjni.Database#get(Transaction, byte[])
    */
   public byte[] get(byte[] key) {
     checkArgNotNull(key, "key");
-    try (Transaction tx = env.createReadTransaction()) {
+    Transaction tx = env.borrowReadTransaction();
+    try {
       return get(tx, key);
+    } finally {
+      env.releaseReadTransaction(tx);
     }
   }
 
@@ -191,6 +295,15 @@ public class Database extends NativeObject implements AutoCloseable {
   public byte[] get(Transaction tx, byte[] key) {
     checkArgNotNull(tx, "tx");
     checkArgNotNull(key, "key");
+    if (criticalArrays()) {
+      long address = tx.getBufferAddress();
+      int rc = array_get(tx.pointer(), pointer(), key, key.length, address);
+      if (rc == MDB_NOTFOUND) {
+        return null;
+      }
+      checkErrorCode(rc);
+      return Unsafe.toByteArray(address, 0);
+    }
     NativeBuffer keyBuffer = NativeBuffer.create(key);
     try {
       return get(tx, keyBuffer);
@@ -213,6 +326,26 @@ public class Database extends NativeObject implements AutoCloseable {
     return value.toByteArray();
   }
 
+  /**
+   * Compare two keys in the key order of this database, see mdb_cmp.
+   *
+   * @return less than, equal to or greater than 0 as a sorts before, with
+   * or after b.
+   */
+  int compare(Transaction tx, byte[] a, byte[] b) {
+    NativeBuffer aBuffer = NativeBuffer.create(a);
+    try {
+      NativeBuffer bBuffer = NativeBuffer.create(b);
+      try {
+        return mdb_cmp(tx.pointer(), pointer(), new Value(aBuffer), new Value(bBuffer));
+      } finally {
+        bBuffer.delete();
+      }
+    } finally {
+      aBuffer.delete();
+    }
+  }
+
   /**
    * <p>
    *   Creates a forward sequential iterator starting at
@@ -265,11 +398,115 @@ public class Database extends NativeObject implements AutoCloseable {
     return iterate(tx, null, IteratorType.BACKWARD);
   }
 
+  /**
+   * <p>
+   *   Creates a sequential iterator over a range of keys.
+   * </p>
+   *
+   * The stop bound of the range is checked natively in the same call that
+   * moves the cursor, so the first entry past the range is never copied.
+   *
+   * @param tx transaction handle
+   * @param range keys to iterate over and their order
+   * @return a closable iterator handle.
+   */
+  public EntryIterator iterate(Transaction tx, KeyRange range) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(range, "range");
+    Cursor cursor = openCursor(tx);
+    return new EntryIterator(cursor, range);
+  }
+
   private EntryIterator iterate(Transaction tx, byte[] key, IteratorType type) {
     Cursor cursor = openCursor(tx);
     return new EntryIterator(cursor, key, type);
   }
 
+  /**
+   * <p>
+   *   Creates a forward zero copy iterator starting at
+   *   first key greater than or equal to specified key.
+   * </p>
+   *
+   * @param tx transaction handle
+   * @param key start position, backed by direct memory
+   * @return a closable iterator handle.
+   * @see org.fusesource.lmdbjni.BufferEntryIterator
+   */
+  public BufferEntryIterator seekBuffers(Transaction tx, DirectBuffer key) {
+    checkArgNotNull(key, "key");
+    return iterateBuffers(tx, key, IteratorType.FORWARD);
+  }
+
+  /**
+   * <p>
+   *   Creates a backward zero copy iterator starting at
+   *   first key greater than or equal to specified key.
+   * </p>
+   *
+   * @param tx transaction handle
+   * @param key start position, backed by direct memory
+   * @return a closable iterator handle.
+   * @see org.fusesource.lmdbjni.BufferEntryIterator
+   */
+  public BufferEntryIterator seekBuffersBackward(Transaction tx, DirectBuffer key) {
+    checkArgNotNull(key, "key");
+    return iterateBuffers(tx, key, IteratorType.BACKWARD);
+  }
+
+  /**
+   * <p>
+   *   Creates a forward zero copy iterator from the first key.
+   * </p>
+   *
+   * @param tx transaction handle
+   * @return a closable iterator handle.
+   * @see org.fusesource.lmdbjni.BufferEntryIterator
+   */
+  public BufferEntryIterator iterateBuffers(Transaction tx) {
+    return iterateBuffers(tx, null, IteratorType.FORWARD);
+  }
+
+  /**
+   * <p>
+   *   Creates a backward zero copy iterator from the last key.
+   * </p>
+   *
+   * @param tx transaction handle
+   * @return a closable iterator handle.
+   * @see org.fusesource.lmdbjni.BufferEntryIterator
+   */
+  public BufferEntryIterator iterateBuffersBackward(Transaction tx) {
+    return iterateBuffers(tx, null, IteratorType.BACKWARD);
+  }
+
+  /**
+   * <p>
+   *   Creates a zero copy iterator over a range of keys.
+   * </p>
+   *
+   * @param tx transaction handle
+   * @param range keys to iterate over and their order
+   * @return a closable iterator handle.
+   * @see org.fusesource.lmdbjni.Database#iterate(Transaction, KeyRange)
+   */
+  public BufferEntryIterator iterateBuffers(Transaction tx, KeyRange range) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(range, "range");
+    return new BufferEntryIterator(openCursor(tx), range);
+  }
+
+  private BufferEntryIterator iterateBuffers(Transaction tx, DirectBuffer key, IteratorType type) {
+    checkArgNotNull(tx, "tx");
+    Cursor cursor = openCursor(tx);
+    try {
+      return new BufferEntryIterator(cursor, key, type);
+    } catch (IllegalArgumentException e) {
+      cursor.close();
+      throw e;
+    }
+  }
+
   /**
    * <p>
    *   Creates a cursor for doing zero copy operations.
@@ -326,10 +563,17 @@ public class Database extends NativeObject implements AutoCloseable {
    */
   public int put(DirectBuffer key, DirectBuffer value, int flags) {
     checkArgNotNull(key, "key");
-    try (Transaction tx = env.createWriteTransaction()) {
-      int ret = put(tx, key, value, flags);
-      tx.commit();
-      return ret;
+    while (true) {
+      long generation = env.mapGeneration();
+      try (Transaction tx = env.createWriteTransaction()) {
+        int ret = put(tx, key, value, flags);
+        tx.commit();
+        return ret;
+      } catch (LMDBException e) {
+        if (!env.growMap(e, generation)) {
+          throw e;
+        }
+      }
     }
   }
 
@@ -357,6 +601,52 @@ public class Database extends NativeObject implements AutoCloseable {
     return rc;
   }
 
+  /**
+   * @see org.fusesource.lmdbjni.Database#write(Transaction, WriteBatch)
+   */
+  public int write(WriteBatch batch) {
+    checkArgNotNull(batch, "batch");
+    while (true) {
+      long generation = env.mapGeneration();
+      try (Transaction tx = env.createWriteTransaction()) {
+        int ret = write(tx, batch);
+        tx.commit();
+        return ret;
+      } catch (LMDBException e) {
+        if (!env.growMap(e, generation)) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Apply all records of a batch in a single native call.
+   * </p>
+   *
+   * Records are applied in the order they were added. Puts rejected with
+   * {@link org.fusesource.lmdbjni.LMDBException#KEYEXIST} and deletes of
+   * missing keys do not stop the batch, their result codes are available
+   * from {@link WriteBatch#result(int)}. Any other error stops the batch
+   * and is thrown, leaving the transaction with the records applied so far.
+   *
+   * @param tx transaction handle
+   * @param batch records to apply
+   * @return the number of records that were not applied because of
+   * {@link org.fusesource.lmdbjni.LMDBException#KEYEXIST} or
+   * {@link org.fusesource.lmdbjni.LMDBException#NOTFOUND}.
+   */
+  public int write(Transaction tx, WriteBatch batch) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(batch, "batch");
+    long skipped = tx.getBufferAddress();
+    int rc = batch_write(tx.pointer(), pointer(), batch.recordsAddress(), batch.length(),
+      batch.resultsAddress(), skipped);
+    checkErrorCode(rc);
+    return (int) Unsafe.getLong(skipped, 0);
+  }
+
   /**
    * Just reserve space for data in the database, don't copy it.
    *
@@ -364,18 +654,115 @@ public class Database extends NativeObject implements AutoCloseable {
    */
   public DirectBuffer reserve(Transaction tx, DirectBuffer key, int size) {
     checkArgNotNull(key, "key");
+    DirectBuffer empty = new DirectBuffer(0, 0);
+    checkErrorCode(reserve(tx, key, size, 0, empty));
+    return empty;
+  }
+
+  /**
+   * Reserve space for a value of size bytes and wrap value around it. With
+   * {@link org.fusesource.lmdbjni.Constants#NOOVERWRITE} value is wrapped
+   * around the existing value instead if the key already exists.
+   *
+   * @return 0 or {@link org.fusesource.lmdbjni.JNI#MDB_KEYEXIST}.
+   */
+  int reserve(Transaction tx, DirectBuffer key, int size, int flags, DirectBuffer value) {
     long address = tx.getBufferAddress();
     Unsafe.putLong(address, 0, key.capacity());
     Unsafe.putLong(address, 1, key.addressOffset());
     Unsafe.putLong(address, 2, size);
 
-    int rc = mdb_put_address(tx.pointer(), pointer(), address, address + 2 * Unsafe.ADDRESS_SIZE, Constants.RESERVE);
-    checkErrorCode(rc);
+    int rc = mdb_put_address(tx.pointer(), pointer(), address, address + 2 * Unsafe.ADDRESS_SIZE,
+      flags | Constants.RESERVE);
+    if (rc != MDB_KEYEXIST) {
+      checkErrorCode(rc);
+    }
     int valSize = (int) Unsafe.getLong(address, 2);
     long valAddress = Unsafe.getAddress(address, 3);
-    DirectBuffer empty = new DirectBuffer(0, 0);
-    empty.wrap(valAddress, valSize);
-    return empty;
+    value.wrap(valAddress, valSize);
+    return rc;
+  }
+
+  /**
+   * <p>
+   *   Reserve space for a value of size bytes and stream the value into it.
+   * </p>
+   *
+   * The value is written straight into the database page, without a copy
+   * on the Java heap. Exactly size bytes must be written before the stream
+   * is closed, and no other update may be made in the transaction until
+   * then. Not supported by {@link org.fusesource.lmdbjni.Constants#DUPSORT}
+   * databases.
+   *
+   * <pre>
+   * {@code
+   * try (Transaction tx = env.createWriteTransaction()) {
+   *   try (ValueOutputStream out = db.openValueOutputStream(tx, key, (int) file.length())) {
+   *     Files.copy(file.toPath(), out);
+   *   }
+   *   tx.commit();
+   * }
+   * }
+   * </pre>
+   *
+   * @param tx write transaction handle
+   * @param key key to store
+   * @param size size of the value in bytes
+   * @return a stream that is also a {@link java.nio.channels.WritableByteChannel}.
+   */
+  public ValueOutputStream openValueOutputStream(Transaction tx, byte[] key, int size) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(key, "key");
+    if (size < 0) {
+      throw new IllegalArgumentException("size must not be negative");
+    }
+    DirectBuffer value = new DirectBuffer(0, 0);
+    reserve(tx, directKey(tx, key), size, 0, value);
+    return new ValueOutputStream(byteBuffer(value));
+  }
+
+  /**
+   * Stream a value out of the memory map. The stream is only valid until
+   * the transaction ends or the value is changed.
+   *
+   * @param tx transaction handle
+   * @param key key to look up
+   * @return a stream that is also a {@link java.nio.channels.ReadableByteChannel},
+   * or null if the key is not found.
+   */
+  public ValueInputStream openValueInputStream(Transaction tx, byte[] key) {
+    ByteBuffer buffer = getByteBuffer(tx, key);
+    return buffer == null ? null : new ValueInputStream(buffer);
+  }
+
+  /**
+   * A read only view of a value in the memory map, without copying it. The
+   * view is only valid until the transaction ends or the value is changed.
+   *
+   * @param tx transaction handle
+   * @param key key to look up
+   * @return the value, or null if the key is not found.
+   */
+  public ByteBuffer getByteBuffer(Transaction tx, byte[] key) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(key, "key");
+    DirectBuffer value = new DirectBuffer(0, 0);
+    int rc = get(tx, directKey(tx, key), value);
+    if (rc == MDB_NOTFOUND) {
+      return null;
+    }
+    checkErrorCode(rc);
+    return byteBuffer(value).asReadOnlyBuffer();
+  }
+
+  private static DirectBuffer directKey(Transaction tx, byte[] key) {
+    DirectBuffer buffer = new DirectBuffer(tx.getBatchAddress(key.length), key.length);
+    buffer.putBytes(0, key);
+    return buffer;
+  }
+
+  private static ByteBuffer byteBuffer(DirectBuffer value) {
+    return (ByteBuffer) NewDirectByteBuffer(value.addressOffset(), value.capacity());
   }
 
   /**
@@ -390,10 +777,17 @@ public class Database extends NativeObject implements AutoCloseable {
    */
   public byte[] put(byte[] key, byte[] value, int flags) {
     checkArgNotNull(key, "key");
-    try (Transaction tx = env.createWriteTransaction()) {
-      byte[] ret = put(tx, key, value, flags);
-      tx.commit();
-      return ret;
+    while (true) {
+      long generation = env.mapGeneration();
+      try (Transaction tx = env.createWriteTransaction()) {
+        byte[] ret = put(tx, key, value, flags);
+        tx.commit();
+        return ret;
+      } catch (LMDBException e) {
+        if (!env.growMap(e, generation)) {
+          throw e;
+        }
+      }
     }
   }
 
@@ -454,6 +848,16 @@ public class Database extends NativeObject implements AutoCloseable {
     checkArgNotNull(tx, "tx");
     checkArgNotNull(key, "key");
     checkArgNotNull(value, "value");
+    if (criticalArrays()) {
+      long address = tx.getBufferAddress();
+      int rc = array_put(tx.pointer(), pointer(), key, key.length, value, value.length, address, flags);
+      if ((flags & MDB_NOOVERWRITE) != 0 && rc == MDB_KEYEXIST) {
+        // Return the existing value if it was a dup insert attempt.
+        return Unsafe.toByteArray(address, 0);
+      }
+      checkErrorCode(rc);
+      return null;
+    }
     NativeBuffer keyBuffer = NativeBuffer.create(key);
     try {
       NativeBuffer valueBuffer = NativeBuffer.create(value);
@@ -514,14 +918,33 @@ public class Database extends NativeObject implements AutoCloseable {
    * @see org.fusesource.lmdbjni.Database#delete(Transaction, byte[], byte[])
    */
   public boolean delete(Transaction tx, DirectBuffer key, DirectBuffer value) {
-    byte[] keyBytes = new byte[key.capacity()];
-    byte[] valueBytes = null;
-    key.getBytes(0, keyBytes);
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(key, "key");
+    if (key.byteArray() != null || (value != null && value.byteArray() != null)) {
+      // heap buffers have no stable address to hand to LMDB
+      return delete(tx, toByteArray(key), value == null ? null : toByteArray(value));
+    }
+    long address = tx.getBufferAddress();
+    Unsafe.putLong(address, 0, key.capacity());
+    Unsafe.putLong(address, 1, key.addressOffset());
+    long valueAddress = 0;
     if (value != null) {
-      valueBytes = new byte[value.capacity()];
-      value.getBytes(0, valueBytes);
+      valueAddress = address + 2 * Unsafe.ADDRESS_SIZE;
+      Unsafe.putLong(address, 2, value.capacity());
+      Unsafe.putLong(address, 3, value.addressOffset());
     }
-    return delete(tx, keyBytes, valueBytes);
+    int rc = mdb_del_address(tx.pointer(), pointer(), address, valueAddress);
+    if (rc == MDB_NOTFOUND) {
+      return false;
+    }
+    checkErrorCode(rc);
+    return true;
+  }
+
+  private static byte[] toByteArray(DirectBuffer buffer) {
+    byte[] bytes = new byte[buffer.capacity()];
+    buffer.getBytes(0, bytes);
+    return bytes;
   }
 
   /**
@@ -625,7 +1048,86 @@ public class Database extends NativeObject implements AutoCloseable {
   public Cursor openCursor(Transaction tx) {
     long cursor[] = new long[1];
     checkErrorCode(mdb_cursor_open(tx.pointer(), pointer(), cursor));
-    return new Cursor(cursor[0], tx.isReadOnly());
+    Cursor c = new Cursor(cursor[0], tx.isReadOnly());
+    c.criticalArrays = criticalArrays();
+    return c;
+  }
+
+  /**
+   * Java arrays can be handed to LMDB pinned with JNI critical array access
+   * as long as LMDB does not call back into Java while they are pinned.
+   */
+  boolean criticalArrays() {
+    return Unsafe.UNSAFE != null && !env.comparatorUpcalls;
+  }
+
+  /**
+   * <p>
+   *   Open a cursor from the cursor cache of this database.
+   * </p>
+   *
+   * When a read only cursor from this method is closed it is kept in the
+   * cache instead of being freed, and handed out again with
+   * {@link Cursor#renew(Transaction)}. This saves the allocation of native and
+   * direct memory for cursors that are opened frequently. A closed cursor must
+   * not be used again, since it may already belong to another caller. The
+   * first close releases it from any thread, further closes are ignored.
+   * Cursors of write transactions are opened and closed as usual.
+   *
+   * @param tx transaction handle
+   * @return a closable cursor handle.
+   * @see org.fusesource.lmdbjni.Database#setCursorCacheSize(int)
+   */
+  public Cursor openCachedCursor(Transaction tx) {
+    checkArgNotNull(tx, "tx");
+    if (!tx.isReadOnly()) {
+      return openCursor(tx);
+    }
+    Cursor cursor = cursorCache.takeCursor(tx);
+    if (cursor == null) {
+      cursor = openCursor(tx);
+      cursor.cache = cursorCache;
+    }
+    return cursor;
+  }
+
+  /**
+   * <p>
+   *   Creates a cursor for doing zero copy operations from the cursor
+   *   cache of this database.
+   * </p>
+   *
+   * Like {@link org.fusesource.lmdbjni.Database#openCachedCursor(Transaction)},
+   * closing a read only buffer cursor keeps it, along with its key and value
+   * buffers, for reuse.
+   *
+   * @param tx transaction handle
+   * @return a closable cursor handle.
+   */
+  public BufferCursor cachedBufferCursor(Transaction tx) {
+    checkArgNotNull(tx, "tx");
+    if (!tx.isReadOnly()) {
+      return bufferCursor(tx);
+    }
+    BufferCursor cursor = cursorCache.takeBufferCursor(tx);
+    if (cursor == null) {
+      cursor = bufferCursor(tx);
+      cursor.cache = cursorCache;
+    }
+    return cursor;
+  }
+
+  /**
+   * Set the maximum number of closed cursors, and separately buffer cursors,
+   * kept in the cursor cache. Defaults to 16.
+   *
+   * @param size maximum number of cached cursors, 0 disables caching.
+   */
+  public void setCursorCacheSize(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("size must not be negative");
+    }
+    cursorCache.setMaxSize(size);
   }
 
   /**
@@ -649,11 +1151,7 @@ public class Database extends NativeObject implements AutoCloseable {
    * @param comparator a byte array comparator
    */
   public void setComparator(Transaction tx, Comparator<byte[]> comparator) {
-    if (comparatorCallback != null) {
-      comparatorCallback.dispose();
-    }
-    comparatorCallback = new Callback(new ByteArrayComparator(comparator), "compare", 2);
-    JNI.mdb_set_compare(tx.pointer(), this.pointer(), comparatorCallback.getAddress());
+    setCompareCallback(tx, new ByteArrayComparator(comparator));
   }
 
   /**
@@ -673,15 +1171,40 @@ public class Database extends NativeObject implements AutoCloseable {
    *   Does not work on Android at the moment (related to hawtjni-callback).
    * </p>
    *
+   * The buffers passed to the comparator are reused by the calling thread and
+   * must not be retained after compare returns.
+   *
    * @param tx Transaction handle.
    * @param comparator a zero copy comparator
    */
   public void setDirectComparator(Transaction tx, Comparator<DirectBuffer> comparator) {
-    if (directComparatorCallback != null) {
-      directComparatorCallback.dispose();
-    }
-    directComparatorCallback = new Callback(new DirectBufferComparator(comparator), "compare", 2);
-    JNI.mdb_set_compare(tx.pointer(), this.pointer(), directComparatorCallback.getAddress());
+    setCompareCallback(tx, new DirectBufferComparator(comparator));
+  }
+
+  /**
+   * <p>
+   * Set a custom key comparison function for this database that is handed the
+   * address and size of each key.
+   * </p>
+   *
+   * Unlike {@link #setComparator(Transaction, Comparator)} and
+   * {@link #setDirectComparator(Transaction, Comparator)} no objects are allocated
+   * for each comparison.
+   *
+   * This function must be called before any data access functions are used, otherwise data corruption
+   * may occur. The same comparison function must be used by every program accessing the database,
+   * every time the database is used.
+   *
+   * <p>
+   *   Does not work on Android at the moment (related to hawtjni-callback).
+   * </p>
+   *
+   * @param tx Transaction handle.
+   * @param comparator an address comparator
+   */
+  public void setKeyComparator(Transaction tx, KeyComparator comparator) {
+    checkArgNotNull(comparator, "comparator");
+    setCompareCallback(tx, new AddressComparator(comparator));
   }
 
   /**
@@ -707,11 +1230,7 @@ public class Database extends NativeObject implements AutoCloseable {
    * @param comparator a byte array comparator
    */
   public void setDupSortComparator(Transaction tx, Comparator<byte[]> comparator) {
-    if (comparatorCallback != null) {
-      comparatorCallback.dispose();
-    }
-    comparatorCallback = new Callback(new ByteArrayComparator(comparator), "compare", 2);
-    JNI.mdb_set_dupsort(tx.pointer(), this.pointer(), comparatorCallback.getAddress());
+    setDupSortCallback(tx, new ByteArrayComparator(comparator));
   }
 
   /**
@@ -733,15 +1252,103 @@ public class Database extends NativeObject implements AutoCloseable {
    *   Does not work on Android at the moment (related to hawtjni-callback).
    * </p>
    *
+   * The buffers passed to the comparator are reused by the calling thread and
+   * must not be retained after compare returns.
+   *
    * @param tx Transaction handle.
    * @param comparator a zero copy comparator
    */
   public void setDirectDupSortComparator(Transaction tx, Comparator<DirectBuffer> comparator) {
-    if (directComparatorCallback != null) {
-      directComparatorCallback.dispose();
+    setDupSortCallback(tx, new DirectBufferComparator(comparator));
+  }
+
+  /**
+   * <p>
+   * Set a custom data comparison function for a MDB_DUPSORT database that is handed
+   * the address and size of each data item.
+   * </p>
+   *
+   * <p>
+   *   Does not work on Android at the moment (related to hawtjni-callback).
+   * </p>
+   *
+   * @param tx Transaction handle.
+   * @param comparator an address comparator
+   * @see org.fusesource.lmdbjni.Database#setKeyComparator(Transaction, KeyComparator)
+   */
+  public void setKeyDupSortComparator(Transaction tx, KeyComparator comparator) {
+    checkArgNotNull(comparator, "comparator");
+    setDupSortCallback(tx, new AddressComparator(comparator));
+  }
+
+  /**
+   * <p>
+   * Set a built-in key comparison function for this database.
+   * </p>
+   *
+   * The comparator is implemented in C, so keys are compared without calling back
+   * into Java. This function must be called before any data access functions are used,
+   * otherwise data corruption may occur. The same comparison function must be used by
+   * every program accessing the database, every time the database is used.
+   *
+   * @param tx Transaction handle.
+   * @param comparator a built-in comparator
+   */
+  public void setNativeComparator(Transaction tx, NativeComparator comparator) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(comparator, "comparator");
+    checkErrorCode(JNI.mdb_set_compare(tx.pointer(), this.pointer(), comparator.address()));
+  }
+
+  /**
+   * <p>
+   * Set a built-in data comparison function for a MDB_DUPSORT database.
+   * </p>
+   *
+   * @param tx Transaction handle.
+   * @param comparator a built-in comparator
+   * @see org.fusesource.lmdbjni.Database#setNativeComparator(Transaction, NativeComparator)
+   */
+  public void setNativeDupSortComparator(Transaction tx, NativeComparator comparator) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(comparator, "comparator");
+    checkErrorCode(JNI.mdb_set_dupsort(tx.pointer(), this.pointer(), comparator.address()));
+  }
+
+  private void setCompareCallback(Transaction tx, Object comparator) {
+    env.comparatorUpcalls = true;
+    Callback callback = new Callback(comparator, "compare", 2);
+    JNI.mdb_set_compare(tx.pointer(), this.pointer(), callback.getAddress());
+    if (compareCallback != null) {
+      compareCallback.dispose();
+    }
+    compareCallback = callback;
+  }
+
+  private void setDupSortCallback(Transaction tx, Object comparator) {
+    env.comparatorUpcalls = true;
+    Callback callback = new Callback(comparator, "compare", 2);
+    JNI.mdb_set_dupsort(tx.pointer(), this.pointer(), callback.getAddress());
+    if (dupSortCallback != null) {
+      dupSortCallback.dispose();
+    }
+    dupSortCallback = callback;
+  }
+
+  /**
+   * Called from LMDB with two MDB_val pointers.
+   */
+  private static final class AddressComparator {
+    KeyComparator comparator;
+
+    public AddressComparator(KeyComparator comparator) {
+      this.comparator = comparator;
+    }
+
+    public long compare(long ptr1, long ptr2) {
+      return comparator.compare(Unsafe.getAddress(ptr1, 1), (int) Unsafe.getLong(ptr1, 0),
+        Unsafe.getAddress(ptr2, 1), (int) Unsafe.getLong(ptr2, 0));
     }
-    directComparatorCallback = new Callback(new DirectBufferComparator(comparator), "compare", 2);
-    JNI.mdb_set_dupsort(tx.pointer(), this.pointer(), directComparatorCallback.getAddress());
   }
 
   private static final class ByteArrayComparator {
@@ -752,23 +1359,27 @@ public class Database extends NativeObject implements AutoCloseable {
     }
 
     public long compare(long ptr1, long ptr2) {
-      int size = (int) Unsafe.getLong(ptr1, 0);
-      long address = Unsafe.getAddress(ptr1, 1);
-      DirectBuffer key1 = new DirectBuffer();
-      key1.wrap(address, size);
-      byte[] key1Bytes = new byte[size];
-      key1.getBytes(0, key1Bytes);
-      size = (int) Unsafe.getLong(ptr2, 0);
-      address = Unsafe.getAddress(ptr2, 1);
-      DirectBuffer key2 = new DirectBuffer();
-      key2.wrap(address, size);
-      byte[] key2Bytes = new byte[size];
-      key2.getBytes(0, key2Bytes);
-      return comparator.compare(key1Bytes, key2Bytes);
+      byte[] key1 = new byte[(int) Unsafe.getLong(ptr1, 0)];
+      Unsafe.getBytes(Unsafe.getAddress(ptr1, 1), 0, key1);
+      byte[] key2 = new byte[(int) Unsafe.getLong(ptr2, 0)];
+      Unsafe.getBytes(Unsafe.getAddress(ptr2, 1), 0, key2);
+      return comparator.compare(key1, key2);
     }
   }
 
+  /**
+   * Wraps both items in flyweight buffers owned by the calling thread. The
+   * buffers are only valid for the duration of the call and must not be
+   * retained by the comparator.
+   */
   private static final class DirectBufferComparator {
+    private static final ThreadLocal<DirectBuffer[]> FLYWEIGHTS = new ThreadLocal<DirectBuffer[]>() {
+      @Override
+      protected DirectBuffer[] initialValue() {
+        return new DirectBuffer[]{new DirectBuffer(), new DirectBuffer()};
+      }
+    };
+
     Comparator<DirectBuffer> comparator;
 
     public DirectBufferComparator(Comparator<DirectBuffer> comparator) {
@@ -776,14 +1387,11 @@ public class Database extends NativeObject implements AutoCloseable {
     }
 
     public long compare(long ptr1, long ptr2) {
-      int size = (int) Unsafe.getLong(ptr1, 0);
-      long address = Unsafe.getAddress(ptr1, 1);
-      DirectBuffer key1 = new DirectBuffer();
-      key1.wrap(address, size);
-      size = (int) Unsafe.getLong(ptr2, 0);
-      address = Unsafe.getAddress(ptr2, 1);
-      DirectBuffer key2 = new DirectBuffer();
-      key2.wrap(address, size);
+      DirectBuffer[] buffers = FLYWEIGHTS.get();
+      DirectBuffer key1 = buffers[0];
+      DirectBuffer key2 = buffers[1];
+      key1.wrap(Unsafe.getAddress(ptr1, 1), (int) Unsafe.getLong(ptr1, 0));
+      key2.wrap(Unsafe.getAddress(ptr2, 1), (int) Unsafe.getLong(ptr2, 0));
       return comparator.compare(key1, key2);
     }
   }
@@ -20,12 +20,21 @@ public class EntryIterator implements Iterator<Entry>, AutoCloseable {
   private final Cursor cursor;
   private final IteratorType type;
   private final byte[] key;
+  private final KeyRange range;
   private State state = State.NOT_READY;
 
   EntryIterator(Cursor cursor, byte[] key, IteratorType type) {
     this.cursor = cursor;
     this.type = type;
     this.key = key;
+    this.range = null;
+  }
+
+  EntryIterator(Cursor cursor, KeyRange range) {
+    this.cursor = cursor;
+    this.type = range.isBackward() ? IteratorType.BACKWARD : IteratorType.FORWARD;
+    this.key = null;
+    this.range = range;
   }
 
   private enum State {
@@ -48,7 +57,14 @@ public class EntryIterator implements Iterator<Entry>, AutoCloseable {
   }
 
   private boolean tryToComputeNext() {
-    if (first) {
+    if (range != null) {
+      this.entry = cursor.getRange(range, first);
+      first = false;
+      if (entry == null) {
+        state = State.DONE;
+        return false;
+      }
+    } else if (first) {
       if (key != null) {
         this.entry = cursor.seek(SeekOp.RANGE, key);
       } else {
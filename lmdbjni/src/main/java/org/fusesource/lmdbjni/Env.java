@@ -18,6 +18,11 @@
 
 package org.fusesource.lmdbjni;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 import static org.fusesource.lmdbjni.JNI.*;
 import static org.fusesource.lmdbjni.Util.*;
 
@@ -32,6 +37,17 @@ public class Env extends NativeObject implements AutoCloseable {
     return string(JNI.MDB_VERSION_STRING);
   }
   private boolean open = false;
+  private volatile ReadTransactionPool readTransactionPool;
+  private volatile MapGrowthPolicy mapGrowthPolicy;
+  private final ReentrantReadWriteLock mapGrowthLock = new ReentrantReadWriteLock();
+  private volatile long mapGeneration = 0;
+  /** read transactions holding a snapshot, or GROWING while the map is remapped */
+  private final AtomicInteger liveReaders = new AtomicInteger();
+  private static final int GROWING = -1;
+  private final Object readerMonitor = new Object();
+  private volatile boolean growthWaiting;
+  /** set once a Java comparator is installed, which rules out JNI critical array access */
+  volatile boolean comparatorUpcalls = false;
 
   /**
    * Create an environment handle and open it at the same time with
@@ -204,6 +220,10 @@ public class Env extends NativeObject implements AutoCloseable {
    */
   @Override
   public void close() {
+    if (readTransactionPool != null) {
+      readTransactionPool.close();
+      readTransactionPool = null;
+    }
     if (self != 0) {
       mdb_env_close(self);
       self = 0;
@@ -447,9 +467,297 @@ public class Env extends NativeObject implements AutoCloseable {
    */
   public Transaction createTransaction(Transaction parent, boolean readOnly) {
     checkOpen();
+    Lock growthLock = null;
+    if (!readOnly && parent == null && mapGrowthPolicy != null) {
+      // the map is only grown when no write transaction is active
+      growthLock = mapGrowthLock.readLock();
+      growthLock.lock();
+    }
+    if (readOnly) {
+      beginRead();
+    }
     long txpointer[] = new long[1];
-    checkErrorCode(mdb_txn_begin(pointer(), parent == null ? 0 : parent.pointer(), readOnly ? MDB_RDONLY : 0, txpointer));
-    return new Transaction(txpointer[0], readOnly);
+    int rc = mdb_txn_begin(pointer(), parent == null ? 0 : parent.pointer(), readOnly ? MDB_RDONLY : 0, txpointer);
+    if (rc != 0) {
+      if (growthLock != null) {
+        growthLock.unlock();
+      }
+      if (readOnly) {
+        endRead();
+      }
+    }
+    checkErrorCode(rc);
+    Transaction tx = new Transaction(txpointer[0], readOnly);
+    tx.growthLock = growthLock;
+    if (readOnly) {
+      tx.readerEnv = this;
+      tx.reading = true;
+    }
+    return tx;
+  }
+
+  /**
+   * <p>
+   * Grow the memory map when a write fails with
+   * {@link org.fusesource.lmdbjni.LMDBException#MAP_FULL}.
+   * </p>
+   *
+   * The write is replayed by {@link Env#write(WriteCoordinator.Write)}, the
+   * {@link org.fusesource.lmdbjni.WriteCoordinator} and the convenience put
+   * methods of {@link org.fusesource.lmdbjni.Database} that do not take a transaction.
+   * Writes in transactions created by the caller still throw MAP_FULL, and should be
+   * passed to {@link Env#write(WriteCoordinator.Write)} to be replayed.
+   * <p>
+   * While a policy is set, write transactions of this environment hold a shared lock
+   * and growing the map waits for all of them to finish. Growing the map remaps it,
+   * so it also waits for the read transactions of this process to end or be reset,
+   * and holds back new ones while the map is remapped. If readers are still active
+   * after {@link MapGrowthPolicy#setReaderWait(long, TimeUnit)} the map is not grown
+   * and the write fails with MAP_FULL, which always happens when the writing thread
+   * holds a read transaction itself.
+   * </p>
+   *
+   * @param policy growth policy, or null to disable growing.
+   */
+  public void setMapGrowthPolicy(MapGrowthPolicy policy) {
+    this.mapGrowthPolicy = policy;
+  }
+
+  public MapGrowthPolicy getMapGrowthPolicy() {
+    return mapGrowthPolicy;
+  }
+
+  /**
+   * <p>
+   * Run a write in a new write transaction and commit it.
+   * </p>
+   *
+   * If the write or the commit fails with {@link org.fusesource.lmdbjni.LMDBException#MAP_FULL}
+   * and a {@link MapGrowthPolicy} is set, the transaction is aborted, the map is grown and the
+   * write is run again in a new transaction. The write must therefore not have side
+   * effects outside of the transaction.
+   *
+   * @param write the write to run, possibly several times.
+   * @return the result of the write
+   * @throws Exception thrown by the write, or MAP_FULL once the map has reached its ceiling.
+   */
+  public <T> T write(WriteCoordinator.Write<T> write) throws Exception {
+    checkArgNotNull(write, "write");
+    while (true) {
+      long generation = mapGeneration;
+      try (Transaction tx = createWriteTransaction()) {
+        T result = write.write(tx);
+        tx.commit();
+        return result;
+      } catch (LMDBException e) {
+        if (!growMap(e, generation)) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Incremented each time the map is grown.
+   */
+  long mapGeneration() {
+    return mapGeneration;
+  }
+
+  /**
+   * Grow the map after a MAP_FULL failure of a write transaction that has
+   * already ended. The map is not grown again if it has been grown since
+   * the failed transaction started.
+   *
+   * @param e the failure
+   * @param generation map generation when the failed transaction started.
+   * @return true if the transaction should be run again
+   */
+  boolean growMap(LMDBException e, long generation) {
+    MapGrowthPolicy policy = mapGrowthPolicy;
+    if (policy == null || e.getErrorCode() != LMDBException.MAP_FULL
+      || mapGrowthLock.getReadHoldCount() > 0) {
+      return false;
+    }
+    long oldSize;
+    long newSize;
+    Lock lock = mapGrowthLock.writeLock();
+    lock.lock();
+    try {
+      if (generation != mapGeneration) {
+        return true;
+      }
+      oldSize = info().getMapSize();
+      newSize = policy.nextSize(oldSize);
+      if (newSize < 0 || !drainReaders(policy.getReaderWaitNanos())) {
+        return false;
+      }
+      try {
+        setMapSize(newSize);
+        mapGeneration++;
+      } finally {
+        resumeReaders();
+      }
+    } finally {
+      lock.unlock();
+    }
+    MapGrowthPolicy.Listener listener = policy.getListener();
+    if (listener != null) {
+      listener.mapGrown(oldSize, newSize);
+    }
+    return true;
+  }
+
+  /**
+   * Count a read transaction that is about to take a snapshot, waiting
+   * while the map is remapped.
+   */
+  void beginRead() {
+    boolean interrupted = false;
+    while (true) {
+      int readers = liveReaders.get();
+      if (readers != GROWING) {
+        if (liveReaders.compareAndSet(readers, readers + 1)) {
+          break;
+        }
+        continue;
+      }
+      synchronized (readerMonitor) {
+        while (liveReaders.get() == GROWING) {
+          try {
+            readerMonitor.wait();
+          } catch (InterruptedException e) {
+            // the map is remapped quickly, finish waiting
+            interrupted = true;
+          }
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * A read transaction counted by {@link #beginRead()} was reset or ended.
+   */
+  void endRead() {
+    if (liveReaders.decrementAndGet() == 0 && growthWaiting) {
+      synchronized (readerMonitor) {
+        readerMonitor.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Wait for all read transactions to end and hold back new ones.
+   *
+   * @return false if read transactions are still active after nanos.
+   */
+  private boolean drainReaders(long nanos) {
+    long deadline = System.nanoTime() + nanos;
+    synchronized (readerMonitor) {
+      growthWaiting = true;
+      try {
+        while (!liveReaders.compareAndSet(0, GROWING)) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            return false;
+          }
+          TimeUnit.NANOSECONDS.timedWait(readerMonitor, remaining);
+        }
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } finally {
+        growthWaiting = false;
+      }
+    }
+  }
+
+  private void resumeReaders() {
+    synchronized (readerMonitor) {
+      liveReaders.set(0);
+      readerMonitor.notifyAll();
+    }
+  }
+
+  /**
+   * <p>
+   * Reuse read only transactions for the convenience methods of
+   * {@link org.fusesource.lmdbjni.Database} that do not take a transaction,
+   * and for {@link Env#borrowReadTransaction()}.
+   * </p>
+   * Must be called after the environment has been opened. Any previous pool
+   * is closed.
+   *
+   * @param maxIdle how long a transaction may stay parked before it is aborted.
+   * @param unit time unit of maxIdle
+   * @return the pool
+   * @see org.fusesource.lmdbjni.ReadTransactionPool
+   */
+  public ReadTransactionPool enableReadTransactionPool(long maxIdle, TimeUnit unit) {
+    checkOpen();
+    boolean notls = (getFlags() & Constants.NOTLS) != 0;
+    ReadTransactionPool previous = readTransactionPool;
+    readTransactionPool = new ReadTransactionPool(this, notls, unit.toNanos(maxIdle));
+    if (previous != null) {
+      previous.close();
+    }
+    return readTransactionPool;
+  }
+
+  /**
+   * Stop reusing read only transactions and abort the parked ones.
+   */
+  public void disableReadTransactionPool() {
+    ReadTransactionPool previous = readTransactionPool;
+    readTransactionPool = null;
+    if (previous != null) {
+      previous.close();
+    }
+  }
+
+  /**
+   * @return the read transaction pool or null if not enabled.
+   */
+  public ReadTransactionPool getReadTransactionPool() {
+    return readTransactionPool;
+  }
+
+  /**
+   * Get a read only transaction from the read transaction pool, or
+   * create a new one if the pool is not enabled. Must be handed back
+   * with {@link Env#releaseReadTransaction(Transaction)} instead of
+   * being aborted.
+   *
+   * @return transaction handle
+   */
+  public Transaction borrowReadTransaction() {
+    ReadTransactionPool pool = readTransactionPool;
+    if (pool == null) {
+      return createReadTransaction();
+    }
+    return pool.borrow();
+  }
+
+  /**
+   * Hand back a transaction from {@link Env#borrowReadTransaction()}. The
+   * transaction is parked in the read transaction pool, or aborted if the
+   * pool is not enabled.
+   *
+   * @param tx transaction handle
+   */
+  public void releaseReadTransaction(Transaction tx) {
+    ReadTransactionPool pool = readTransactionPool;
+    if (pool == null) {
+      if (tx != null) {
+        tx.abort();
+      }
+    } else {
+      pool.release(tx);
+    }
   }
 
   /**
@@ -524,6 +524,15 @@ class JNI {
     @JniArg(cast = "unsigned int ") long dbi,
     @JniArg(cast = "MDB_stat *", flags = {NO_IN}) MDB_stat stat);
 
+  /**
+   * <a href="http://symas.com/mdb/doc/group__mdb.html#">details</a>
+   */
+  @JniMethod
+  public static final native int mdb_dbi_flags(
+    @JniArg(cast = "MDB_txn *") long txn,
+    @JniArg(cast = "unsigned int ") long dbi,
+    @JniArg(cast = "unsigned int *") long[] flags);
+
   /**
    * <a href="http://symas.com/mdb/doc/group__mdb.html#">details</a>
    */
@@ -577,6 +586,20 @@ class JNI {
     @JniArg(cast = "MDB_val *") long key,
     @JniArg(cast = "MDB_val *") long data);
 
+  /**
+   * Run mdb_get for each of the count MDB_vals in keys. Every result entry
+   * is three words: a found flag followed by the MDB_val of the value.
+   * The number of keys found is written to found.
+   */
+  @JniMethod
+  public static final native int batch_get(
+    @JniArg(cast = "MDB_txn *") long txn,
+    @JniArg(cast = "unsigned int ") long dbi,
+    @JniArg(cast = "MDB_val *") long keys,
+    @JniArg(cast = "size_t *") long results,
+    @JniArg(cast = "size_t") long count,
+    @JniArg(cast = "size_t *") long found);
+
   /**
    * <a href="http://symas.com/mdb/doc/group__mdb.html#">details</a>
    */
@@ -597,6 +620,20 @@ class JNI {
     @JniArg(cast = "MDB_val *") long data,
     @JniArg(cast = "unsigned int") int flags);
 
+  /**
+   * Apply the put and delete records of a {@link WriteBatch}. The result code
+   * of each record is written to results and the number of records that
+   * returned MDB_KEYEXIST or MDB_NOTFOUND is written to skipped.
+   */
+  @JniMethod
+  public static final native int batch_write(
+    @JniArg(cast = "MDB_txn *") long txn,
+    @JniArg(cast = "unsigned int ") long dbi,
+    @JniArg(cast = "char *") long records,
+    @JniArg(cast = "size_t") long length,
+    @JniArg(cast = "int *") long results,
+    @JniArg(cast = "size_t *") long skipped);
+
   /**
    * <a href="http://symas.com/mdb/doc/group__mdb.html#">details</a>
    */
@@ -607,6 +644,13 @@ class JNI {
     @JniArg(cast = "MDB_val *", flags = {NO_OUT}) MDB_val key,
     @JniArg(cast = "MDB_val *", flags = {NO_OUT}) MDB_val data);
 
+  @JniMethod(accessor = "mdb_del")
+  public static final native int mdb_del_address(
+    @JniArg(cast = "MDB_txn *") long txn,
+    @JniArg(cast = "unsigned int ") long dbi,
+    @JniArg(cast = "MDB_val *") long key,
+    @JniArg(cast = "MDB_val *") long data);
+
   /**
    * <a href="http://symas.com/mdb/doc/group__mdb.html#">details</a>
    */
@@ -703,6 +747,188 @@ class JNI {
     @JniArg(cast = "MDB_val *") long data,
     @JniArg(cast = "MDB_cursor_op") int op);
 
+  /**
+   * Step the cursor up to max times, first with firstOp then with op, writing
+   * the key and data MDB_val of each step into table. The number of rows
+   * written is stored in count.
+   */
+  @JniMethod
+  public static final native int cursor_get_batch(
+    @JniArg(cast = "MDB_cursor *") long cursor,
+    @JniArg(cast = "MDB_val *") long table,
+    @JniArg(cast = "size_t") long max,
+    int firstOp,
+    int op,
+    @JniArg(cast = "size_t *") long count);
+
+  /**
+   * Same as cursor_get_batch but only the key MDB_val of each step is
+   * written into keys. Values are not read, so overflow pages are not
+   * touched. Each key of a DUPSORT database is returned once.
+   */
+  @JniMethod
+  public static final native int cursor_get_keys(
+    @JniArg(cast = "MDB_cursor *") long cursor,
+    @JniArg(cast = "MDB_val *") long keys,
+    @JniArg(cast = "size_t") long max,
+    int firstOp,
+    int op,
+    @JniArg(cast = "size_t *") long count);
+
+  /**
+   * Fetch a page of fixed size duplicates with GET_MULTIPLE or NEXT_MULTIPLE
+   * and fill in the key and the size of one element, which the
+   * multiple operations do not return.
+   */
+  @JniMethod
+  public static final native int cursor_get_multiple(
+    @JniArg(cast = "MDB_cursor *") long cursor,
+    @JniArg(cast = "MDB_val *") long key,
+    @JniArg(cast = "MDB_val *") long data,
+    int op,
+    @JniArg(cast = "size_t *") long elemSize);
+
+  /**
+   * Position at the first entry of a {@link KeyRange} or step to the next one.
+   * Returns MDB_NOTFOUND once the key passes the stop bound, which is checked
+   * before returning.
+   */
+  @JniMethod
+  public static final native int cursor_get_range(
+    @JniArg(cast = "MDB_cursor *") long cursor,
+    @JniArg(cast = "MDB_val *") long key,
+    @JniArg(cast = "MDB_val *") long data,
+    @JniArg(cast = "MDB_val *") long bounds,
+    int flags,
+    int first);
+
+  /**
+   * mdb_get with a key read straight from a pinned Java array.
+   */
+  @JniMethod
+  public static final native int array_get(
+    @JniArg(cast = "MDB_txn *") long txn,
+    @JniArg(cast = "unsigned int ") long dbi,
+    @JniArg(cast = "char *", flags = {NO_OUT, CRITICAL}) byte[] key,
+    @JniArg(cast = "size_t") long keySize,
+    @JniArg(cast = "MDB_val *") long data);
+
+  /**
+   * mdb_put with a key and value read straight from pinned Java arrays. The
+   * existing value is written to existing if the put returns MDB_KEYEXIST
+   * because of MDB_NOOVERWRITE, otherwise existing is zeroed.
+   */
+  @JniMethod
+  public static final native int array_put(
+    @JniArg(cast = "MDB_txn *") long txn,
+    @JniArg(cast = "unsigned int ") long dbi,
+    @JniArg(cast = "char *", flags = {NO_OUT, CRITICAL}) byte[] key,
+    @JniArg(cast = "size_t") long keySize,
+    @JniArg(cast = "char *", flags = {NO_OUT, CRITICAL}) byte[] value,
+    @JniArg(cast = "size_t") long valueSize,
+    @JniArg(cast = "MDB_val *") long existing,
+    @JniArg(cast = "unsigned int") int flags);
+
+  /**
+   * mdb_cursor_get with a key read straight from a pinned Java array. The key
+   * and data found are written to the two MDB_vals of entry. The key data
+   * pointer is NULL if LMDB did not replace the key that was passed in.
+   */
+  @JniMethod
+  public static final native int array_cursor_get(
+    @JniArg(cast = "MDB_cursor *") long cursor,
+    @JniArg(cast = "char *", flags = {NO_OUT, CRITICAL}) byte[] key,
+    @JniArg(cast = "size_t") long keySize,
+    @JniArg(cast = "MDB_val *") long entry,
+    @JniArg(cast = "MDB_cursor_op") int op);
+
+  /**
+   * mdb_get of a native order long key. The long value found is written to value.
+   */
+  @JniMethod
+  public static final native int long_get(
+    @JniArg(cast = "MDB_txn *") long txn,
+    @JniArg(cast = "unsigned int ") long dbi,
+    long key,
+    @JniArg(cast = "jlong *") long value);
+
+  /**
+   * mdb_put of a native order long key and value.
+   */
+  @JniMethod
+  public static final native int long_put(
+    @JniArg(cast = "MDB_txn *") long txn,
+    @JniArg(cast = "unsigned int ") long dbi,
+    long key,
+    long value,
+    @JniArg(cast = "unsigned int") int flags);
+
+  /**
+   * mdb_del of a native order long key.
+   */
+  @JniMethod
+  public static final native int long_del(
+    @JniArg(cast = "MDB_txn *") long txn,
+    @JniArg(cast = "unsigned int ") long dbi,
+    long key);
+
+  /**
+   * long_get of count keys read straight from a pinned Java array. Values of
+   * keys that are not found are set to missing, and the number of keys found
+   * is written to found.
+   */
+  @JniMethod
+  public static final native int long_get_batch(
+    @JniArg(cast = "MDB_txn *") long txn,
+    @JniArg(cast = "unsigned int ") long dbi,
+    @JniArg(cast = "jlong *", flags = {NO_OUT, CRITICAL}) long[] keys,
+    @JniArg(cast = "jlong *", flags = {NO_IN, CRITICAL}) long[] values,
+    @JniArg(cast = "size_t") long count,
+    long missing,
+    @JniArg(cast = "size_t *") long found);
+
+  /**
+   * long_put of count keys and values read straight from pinned Java arrays.
+   */
+  @JniMethod
+  public static final native int long_put_batch(
+    @JniArg(cast = "MDB_txn *") long txn,
+    @JniArg(cast = "unsigned int ") long dbi,
+    @JniArg(cast = "jlong *", flags = {NO_OUT, CRITICAL}) long[] keys,
+    @JniArg(cast = "jlong *", flags = {NO_OUT, CRITICAL}) long[] values,
+    @JniArg(cast = "size_t") long count,
+    @JniArg(cast = "unsigned int") int flags);
+
+  /**
+   * Position at the first long key greater than or equal to from, or step
+   * to the next key, up to max times. Keys and values are written into
+   * table, two longs per row, and the number of rows into count. Returns
+   * MDB_NOTFOUND once a key is greater than to, compared as unsigned numbers.
+   */
+  @JniMethod
+  public static final native int long_cursor_batch(
+    @JniArg(cast = "MDB_cursor *") long cursor,
+    long from,
+    long to,
+    @JniArg(cast = "jlong *") long table,
+    @JniArg(cast = "size_t") long max,
+    int first,
+    @JniArg(cast = "size_t *") long count);
+
+  /**
+   * A direct ByteBuffer over native memory that is owned by LMDB.
+   */
+  @JniMethod(flags = {MethodFlag.JNI})
+  public static final native Object NewDirectByteBuffer(
+    @JniArg(cast = "void *") long address,
+    @JniArg(cast = "jlong") long capacity);
+
+  /**
+   * Address of a built-in MDB_cmp_func, or 0 if there is no comparator with the id.
+   */
+  @JniMethod(cast = "intptr_t")
+  public static final native long native_comparator(int id);
+
   /**
    * <a href="http://symas.com/mdb/doc/group__mdb.html#">details</a>
    */
@@ -0,0 +1,26 @@
+package org.fusesource.lmdbjni;
+
+/**
+ * A comparator that receives the raw memory location of the two items
+ * being compared, so no objects are allocated per comparison.
+ * <p>
+ * The addresses point into the memory map or into memory owned by LMDB and are
+ * only valid for the duration of the call. Read them with
+ * {@link DirectBuffer#wrap(long, int)} on a reused buffer or with
+ * {@code sun.misc.Unsafe}.
+ * </p>
+ *
+ * @see Database#setKeyComparator(Transaction, KeyComparator)
+ * @see Database#setKeyDupSortComparator(Transaction, KeyComparator)
+ */
+public interface KeyComparator {
+  /**
+   * @param addressA address of the first item
+   * @param lengthA size in bytes of the first item
+   * @param addressB address of the second item
+   * @param lengthB size in bytes of the second item
+   * @return a negative integer, zero, or a positive integer as the first item
+   * is less than, equal to, or greater than the second.
+   */
+  int compare(long addressA, int lengthA, long addressB, int lengthB);
+}
@@ -0,0 +1,197 @@
+package org.fusesource.lmdbjni;
+
+import java.nio.ByteBuffer;
+
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
+
+/**
+ * A range of keys to scan, with optional inclusive or exclusive start and
+ * stop bounds, in forward or backward order.
+ * <p>
+ * The stop bound is checked natively, in the same call that moves the
+ * cursor, using the comparator of the database. A prefix range matches
+ * the prefix bytes lexically.
+ * </p>
+ * <p>
+ * Bounds are copied when the range is created, so a range may be reused
+ * and shared between threads.
+ * </p>
+ *
+ * @see Database#iterate(Transaction, KeyRange)
+ * @see Database#iterateBuffers(Transaction, KeyRange)
+ * @see BufferCursor#first(KeyRange)
+ */
+public final class KeyRange {
+  static final int BACKWARD = 1;
+  static final int START = 2;
+  static final int START_EXCLUSIVE = 4;
+  static final int STOP = 8;
+  static final int STOP_EXCLUSIVE = 16;
+  static final int STOP_PREFIX = 32;
+
+  private final byte[] start;
+  private final byte[] stop;
+  private final int flags;
+  /** start and stop MDB_vals followed by the key bytes they point to */
+  private final DirectBuffer bounds;
+
+  private KeyRange(byte[] start, boolean startInclusive, byte[] stop, boolean stopInclusive,
+                   boolean backward, boolean prefix) {
+    if (start != null && start.length == 0) {
+      // LMDB does not store empty keys
+      start = null;
+    }
+    int flags = backward ? BACKWARD : 0;
+    if (start != null) {
+      flags |= startInclusive ? START : START | START_EXCLUSIVE;
+    }
+    if (stop != null) {
+      flags |= stopInclusive ? STOP : STOP | STOP_EXCLUSIVE;
+      flags |= prefix ? STOP_PREFIX : 0;
+    }
+    this.start = start == null ? null : start.clone();
+    this.stop = stop == null ? null : stop.clone();
+    this.flags = flags;
+
+    int startLength = start == null ? 0 : start.length;
+    int stopLength = stop == null ? 0 : stop.length;
+    int header = 4 * Unsafe.ADDRESS_SIZE;
+    bounds = new DirectBuffer(ByteBuffer.allocateDirect(header + startLength + stopLength));
+    long address = bounds.addressOffset();
+    if (start != null) {
+      bounds.putBytes(header, start);
+      Unsafe.putLong(address, 0, startLength);
+      Unsafe.putLong(address, 1, address + header);
+    }
+    if (stop != null) {
+      bounds.putBytes(header + startLength, stop);
+      Unsafe.putLong(address, 2, stopLength);
+      Unsafe.putLong(address, 3, address + header + startLength);
+    }
+  }
+
+  /**
+   * @return all keys in forward order.
+   */
+  public static KeyRange all() {
+    return new KeyRange(null, true, null, true, false, false);
+  }
+
+  /**
+   * @return all keys in backward order.
+   */
+  public static KeyRange allBackward() {
+    return new KeyRange(null, true, null, true, true, false);
+  }
+
+  /**
+   * Keys from start up to stop in forward order.
+   *
+   * @param start lowest key, or null to start at the first key.
+   * @param startInclusive true if start itself is in the range.
+   * @param stop highest key, or null to stop at the last key.
+   * @param stopInclusive true if stop itself is in the range.
+   */
+  public static KeyRange range(byte[] start, boolean startInclusive, byte[] stop, boolean stopInclusive) {
+    return new KeyRange(start, startInclusive, stop, stopInclusive, false, false);
+  }
+
+  /**
+   * Keys from start down to stop in backward order.
+   *
+   * @param start highest key, or null to start at the last key.
+   * @param startInclusive true if start itself is in the range.
+   * @param stop lowest key, or null to stop at the first key.
+   * @param stopInclusive true if stop itself is in the range.
+   */
+  public static KeyRange rangeBackward(byte[] start, boolean startInclusive, byte[] stop, boolean stopInclusive) {
+    return new KeyRange(start, startInclusive, stop, stopInclusive, true, false);
+  }
+
+  /**
+   * @return keys from start, inclusive, to stop, exclusive, in forward order.
+   */
+  public static KeyRange closedOpen(byte[] start, byte[] stop) {
+    return range(start, true, stop, false);
+  }
+
+  /**
+   * @return keys from start to stop, both inclusive, in forward order.
+   */
+  public static KeyRange closed(byte[] start, byte[] stop) {
+    return range(start, true, stop, true);
+  }
+
+  /**
+   * @return keys that start with prefix in forward order.
+   */
+  public static KeyRange prefix(byte[] prefix) {
+    checkArgNotNull(prefix, "prefix");
+    return new KeyRange(prefix, true, prefix, true, false, true);
+  }
+
+  /**
+   * @return keys that start with prefix in backward order.
+   */
+  public static KeyRange prefixBackward(byte[] prefix) {
+    checkArgNotNull(prefix, "prefix");
+    // start below the first key that is lexically greater than every key with the prefix
+    return new KeyRange(prefixSuccessor(prefix), false, prefix, true, true, true);
+  }
+
+  private static byte[] prefixSuccessor(byte[] prefix) {
+    int length = prefix.length;
+    while (length > 0 && prefix[length - 1] == (byte) 0xff) {
+      length--;
+    }
+    if (length == 0) {
+      return null;
+    }
+    byte[] successor = new byte[length];
+    System.arraycopy(prefix, 0, successor, 0, length);
+    successor[length - 1]++;
+    return successor;
+  }
+
+  /**
+   * A range with the given flags, used to rebuild a range from its parts.
+   */
+  static KeyRange of(int flags, byte[] start, byte[] stop) {
+    return new KeyRange(start, (flags & START_EXCLUSIVE) == 0, stop, (flags & STOP_EXCLUSIVE) == 0,
+      (flags & BACKWARD) != 0, (flags & STOP_PREFIX) != 0);
+  }
+
+  /**
+   * @return the rest of this range, starting at key in the direction of the range.
+   */
+  KeyRange startAt(byte[] key, boolean inclusive) {
+    return new KeyRange(key, inclusive, stop, (flags & STOP_EXCLUSIVE) == 0,
+      (flags & BACKWARD) != 0, (flags & STOP_PREFIX) != 0);
+  }
+
+  /**
+   * @return a copy of the start bound, or null if unbounded.
+   */
+  public byte[] getStart() {
+    return start == null ? null : start.clone();
+  }
+
+  /**
+   * @return a copy of the stop bound or prefix, or null if unbounded.
+   */
+  public byte[] getStop() {
+    return stop == null ? null : stop.clone();
+  }
+
+  public boolean isBackward() {
+    return (flags & BACKWARD) != 0;
+  }
+
+  int flags() {
+    return flags;
+  }
+
+  long boundsAddress() {
+    return bounds.addressOffset();
+  }
+}
@@ -0,0 +1,261 @@
+package org.fusesource.lmdbjni;
+
+import java.nio.ByteBuffer;
+
+import static org.fusesource.lmdbjni.JNI.*;
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
+import static org.fusesource.lmdbjni.Util.checkErrorCode;
+
+/**
+ * <p>
+ * A map from long keys to long values that passes primitives straight to
+ * LMDB, without byte arrays, buffers or comparator upcalls.
+ * </p>
+ *
+ * Keys and values are stored as 8 byte native order integers. The database
+ * must be opened with {@link org.fusesource.lmdbjni.Constants#INTEGERKEY} so
+ * that LMDB orders the keys itself. Keys are ordered as unsigned numbers,
+ * which means that negative keys come after all positive keys.
+ * <p>
+ * Nothing is allocated per operation. Lookups and updates of many keys at a
+ * time pass pinned Java arrays to a single native call.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * Database db = env.openDatabase("offsets", Constants.CREATE | Constants.INTEGERKEY);
+ * LongLongStore offsets = new LongLongStore(db);
+ * try (Transaction tx = env.createWriteTransaction()) {
+ *   offsets.put(tx, id, offset);
+ *   tx.commit();
+ * }
+ * }
+ * </pre>
+ */
+public class LongLongStore {
+  /** rows fetched per native call by a range scan */
+  private static final int SCAN_ROWS = 256;
+
+  /**
+   * Receives the entries of a range scan in key order.
+   */
+  public interface EntryConsumer {
+    /**
+     * @return true to continue with the next entry, false to stop the scan.
+     */
+    boolean accept(long key, long value);
+  }
+
+  private final Database db;
+  /** row tables of the scans, kept apart from the scratch space of the transaction */
+  private final ThreadLocal<DirectBuffer> scanTables = new ThreadLocal<DirectBuffer>() {
+    @Override
+    protected DirectBuffer initialValue() {
+      return new DirectBuffer(ByteBuffer.allocateDirect(SCAN_ROWS * 16));
+    }
+  };
+  private volatile boolean checked;
+
+  /**
+   * @param db database opened with {@link org.fusesource.lmdbjni.Constants#INTEGERKEY}.
+   */
+  public LongLongStore(Database db) {
+    checkArgNotNull(db, "db");
+    this.db = db;
+  }
+
+  public Database getDatabase() {
+    return db;
+  }
+
+  /**
+   * @param tx transaction handle
+   * @param key key to look up
+   * @param missing value returned if the key is not found
+   * @return the value of the key, or missing.
+   */
+  public long get(Transaction tx, long key, long missing) {
+    checkArgNotNull(tx, "tx");
+    checkDatabase(tx);
+    long value = tx.getBufferAddress();
+    int rc = long_get(tx.pointer(), db.pointer(), key, value);
+    if (rc == MDB_NOTFOUND) {
+      return missing;
+    }
+    checkErrorCode(rc);
+    return Unsafe.getLong(value, 0);
+  }
+
+  /**
+   * Store a value, replacing any previous value of the key.
+   *
+   * @param tx write transaction handle
+   * @param key key to store
+   * @param value value to store
+   */
+  public void put(Transaction tx, long key, long value) {
+    put(tx, key, value, 0);
+  }
+
+  /**
+   * Store a value with {@link org.fusesource.lmdbjni.Constants#APPEND}. Keys
+   * must be appended in unsigned order.
+   *
+   * @param tx write transaction handle
+   * @param key key greater than every key in the database
+   * @param value value to store
+   */
+  public void append(Transaction tx, long key, long value) {
+    put(tx, key, value, Constants.APPEND);
+  }
+
+  private void put(Transaction tx, long key, long value, int flags) {
+    checkArgNotNull(tx, "tx");
+    checkDatabase(tx);
+    checkErrorCode(long_put(tx.pointer(), db.pointer(), key, value, flags));
+  }
+
+  /**
+   * @param tx write transaction handle
+   * @param key key to delete
+   * @return true if the key was found and deleted.
+   */
+  public boolean delete(Transaction tx, long key) {
+    checkArgNotNull(tx, "tx");
+    checkDatabase(tx);
+    int rc = long_del(tx.pointer(), db.pointer(), key);
+    if (rc == MDB_NOTFOUND) {
+      return false;
+    }
+    checkErrorCode(rc);
+    return true;
+  }
+
+  /**
+   * Look up many keys in a single native call.
+   *
+   * @param tx transaction handle
+   * @param keys keys to look up
+   * @param values receives the value of each key, or missing, at the same index.
+   * @param count number of keys to look up
+   * @param missing value of the keys that are not found
+   * @return the number of keys found.
+   */
+  public int getBatch(Transaction tx, long[] keys, long[] values, int count, long missing) {
+    checkArgNotNull(tx, "tx");
+    checkDatabase(tx);
+    checkBatch(keys, values, count);
+    if (!db.criticalArrays()) {
+      int found = 0;
+      for (int i = 0; i < count; i++) {
+        long value = tx.getBufferAddress();
+        int rc = long_get(tx.pointer(), db.pointer(), keys[i], value);
+        if (rc == MDB_NOTFOUND) {
+          values[i] = missing;
+        } else {
+          checkErrorCode(rc);
+          values[i] = Unsafe.getLong(value, 0);
+          found++;
+        }
+      }
+      return found;
+    }
+    long found = tx.getBufferAddress();
+    checkErrorCode(long_get_batch(tx.pointer(), db.pointer(), keys, values, count, missing, found));
+    return (int) Unsafe.getLong(found, 0);
+  }
+
+  /**
+   * Store many keys and values in a single native call. Sorted keys are
+   * stored faster since they touch the same pages one after the other.
+   *
+   * @param tx write transaction handle
+   * @param keys keys to store
+   * @param values value of each key, at the same index.
+   * @param count number of keys to store
+   */
+  public void putBatch(Transaction tx, long[] keys, long[] values, int count) {
+    checkArgNotNull(tx, "tx");
+    checkDatabase(tx);
+    checkBatch(keys, values, count);
+    if (!db.criticalArrays()) {
+      for (int i = 0; i < count; i++) {
+        put(tx, keys[i], values[i], 0);
+      }
+      return;
+    }
+    checkErrorCode(long_put_batch(tx.pointer(), db.pointer(), keys, values, count, 0));
+  }
+
+  /**
+   * Keys of other databases are compared as bytes, so the values would be
+   * stored in the wrong order.
+   */
+  private void checkDatabase(Transaction tx) {
+    if (checked) {
+      return;
+    }
+    if ((db.getFlags(tx) & Constants.INTEGERKEY) == 0) {
+      throw new IllegalStateException("LongLongStore requires a database opened with INTEGERKEY");
+    }
+    checked = true;
+  }
+
+  private static void checkBatch(long[] keys, long[] values, int count) {
+    checkArgNotNull(keys, "keys");
+    checkArgNotNull(values, "values");
+    if (count < 0 || count > keys.length || count > values.length) {
+      throw new IllegalArgumentException("count=" + count + " keys=" + keys.length + " values=" + values.length);
+    }
+  }
+
+  /**
+   * Scan the keys from one key to another, both inclusive and compared as
+   * unsigned numbers. Entries are fetched from LMDB a few hundred at a time
+   * into a table of the scan's own. The consumer may read and update the
+   * store, the database and the transaction, and start other scans.
+   *
+   * @param tx transaction handle
+   * @param from lowest key of the scan
+   * @param to highest key of the scan
+   * @param consumer receives the entries in key order.
+   */
+  public void forEach(Transaction tx, long from, long to, EntryConsumer consumer) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(consumer, "consumer");
+    checkDatabase(tx);
+    // a scan started by the consumer gets a table of its own
+    DirectBuffer buffer = scanTables.get();
+    scanTables.remove();
+    long table = buffer.addressOffset();
+    try (Cursor cursor = db.openCursor(tx)) {
+      int first = 1;
+      int rc;
+      do {
+        long count = tx.getBufferAddress();
+        rc = long_cursor_batch(cursor.pointer(), from, to, table, SCAN_ROWS, first, count);
+        int rows = (int) Unsafe.getLong(count, 0);
+        for (int i = 0; i < rows; i++) {
+          if (!consumer.accept(Unsafe.getLong(table, 2 * i), Unsafe.getLong(table, 2 * i + 1))) {
+            return;
+          }
+        }
+        first = 0;
+      } while (rc == 0);
+      if (rc != MDB_NOTFOUND) {
+        checkErrorCode(rc);
+      }
+    } finally {
+      scanTables.set(buffer);
+    }
+  }
+
+  /**
+   * Scan every key in unsigned order.
+   *
+   * @see #forEach(Transaction, long, long, EntryConsumer)
+   */
+  public void forEach(Transaction tx, EntryConsumer consumer) {
+    forEach(tx, 0, -1, consumer);
+  }
+}
@@ -0,0 +1,352 @@
+package org.fusesource.lmdbjni;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <p>
+ * A fast LZ compressor in pure Java, writing the LZ4 block format.
+ * </p>
+ *
+ * Compression is greedy with a single hash table, trading ratio for speed.
+ * Data can be compressed against a dictionary of up to 64 KiB that is
+ * placed in front of it, which helps small values that share structure,
+ * like JSON documents with the same field names. See
+ * {@link #trainDictionary(List, int)}.
+ * <p>
+ * A compressor holds its hash table and must not be shared between
+ * threads. Decompression is static.
+ * </p>
+ *
+ * @see CompressedDatabase
+ */
+public final class LzCompressor {
+  /** the largest dictionary that matches can reach into */
+  public static final int MAX_DICTIONARY_SIZE = 65535;
+
+  private static final int MIN_MATCH = 4;
+  private static final int LAST_LITERALS = 5;
+  private static final int MF_LIMIT = 12;
+  private static final int MAX_OFFSET = 65535;
+  private static final int HASH_LOG = 12;
+
+  private final int[] table = new int[1 << HASH_LOG];
+  /**
+   * Added to the positions stored in the table. It moves past every
+   * position of a call, so entries of earlier calls are told apart without
+   * clearing the table.
+   */
+  private int base = 1;
+
+  /**
+   * @param length length of the data to compress
+   * @return the largest number of bytes compressing the data can take.
+   */
+  public static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * @param src buffer holding the data
+   * @param srcIndex index of the data in src
+   * @param length length of the data
+   * @param dst buffer with room for {@link #maxCompressedLength(int)} bytes
+   * @param dstIndex index to write to in dst
+   * @return the compressed length.
+   */
+  public int compress(DirectBuffer src, int srcIndex, int length, DirectBuffer dst, int dstIndex) {
+    return compress(src, srcIndex, length, null, 0, null, dst, dstIndex);
+  }
+
+  /**
+   * Compress data against a dictionary that is read in place, as if it
+   * was placed in front of the data.
+   *
+   * @param dictionary dictionary data
+   * @param dictionaryLength length of the dictionary
+   * @param dictionaryTable hash table of the dictionary from
+   *                        {@link #hashTable(DirectBuffer, int)}, not modified.
+   */
+  int compress(DirectBuffer src, int srcIndex, int length, DirectBuffer dictionary, int dictionaryLength,
+               int[] dictionaryTable, DirectBuffer dst, int dstIndex) {
+    if (base > Integer.MAX_VALUE - length) {
+      Arrays.fill(table, 0);
+      base = 1;
+    }
+    // table entries of this call are at least base
+    int shift = base - srcIndex;
+    int start = srcIndex;
+    int end = srcIndex + length;
+    int op = dstIndex;
+    int anchor = start;
+    int ip = start;
+    int matchLimit = end - LAST_LITERALS;
+    int mfLimit = end - MF_LIMIT;
+    int misses = 0;
+    while (ip < mfLimit) {
+      int sequence = src.getInt(ip);
+      int h = hash(sequence);
+      int ref = table[h] - shift;
+      table[h] = ip + shift;
+      int offset;
+      int matchLength = MIN_MATCH;
+      if (ref >= start && ip - ref <= MAX_OFFSET && src.getInt(ref) == sequence) {
+        while (ip > anchor && ref > start && src.getByte(ip - 1) == src.getByte(ref - 1)) {
+          ip--;
+          ref--;
+        }
+        while (ip + matchLength < matchLimit && src.getByte(ip + matchLength) == src.getByte(ref + matchLength)) {
+          matchLength++;
+        }
+        offset = ip - ref;
+      } else if (dictionaryTable != null && (ref = dictionaryTable[h]) >= 0
+        && ip - start + dictionaryLength - ref <= MAX_OFFSET && dictionary.getInt(ref) == sequence) {
+        while (ip > anchor && ref > 0 && src.getByte(ip - 1) == dictionary.getByte(ref - 1)) {
+          ip--;
+          ref--;
+        }
+        // matches stop at the end of the dictionary
+        while (ip + matchLength < matchLimit && ref + matchLength < dictionaryLength
+          && src.getByte(ip + matchLength) == dictionary.getByte(ref + matchLength)) {
+          matchLength++;
+        }
+        offset = ip - start + dictionaryLength - ref;
+      } else {
+        // skip faster through data that does not compress
+        ip += 1 + (misses++ >>> 6);
+        continue;
+      }
+      misses = 0;
+      op = writeSequence(src, anchor, ip - anchor, offset, matchLength, dst, op);
+      ip += matchLength;
+      anchor = ip;
+      if (ip - 2 >= start && ip < mfLimit) {
+        table[hash(src.getInt(ip - 2))] = ip - 2 + shift;
+      }
+    }
+    op = writeSequence(src, anchor, end - anchor, 0, 0, dst, op);
+    base += Math.max(length, 1);
+    return op - dstIndex;
+  }
+
+  /**
+   * @param dictionary dictionary data
+   * @param length length of the dictionary
+   * @return the hash table of the dictionary, to compress against it.
+   */
+  static int[] hashTable(DirectBuffer dictionary, int length) {
+    int[] table = new int[1 << HASH_LOG];
+    Arrays.fill(table, -1);
+    for (int i = 0; i + MIN_MATCH <= length; i++) {
+      table[hash(dictionary.getInt(i))] = i;
+    }
+    return table;
+  }
+
+  private static int writeSequence(DirectBuffer src, int literals, int literalLength, int offset, int matchLength,
+                                   DirectBuffer dst, int op) {
+    int tokenIndex = op++;
+    int token = Math.min(literalLength, 15) << 4;
+    if (literalLength >= 15) {
+      op = writeLength(literalLength - 15, dst, op);
+    }
+    dst.putBytes(op, src, literals, literalLength);
+    op += literalLength;
+    if (matchLength > 0) {
+      dst.putShort(op, (short) offset, ByteOrder.LITTLE_ENDIAN);
+      op += 2;
+      int length = matchLength - MIN_MATCH;
+      token |= Math.min(length, 15);
+      if (length >= 15) {
+        op = writeLength(length - 15, dst, op);
+      }
+    }
+    dst.putByte(tokenIndex, (byte) token);
+    return op;
+  }
+
+  private static int writeLength(int length, DirectBuffer dst, int op) {
+    for (; length >= 255; length -= 255) {
+      dst.putByte(op++, (byte) 255);
+    }
+    dst.putByte(op++, (byte) length);
+    return op;
+  }
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  /**
+   * @see #decompress(DirectBuffer, int, int, DirectBuffer, int, int, DirectBuffer, int)
+   */
+  public static void decompress(DirectBuffer src, int srcIndex, int srcLength,
+                                DirectBuffer dst, int dstIndex, int dstLength) {
+    decompress(src, srcIndex, srcLength, dst, dstIndex, dstLength, null, 0);
+  }
+
+  /**
+   * @param src buffer holding the compressed data
+   * @param srcIndex index of the compressed data in src
+   * @param srcLength length of the compressed data
+   * @param dst buffer to decompress into
+   * @param dstIndex index to write to in dst
+   * @param dstLength length of the decompressed data
+   * @param dictionary the dictionary the data was compressed with, or null.
+   * @param dictionaryLength length of the dictionary
+   * @throws IllegalStateException if the data is corrupt.
+   */
+  public static void decompress(DirectBuffer src, int srcIndex, int srcLength,
+                                DirectBuffer dst, int dstIndex, int dstLength,
+                                DirectBuffer dictionary, int dictionaryLength) {
+    int ip = srcIndex;
+    int srcEnd = srcIndex + srcLength;
+    int op = 0;
+    while (ip < srcEnd) {
+      int token = src.getByte(ip++) & 0xff;
+      int literalLength = token >>> 4;
+      if (literalLength == 15) {
+        int b;
+        do {
+          checkCorrupt(ip < srcEnd);
+          b = src.getByte(ip++) & 0xff;
+          literalLength += b;
+        } while (b == 255);
+      }
+      checkCorrupt(literalLength <= srcEnd - ip && literalLength <= dstLength - op);
+      dst.putBytes(dstIndex + op, src, ip, literalLength);
+      ip += literalLength;
+      op += literalLength;
+      if (ip == srcEnd) {
+        break;
+      }
+      checkCorrupt(ip + 2 <= srcEnd);
+      int offset = src.getShort(ip, ByteOrder.LITTLE_ENDIAN) & 0xffff;
+      ip += 2;
+      int matchLength = (token & 15) + MIN_MATCH;
+      if ((token & 15) == 15) {
+        int b;
+        do {
+          checkCorrupt(ip < srcEnd);
+          b = src.getByte(ip++) & 0xff;
+          matchLength += b;
+        } while (b == 255);
+      }
+      checkCorrupt(offset > 0 && offset <= op + dictionaryLength && matchLength <= dstLength - op);
+      int ref = op - offset;
+      if (ref >= 0 && offset >= matchLength) {
+        dst.putBytes(dstIndex + op, dst, dstIndex + ref, matchLength);
+        op += matchLength;
+        continue;
+      }
+      for (int end = op + matchLength; op < end; op++, ref++) {
+        byte b = ref >= 0 ? dst.getByte(dstIndex + ref) : dictionary.getByte(dictionaryLength + ref);
+        dst.putByte(dstIndex + op, b);
+      }
+    }
+    checkCorrupt(op == dstLength);
+  }
+
+  private static void checkCorrupt(boolean valid) {
+    if (!valid) {
+      throw new IllegalStateException("Corrupt compressed data");
+    }
+  }
+
+  /**
+   * <p>
+   * Build a dictionary from sample values.
+   * </p>
+   *
+   * The samples are cut into segments that are scored by how often the
+   * 8 byte sequences in them occur across all samples. The best segments
+   * are picked greedily, discounting sequences already covered, and the
+   * best end up last in the dictionary, closest to the compressed data.
+   *
+   * @param samples typical values, together a lot larger than the
+   *                dictionary
+   * @param size maximum size of the dictionary, at most
+   *             {@link #MAX_DICTIONARY_SIZE}.
+   * @return the dictionary, shorter than size if the samples are small.
+   */
+  public static byte[] trainDictionary(List<byte[]> samples, int size) {
+    if (size <= 0 || size > MAX_DICTIONARY_SIZE) {
+      throw new IllegalArgumentException("size must be between 1 and " + MAX_DICTIONARY_SIZE);
+    }
+    final int k = 8;
+    final int segmentLength = 64;
+    final int[] counts = new int[1 << 16];
+    for (byte[] sample : samples) {
+      for (int i = 0; i + k <= sample.length; i++) {
+        counts[kmerHash(sample, i, k)]++;
+      }
+    }
+    PriorityQueue<int[]> queue = new PriorityQueue<>(1024, new Comparator<int[]>() {
+      @Override
+      public int compare(int[] a, int[] b) {
+        return Integer.compare(b[0], a[0]);
+      }
+    });
+    for (int s = 0; s < samples.size(); s++) {
+      byte[] sample = samples.get(s);
+      for (int i = 0; i < sample.length; i += segmentLength) {
+        int length = Math.min(segmentLength, sample.length - i);
+        int[] segment = {0, s, i, length};
+        segment[0] = score(samples, segment, counts, k);
+        if (segment[0] > 0) {
+          queue.add(segment);
+        }
+      }
+    }
+    List<int[]> picked = new ArrayList<>();
+    int total = 0;
+    while (total < size && !queue.isEmpty()) {
+      int[] segment = queue.poll();
+      int score = score(samples, segment, counts, k);
+      if (score <= 0) {
+        continue;
+      }
+      if (score < segment[0] && !queue.isEmpty() && score < queue.peek()[0]) {
+        // scores only fall, so try again once it is the best
+        segment[0] = score;
+        queue.add(segment);
+        continue;
+      }
+      byte[] sample = samples.get(segment[1]);
+      for (int i = segment[2]; i + k <= segment[2] + segment[3]; i++) {
+        counts[kmerHash(sample, i, k)] = 0;
+      }
+      segment[3] = Math.min(segment[3], size - total);
+      picked.add(segment);
+      total += segment[3];
+    }
+    byte[] dictionary = new byte[total];
+    int position = total;
+    for (int[] segment : picked) {
+      position -= segment[3];
+      System.arraycopy(samples.get(segment[1]), segment[2], dictionary, position, segment[3]);
+    }
+    return dictionary;
+  }
+
+  private static int score(List<byte[]> samples, int[] segment, int[] counts, int k) {
+    byte[] sample = samples.get(segment[1]);
+    int score = 0;
+    for (int i = segment[2]; i + k <= segment[2] + segment[3]; i++) {
+      score += counts[kmerHash(sample, i, k)] - 1;
+    }
+    return score;
+  }
+
+  private static int kmerHash(byte[] data, int index, int k) {
+    int h = 0;
+    for (int i = index; i < index + k; i++) {
+      h = h * 31 + data[i];
+    }
+    return (h * -1640531535) >>> 16;
+  }
+}
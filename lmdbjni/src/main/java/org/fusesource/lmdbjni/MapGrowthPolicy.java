@@ -0,0 +1,133 @@
+package org.fusesource.lmdbjni;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Decides how much to grow the memory map when a write fails with
+ * {@link org.fusesource.lmdbjni.LMDBException#MAP_FULL}.
+ * </p>
+ *
+ * @see Env#setMapGrowthPolicy(MapGrowthPolicy)
+ * @see Env#write(WriteCoordinator.Write)
+ */
+public abstract class MapGrowthPolicy {
+
+  /**
+   * Notified after the memory map has been grown.
+   */
+  public interface Listener {
+    /**
+     * @param oldSize map size in bytes before growing
+     * @param newSize map size in bytes after growing
+     */
+    void mapGrown(long oldSize, long newSize);
+  }
+
+  private final long maxSize;
+  private volatile Listener listener;
+  private volatile long readerWaitNanos = TimeUnit.SECONDS.toNanos(1);
+
+  protected MapGrowthPolicy(long maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Multiply the map size by factor on each growth, up to maxSize.
+   *
+   * @param factor growth factor, greater than 1.
+   * @param maxSize ceiling of the map size in bytes.
+   */
+  public static MapGrowthPolicy geometric(final double factor, long maxSize) {
+    if (!(factor > 1)) {
+      throw new IllegalArgumentException("factor must be greater than 1");
+    }
+    return new MapGrowthPolicy(maxSize) {
+      @Override
+      protected long grow(long currentSize) {
+        return (long) Math.ceil(currentSize * factor);
+      }
+    };
+  }
+
+  /**
+   * Add step bytes to the map size on each growth, up to maxSize.
+   *
+   * @param step growth step in bytes.
+   * @param maxSize ceiling of the map size in bytes.
+   */
+  public static MapGrowthPolicy fixedStep(final long step, long maxSize) {
+    if (step <= 0) {
+      throw new IllegalArgumentException("step must be positive");
+    }
+    return new MapGrowthPolicy(maxSize) {
+      @Override
+      protected long grow(long currentSize) {
+        return currentSize + step;
+      }
+    };
+  }
+
+  /**
+   * @param currentSize current map size in bytes.
+   * @return the grown map size, before the ceiling is applied.
+   */
+  protected abstract long grow(long currentSize);
+
+  /**
+   * @param currentSize current map size in bytes.
+   * @return the next map size, or -1 if the map has reached the ceiling.
+   */
+  public long nextSize(long currentSize) {
+    if (currentSize >= maxSize) {
+      return -1;
+    }
+    long next = grow(currentSize);
+    if (next <= currentSize || next > maxSize) {
+      next = maxSize;
+    }
+    return next;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  public long getReaderWaitNanos() {
+    return readerWaitNanos;
+  }
+
+  /**
+   * Growing the map remaps it, which waits for the read transactions of
+   * this process to end. If they do not end in time the map is not grown
+   * and the write fails with MAP_FULL.
+   *
+   * @param time how long to wait for read transactions, one second by default.
+   * @param unit unit of time
+   * @return this
+   */
+  public MapGrowthPolicy setReaderWait(long time, TimeUnit unit) {
+    Util.checkArgNotNull(unit, "unit");
+    if (time < 0) {
+      throw new IllegalArgumentException("time must not be negative");
+    }
+    this.readerWaitNanos = unit.toNanos(time);
+    return this;
+  }
+
+  public Listener getListener() {
+    return listener;
+  }
+
+  /**
+   * @param listener notified after each growth, may be null.
+   * @return this
+   */
+  public MapGrowthPolicy setListener(Listener listener) {
+    this.listener = listener;
+    return this;
+  }
+}
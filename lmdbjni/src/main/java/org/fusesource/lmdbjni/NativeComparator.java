@@ -0,0 +1,56 @@
+package org.fusesource.lmdbjni;
+
+/**
+ * Built-in comparators implemented in C, installed with
+ * {@link Database#setNativeComparator(Transaction, NativeComparator)} or
+ * {@link Database#setNativeDupSortComparator(Transaction, NativeComparator)}.
+ * Unlike a Java comparator they compare without calling back into the JVM.
+ * <p>
+ * The numeric comparators order keys by a fixed size prefix. Keys with equal
+ * prefixes are ordered lexically by their remaining bytes, and keys shorter than
+ * the prefix are compared lexically, shorter keys collating before longer keys.
+ * </p>
+ */
+public enum NativeComparator {
+  /**
+   * Big endian two's complement 64-bit integers, as written by
+   * {@link java.nio.ByteBuffer#putLong(long)}, so negative values sort first.
+   */
+  SIGNED_LONG_BE(0),
+
+  /**
+   * Unsigned 128-bit integers stored as two native order 64-bit words,
+   * most significant word first, as written by {@link DirectBuffer#putLong(int, long)}.
+   */
+  UNSIGNED_128(1),
+
+  /**
+   * Big endian IEEE 754 doubles, as written by {@link java.nio.ByteBuffer#putDouble(double)},
+   * in the order of {@link Double#compare(double, double)}.
+   */
+  DOUBLE_BE(2),
+
+  /** Lexical order, reversed. */
+  REVERSE(3);
+
+  private final int value;
+
+  NativeComparator(int value) {
+    this.value = value;
+  }
+
+  public int getValue() {
+    return value;
+  }
+
+  /**
+   * @return address of the MDB_cmp_func.
+   */
+  long address() {
+    long address = JNI.native_comparator(value);
+    if (address == 0) {
+      throw new IllegalStateException("No native comparator " + name());
+    }
+    return address;
+  }
+}
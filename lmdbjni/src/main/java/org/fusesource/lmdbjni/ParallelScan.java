@@ -0,0 +1,300 @@
+package org.fusesource.lmdbjni;
+
+import java.math.BigInteger;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
+
+/**
+ * <p>
+ * Scans a whole database on several threads.
+ * </p>
+ *
+ * The key space is split into ranges and each range is scanned by a
+ * fork join task with a read transaction of its own. All transactions of a
+ * scan are opened on the same snapshot, so the scan sees the database as
+ * a single read transaction would. Handing a read transaction to a worker
+ * thread requires an environment opened with
+ * {@link org.fusesource.lmdbjni.Constants#NOTLS}.
+ *
+ * <pre>
+ * {@code
+ * long entries = new ParallelScan(env, db).scan(new ParallelScan.Scanner<Long>() {
+ *   public Long scan(BufferEntryIterator it) {
+ *     long count = 0;
+ *     for (BufferEntry entry : it.iterable()) {
+ *       count++;
+ *     }
+ *     return count;
+ *   }
+ *
+ *   public Long combine(Long left, Long right) {
+ *     return left + right;
+ *   }
+ * });
+ * }
+ * </pre>
+ */
+public class ParallelScan {
+  /** attempts to open all read transactions of a scan on the same snapshot */
+  private static final int SNAPSHOT_ATTEMPTS = 100;
+
+  /**
+   * Scans one range and combines the results of two ranges. Called
+   * concurrently from the worker threads of the pool.
+   */
+  public interface Scanner<R> {
+    /**
+     * @param entries zero copy iterator over one range of keys, closed after the call.
+     * @return the result for the range.
+     */
+    R scan(BufferEntryIterator entries);
+
+    /**
+     * @param left result of the range with the lower keys
+     * @param right result of the range with the higher keys
+     * @return the result of both ranges
+     */
+    R combine(R left, R right);
+  }
+
+  private final Env env;
+  private final Database db;
+  private ForkJoinPool pool;
+  private int splits;
+
+  public ParallelScan(Env env, Database db) {
+    checkArgNotNull(env, "env");
+    checkArgNotNull(db, "db");
+    this.env = env;
+    this.db = db;
+    this.splits = 4 * Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * @param pool pool that runs the scan. By default each scan runs in a
+   *             pool of its own with one thread per processor.
+   * @return this
+   */
+  public ParallelScan setPool(ForkJoinPool pool) {
+    checkArgNotNull(pool, "pool");
+    this.pool = pool;
+    return this;
+  }
+
+  /**
+   * More splits than threads lets idle workers steal ranges when the keys
+   * are not evenly distributed. Each split holds a reader slot during the scan.
+   *
+   * @param splits number of ranges to split the database into, four per thread by default.
+   * @return this
+   */
+  public ParallelScan setSplits(int splits) {
+    if (splits <= 0) {
+      throw new IllegalArgumentException("splits must be positive");
+    }
+    this.splits = splits;
+    return this;
+  }
+
+  /**
+   * Scan the whole database.
+   *
+   * @param scanner called for every range.
+   * @return the results of all ranges combined in key order.
+   */
+  public <R> R scan(Scanner<R> scanner) {
+    checkArgNotNull(scanner, "scanner");
+    if ((env.getFlags() & Constants.NOTLS) == 0) {
+      throw new IllegalStateException("Parallel scans require an environment opened with NOTLS");
+    }
+    ForkJoinPool pool = this.pool != null ? this.pool : new ForkJoinPool();
+    Transaction[] txs = null;
+    try {
+      List<KeyRange> ranges;
+      try (Transaction tx = env.createReadTransaction()) {
+        ranges = split(tx, db, splits);
+      }
+      txs = openSnapshot(ranges.size());
+      return pool.invoke(new ScanTask<>(db, scanner, ranges, txs, 0, ranges.size()));
+    } finally {
+      if (pool != this.pool) {
+        pool.shutdown();
+      }
+      if (txs != null) {
+        for (Transaction tx : txs) {
+          tx.abort();
+        }
+      }
+    }
+  }
+
+  private Transaction[] openSnapshot(int count) {
+    Transaction[] txs = new Transaction[count];
+    for (int attempt = 0; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+      int opened = 0;
+      try {
+        for (; opened < count; opened++) {
+          txs[opened] = env.createReadTransaction();
+          if (txs[opened].getId() != txs[0].getId()) {
+            // a write committed in between, start over on the newer snapshot
+            break;
+          }
+        }
+        if (opened == count) {
+          return txs;
+        }
+        for (int i = 0; i <= opened; i++) {
+          txs[i].abort();
+          txs[i] = null;
+        }
+      } catch (RuntimeException e) {
+        for (int i = 0; i < count && txs[i] != null; i++) {
+          txs[i].abort();
+          txs[i] = null;
+        }
+        throw e;
+      }
+    }
+    throw new IllegalStateException("Could not open " + count + " read transactions on the same snapshot");
+  }
+
+  /**
+   * <p>
+   * Split the keys of a database into ranges of roughly equal size.
+   * </p>
+   *
+   * Split points are interpolated between the first and the last key and
+   * moved onto existing keys with {@link org.fusesource.lmdbjni.SeekOp#RANGE}.
+   * The ranges are equal in size when keys are evenly spread over the key
+   * space, such as sequential ids or hashes. Split points are ordered with
+   * the comparator of the database, so the ranges never overlap. Keys of
+   * {@link org.fusesource.lmdbjni.Constants#INTEGERKEY} and
+   * {@link org.fusesource.lmdbjni.Constants#REVERSEKEY} databases are
+   * interpolated in their own order. With a custom comparator the ranges
+   * are still complete and disjoint, but may differ in size.
+   *
+   * @param tx transaction handle
+   * @param db database to split
+   * @param count number of ranges wanted
+   * @return at most count forward ranges, in key order, that together cover every key.
+   */
+  public static List<KeyRange> split(Transaction tx, Database db, int count) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(db, "db");
+    List<byte[]> boundaries = new ArrayList<>();
+    try (Cursor cursor = db.openCursor(tx)) {
+      Entry first = cursor.get(GetOp.FIRST);
+      Entry last = cursor.get(GetOp.LAST);
+      if (first != null && count > 1) {
+        int flags = db.getFlags(tx);
+        // interpolate on keys as they sort, most significant byte first
+        boolean integerKey = (flags & Constants.INTEGERKEY) != 0;
+        boolean reverse = ((flags & Constants.REVERSEKEY) != 0)
+          ^ (integerKey && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+        byte[] low = sortable(first.getKey(), reverse);
+        byte[] high = sortable(last.getKey(), reverse);
+        int prefix = commonPrefix(low, high);
+        // integer keys must keep their size to be compared
+        int length = integerKey ? high.length : prefix + 8;
+        BigInteger from = window(low, prefix);
+        BigInteger span = window(high, prefix).subtract(from);
+        byte[] previous = first.getKey();
+        for (int i = 1; i < count; i++) {
+          BigInteger point = from.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count)));
+          Entry entry = cursor.seek(SeekOp.RANGE, sortable(key(high, prefix, length, point), reverse));
+          if (entry != null && db.compare(tx, entry.getKey(), previous) > 0) {
+            boundaries.add(entry.getKey());
+            previous = entry.getKey();
+          }
+        }
+      }
+    }
+    List<KeyRange> ranges = new ArrayList<>();
+    byte[] start = null;
+    for (byte[] boundary : boundaries) {
+      ranges.add(KeyRange.closedOpen(start, boundary));
+      start = boundary;
+    }
+    ranges.add(KeyRange.range(start, true, null, true));
+    return ranges;
+  }
+
+  private static int commonPrefix(byte[] a, byte[] b) {
+    int length = Math.min(a.length, b.length);
+    int i = 0;
+    while (i < length && a[i] == b[i]) {
+      i++;
+    }
+    return i;
+  }
+
+  /** The 8 bytes that follow the common prefix, as an unsigned number */
+  private static BigInteger window(byte[] key, int prefix) {
+    byte[] window = new byte[9];
+    int length = Math.min(8, key.length - prefix);
+    System.arraycopy(key, prefix, window, 1, Math.max(0, length));
+    return new BigInteger(window);
+  }
+
+  /** A key of the given length with the common prefix followed by the 8 byte window */
+  private static byte[] key(byte[] high, int prefix, int length, BigInteger window) {
+    byte[] bytes = window.toByteArray();
+    byte[] slots = new byte[8];
+    int count = Math.min(8, bytes.length);
+    System.arraycopy(bytes, bytes.length - count, slots, 8 - count, count);
+    byte[] key = Arrays.copyOf(high, length);
+    Arrays.fill(key, Math.min(prefix, length), length, (byte) 0);
+    System.arraycopy(slots, 0, key, prefix, Math.max(0, Math.min(8, length - prefix)));
+    return key;
+  }
+
+  private static byte[] sortable(byte[] key, boolean reverse) {
+    if (!reverse) {
+      return key;
+    }
+    byte[] reversed = new byte[key.length];
+    for (int i = 0; i < key.length; i++) {
+      reversed[i] = key[key.length - 1 - i];
+    }
+    return reversed;
+  }
+
+  @SuppressWarnings("serial")
+  private static class ScanTask<R> extends RecursiveTask<R> {
+    private final Database db;
+    private final Scanner<R> scanner;
+    private final List<KeyRange> ranges;
+    private final Transaction[] txs;
+    private final int from;
+    private final int to;
+
+    ScanTask(Database db, Scanner<R> scanner, List<KeyRange> ranges, Transaction[] txs, int from, int to) {
+      this.db = db;
+      this.scanner = scanner;
+      this.ranges = ranges;
+      this.txs = txs;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected R compute() {
+      if (to - from == 1) {
+        try (BufferEntryIterator it = db.iterateBuffers(txs[from], ranges.get(from))) {
+          return scanner.scan(it);
+        }
+      }
+      int middle = (from + to) >>> 1;
+      ScanTask<R> right = new ScanTask<>(db, scanner, ranges, txs, middle, to);
+      right.fork();
+      R left = new ScanTask<>(db, scanner, ranges, txs, from, middle).compute();
+      return scanner.combine(left, right.join());
+    }
+  }
+}
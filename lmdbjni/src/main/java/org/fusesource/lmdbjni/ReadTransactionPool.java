@@ -0,0 +1,168 @@
+package org.fusesource.lmdbjni;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * <p>
+ * A pool of read only transactions that are parked with
+ * {@link Transaction#reset()} and revived with {@link Transaction#renew()},
+ * which saves the allocation and reader slot lookup of #mdb_txn_begin()
+ * for short lived reads.
+ * </p>
+ *
+ * Without {@link org.fusesource.lmdbjni.Constants#NOTLS} a reader slot is tied
+ * to the thread that created the transaction, so each thread parks at most one
+ * transaction of its own. With NOTLS parked transactions are shared by all threads.
+ * <p>
+ * A reset transaction releases its snapshot but keeps its handle. Transactions
+ * that have been idle for longer than the idle lifetime are aborted, on borrow
+ * or by {@link ReadTransactionPool#evictIdle()}, which also runs every idle
+ * lifetime as transactions are released. With NOTLS the reader slot belongs to
+ * the transaction, and aborting a parked one frees it. Without NOTLS the slot
+ * stays bound to the thread until the thread exits, whether its transaction is
+ * parked or evicted, so eviction frees no slots and {@link Env#setMaxReaders(long)}
+ * must cover every thread that reads.
+ * </p>
+ * <pre>
+ * {@code
+ * env.enableReadTransactionPool(10, TimeUnit.SECONDS);
+ * Transaction tx = env.borrowReadTransaction();
+ * try {
+ *   db.get(tx, key);
+ * } finally {
+ *   env.releaseReadTransaction(tx);
+ * }
+ * }
+ * </pre>
+ *
+ * @see Env#enableReadTransactionPool(long, java.util.concurrent.TimeUnit)
+ */
+public class ReadTransactionPool {
+  private final Env env;
+  private final boolean notls;
+  private final long maxIdleNanos;
+  /** parked transactions and the time they were parked, removing an entry claims it */
+  private final Map<Transaction, Long> parked = new ConcurrentHashMap<>();
+  private final ThreadLocal<Transaction> local = new ThreadLocal<>();
+  private final ConcurrentLinkedDeque<Transaction> shared = new ConcurrentLinkedDeque<>();
+  private volatile long nextEviction;
+  private volatile boolean closed = false;
+
+  ReadTransactionPool(Env env, boolean notls, long maxIdleNanos) {
+    this.env = env;
+    this.notls = notls;
+    this.maxIdleNanos = maxIdleNanos;
+    this.nextEviction = System.nanoTime() + maxIdleNanos;
+  }
+
+  /**
+   * @return a parked transaction renewed on the latest snapshot, or a new
+   * read only transaction if none is parked.
+   */
+  public Transaction borrow() {
+    Transaction tx;
+    while ((tx = poll()) != null) {
+      Long parkedAt = parked.remove(tx);
+      if (parkedAt == null) {
+        // evicted by another thread
+        continue;
+      }
+      if (System.nanoTime() - parkedAt > maxIdleNanos) {
+        tx.abort();
+        continue;
+      }
+      try {
+        tx.renew();
+      } catch (LMDBException e) {
+        tx.abort();
+        throw e;
+      }
+      return tx;
+    }
+    return env.createReadTransaction();
+  }
+
+  /**
+   * Reset the transaction and park it for reuse. Write transactions and
+   * transactions that have been closed are not parked.
+   *
+   * @param tx a transaction from {@link ReadTransactionPool#borrow()}.
+   */
+  public void release(Transaction tx) {
+    if (tx == null || !tx.isAllocated()) {
+      return;
+    }
+    if (closed || !tx.isReadOnly() || (!notls && isParked(local.get()))) {
+      tx.abort();
+      return;
+    }
+    tx.reset();
+    long now = System.nanoTime();
+    parked.put(tx, now);
+    if (notls) {
+      shared.offerFirst(tx);
+    } else {
+      local.set(tx);
+    }
+    if (now - nextEviction > 0) {
+      nextEviction = now + maxIdleNanos;
+      evictIdle();
+    }
+  }
+
+  /**
+   * Abort parked transactions that have been idle for longer than the idle lifetime.
+   *
+   * @return number of transactions aborted.
+   */
+  public int evictIdle() {
+    int count = 0;
+    long now = System.nanoTime();
+    for (Map.Entry<Transaction, Long> entry : parked.entrySet()) {
+      if (now - entry.getValue() > maxIdleNanos && parked.remove(entry.getKey(), entry.getValue())) {
+        Transaction tx = entry.getKey();
+        if (notls) {
+          shared.remove(tx);
+        }
+        tx.abort();
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return number of parked transactions.
+   */
+  public int idleCount() {
+    return parked.size();
+  }
+
+  /**
+   * Abort all parked transactions. Called when the environment is closed.
+   */
+  void close() {
+    closed = true;
+    for (Transaction tx : parked.keySet()) {
+      if (parked.remove(tx) != null) {
+        tx.abort();
+      }
+    }
+    shared.clear();
+  }
+
+  private boolean isParked(Transaction tx) {
+    return tx != null && parked.containsKey(tx);
+  }
+
+  private Transaction poll() {
+    if (notls) {
+      return shared.pollFirst();
+    }
+    Transaction tx = local.get();
+    local.remove();
+    return tx;
+  }
+}
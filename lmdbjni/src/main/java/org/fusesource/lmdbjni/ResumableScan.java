@@ -0,0 +1,301 @@
+package org.fusesource.lmdbjni;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
+
+/**
+ * <p>
+ * Zero copy scan over a {@link KeyRange} that does not hold on to a single
+ * read transaction for its whole duration.
+ * </p>
+ *
+ * A long lived read transaction keeps old pages from being reused and makes
+ * the data file grow under write load. Every N entries or T milliseconds the
+ * scan resets and renews its read transaction and moves on from the last key
+ * returned with {@link org.fusesource.lmdbjni.SeekOp#RANGE}. Each
+ * transaction sees the latest committed data, so the scan as a whole is not
+ * a consistent snapshot.
+ * <p>
+ * A scan can also be stopped and picked up later, by another scan and
+ * without a reader slot in between, with a continuation token.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * try (ResumableScan scan = token == null ?
+ *        new ResumableScan(env, db, KeyRange.all()) : ResumableScan.resume(env, db, token)) {
+ *   for (int i = 0; i < pageSize && scan.hasNext(); i++) {
+ *     page.add(scan.next().copy());
+ *   }
+ *   token = scan.continuationToken();
+ * }
+ * }
+ * </pre>
+ *
+ * The scan opens its read transaction on first use. Unless the environment is
+ * opened with {@link org.fusesource.lmdbjni.Constants#NOTLS} it must be used
+ * and closed by the same thread. Databases with
+ * {@link org.fusesource.lmdbjni.Constants#DUPSORT} are not supported since a
+ * scan can only resume at a key.
+ */
+public class ResumableScan implements Iterator<BufferEntry>, AutoCloseable {
+  private static final byte TOKEN_VERSION = 1;
+
+  private final Env env;
+  private final Database db;
+  private final BufferEntry entry = new BufferEntry();
+  private KeyRange range;
+  private int recycleRows = 10000;
+  private long recycleNanos = TimeUnit.SECONDS.toNanos(1);
+  private Transaction tx;
+  private Cursor cursor;
+  private State state = State.NOT_READY;
+  private boolean first = true;
+  private int rows;
+  private long since;
+  private long recycles;
+  private boolean closed;
+  /** the rest of the range when the scan was closed, null if it was complete */
+  private KeyRange closedRest;
+
+  private enum State {
+    READY, NOT_READY, DONE,
+  }
+
+  /**
+   * @param env environment of the database
+   * @param db database to scan
+   * @param range keys to scan and their order
+   */
+  public ResumableScan(Env env, Database db, KeyRange range) {
+    checkArgNotNull(env, "env");
+    checkArgNotNull(db, "db");
+    checkArgNotNull(range, "range");
+    this.env = env;
+    this.db = db;
+    this.range = range;
+  }
+
+  /**
+   * Continue a scan from a token returned by {@link #continuationToken()}.
+   *
+   * @param env environment of the database
+   * @param db the database the token was taken from
+   * @param token continuation token
+   * @return a scan over the rest of the range.
+   * @throws IllegalArgumentException if the token is not valid.
+   */
+  public static ResumableScan resume(Env env, Database db, byte[] token) {
+    checkArgNotNull(token, "token");
+    ByteBuffer buffer = ByteBuffer.wrap(token);
+    if (token.length < 6 || buffer.get() != TOKEN_VERSION) {
+      throw new IllegalArgumentException("Invalid continuation token");
+    }
+    int flags = buffer.get();
+    int startLength = buffer.getInt();
+    if (startLength < 0 || startLength > buffer.remaining()) {
+      throw new IllegalArgumentException("Invalid continuation token");
+    }
+    byte[] start = null;
+    if ((flags & KeyRange.START) != 0) {
+      start = new byte[startLength];
+      buffer.get(start);
+    }
+    byte[] stop = null;
+    if ((flags & KeyRange.STOP) != 0) {
+      stop = new byte[buffer.remaining()];
+      buffer.get(stop);
+    }
+    return new ResumableScan(env, db, KeyRange.of(flags, start, stop));
+  }
+
+  /**
+   * @param rows number of entries to read before the read transaction is
+   *             renewed, 10000 by default.
+   * @return this
+   */
+  public ResumableScan setRecycleRows(int rows) {
+    if (rows <= 0) {
+      throw new IllegalArgumentException("rows must be positive");
+    }
+    this.recycleRows = rows;
+    return this;
+  }
+
+  /**
+   * @param time time after which the read transaction is renewed, one second by default.
+   * @param unit unit of time
+   * @return this
+   */
+  public ResumableScan setRecycleTime(long time, TimeUnit unit) {
+    checkArgNotNull(unit, "unit");
+    if (time <= 0) {
+      throw new IllegalArgumentException("time must be positive");
+    }
+    this.recycleNanos = unit.toNanos(time);
+    return this;
+  }
+
+  /**
+   * @return number of times the read transaction has been renewed.
+   */
+  public long getRecycleCount() {
+    return recycles;
+  }
+
+  @Override
+  public boolean hasNext() {
+    switch (state) {
+      case DONE:
+        return false;
+      case READY:
+        return true;
+      default:
+    }
+    return tryToComputeNext();
+  }
+
+  private boolean tryToComputeNext() {
+    if (tx == null) {
+      open();
+    } else if (!first && (rows >= recycleRows || System.nanoTime() - since >= recycleNanos)) {
+      recycle();
+    }
+    int rc = cursor.positionRange(entry.key, entry.value, range, first);
+    first = false;
+    if (rc == JNI.MDB_NOTFOUND) {
+      state = State.DONE;
+      release();
+      return false;
+    }
+    rows++;
+    state = State.READY;
+    return true;
+  }
+
+  private void open() {
+    tx = env.createReadTransaction();
+    try {
+      if ((db.getFlags(tx) & Constants.DUPSORT) != 0) {
+        throw new IllegalStateException("Resumable scans do not support DUPSORT databases");
+      }
+      cursor = db.openCursor(tx);
+    } catch (RuntimeException e) {
+      release();
+      throw e;
+    }
+    since = System.nanoTime();
+  }
+
+  private void recycle() {
+    // the last key returned is still valid until the transaction is reset
+    range = range.startAt(entry.getKeyBytes(), false);
+    tx.reset();
+    tx.renew();
+    cursor.renew(tx);
+    first = true;
+    rows = 0;
+    since = System.nanoTime();
+    recycles++;
+  }
+
+  /**
+   * @return the reused entry, valid until the next call to hasNext or next.
+   */
+  @Override
+  public BufferEntry next() throws NoSuchElementException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    state = State.NOT_READY;
+    return entry;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  public Iterable<BufferEntry> iterable() {
+    return new Iterable<BufferEntry>() {
+      @Override
+      public Iterator<BufferEntry> iterator() {
+        return ResumableScan.this;
+      }
+    };
+  }
+
+  /**
+   * An opaque token for the rest of the scan, from the entry after the last
+   * one returned by {@link #next()}. Pass it to
+   * {@link #resume(Env, Database, byte[])} to continue the scan later.
+   * The token can be taken before or after the scan is closed.
+   *
+   * @return the token, or null once every entry of the range has been
+   * returned.
+   */
+  public byte[] continuationToken() {
+    KeyRange rest = closed ? closedRest : rest();
+    if (rest == null) {
+      return null;
+    }
+    byte[] start = rest.getStart();
+    byte[] stop = rest.getStop();
+    int startLength = start == null ? 0 : start.length;
+    int stopLength = stop == null ? 0 : stop.length;
+    ByteBuffer token = ByteBuffer.allocate(6 + startLength + stopLength);
+    token.put(TOKEN_VERSION).put((byte) rest.flags()).putInt(startLength);
+    if (start != null) {
+      token.put(start);
+    }
+    if (stop != null) {
+      token.put(stop);
+    }
+    return token.array();
+  }
+
+  /**
+   * @return the keys not returned yet, or null if the scan is complete.
+   */
+  private KeyRange rest() {
+    if (state == State.DONE) {
+      return null;
+    } else if (state == State.READY) {
+      // hasNext read an entry that has not been returned yet
+      return range.startAt(entry.getKeyBytes(), true);
+    } else if (first) {
+      return range;
+    }
+    return range.startAt(entry.getKeyBytes(), false);
+  }
+
+  private void release() {
+    if (cursor != null) {
+      cursor.close();
+      cursor = null;
+    }
+    if (tx != null) {
+      tx.abort();
+      tx = null;
+    }
+  }
+
+  /**
+   * Close the cursor and abort the read transaction. The position of the
+   * scan is kept for {@link #continuationToken()}.
+   */
+  @Override
+  public void close() {
+    if (!closed) {
+      // the entry points into the transaction, read it before releasing
+      closedRest = rest();
+      closed = true;
+    }
+    release();
+    state = State.DONE;
+  }
+}
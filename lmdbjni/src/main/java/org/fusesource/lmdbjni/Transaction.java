@@ -20,6 +20,7 @@ package org.fusesource.lmdbjni;
 
 import java.io.Closeable;
 import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Lock;
 
 import static org.fusesource.lmdbjni.JNI.*;
 import static org.fusesource.lmdbjni.Util.checkErrorCode;
@@ -31,7 +32,12 @@ import static org.fusesource.lmdbjni.Util.checkErrorCode;
  */
 public class Transaction extends NativeObject implements Closeable {
   private DirectBuffer buffer;
+  private DirectBuffer batchBuffer;
   private boolean readOnly;
+  Lock growthLock;
+  /** environment counting this read transaction while it holds a snapshot */
+  Env readerEnv;
+  boolean reading;
 
   Transaction(long self, boolean readOnly) {
     super(self);
@@ -63,7 +69,17 @@ public class Transaction extends NativeObject implements Closeable {
    * may be used again.
    */
   public void renew() {
-    checkErrorCode(mdb_txn_renew(pointer()));
+    if (readerEnv == null || reading) {
+      checkErrorCode(mdb_txn_renew(pointer()));
+      return;
+    }
+    readerEnv.beginRead();
+    int rc = mdb_txn_renew(pointer());
+    if (rc != 0) {
+      readerEnv.endRead();
+    }
+    checkErrorCode(rc);
+    reading = true;
   }
 
   /**
@@ -79,8 +95,12 @@ public class Transaction extends NativeObject implements Closeable {
    */
   public void commit() {
     if (self != 0) {
-      checkErrorCode(mdb_txn_commit(self));
+      // the handle is freed even if the commit fails
+      int rc = mdb_txn_commit(self);
       self = 0;
+      releaseGrowthLock();
+      endRead();
+      checkErrorCode(rc);
     }
   }
 
@@ -106,6 +126,7 @@ public class Transaction extends NativeObject implements Closeable {
   public void reset() {
     checkAllocated();
     mdb_txn_reset(pointer());
+    endRead();
   }
 
   /**
@@ -122,6 +143,22 @@ public class Transaction extends NativeObject implements Closeable {
     if (self != 0) {
       mdb_txn_abort(self);
       self = 0;
+      releaseGrowthLock();
+      endRead();
+    }
+  }
+
+  private void endRead() {
+    if (reading) {
+      reading = false;
+      readerEnv.endRead();
+    }
+  }
+
+  private void releaseGrowthLock() {
+    if (growthLock != null) {
+      growthLock.unlock();
+      growthLock = null;
     }
   }
 
@@ -136,6 +173,17 @@ public class Transaction extends NativeObject implements Closeable {
     return buffer.addressOffset();
   }
 
+  /**
+   * A scratch area of at least size bytes, reused between calls
+   * and grown when needed.
+   */
+  long getBatchAddress(int size) {
+    if (batchBuffer == null || batchBuffer.capacity() < size) {
+      batchBuffer = new DirectBuffer(ByteBuffer.allocateDirect(size));
+    }
+    return batchBuffer.addressOffset();
+  }
+
   @Override
   public void close() {
     abort();
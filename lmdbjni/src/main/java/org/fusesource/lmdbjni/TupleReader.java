@@ -0,0 +1,235 @@
+package org.fusesource.lmdbjni;
+
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
+
+/**
+ * <p>
+ * Reads keys written by {@link TupleWriter} one element at a time.
+ * </p>
+ *
+ * Elements are decoded in place when they are read, so a key in the memory
+ * map can be read without copying it, and elements that are not needed are
+ * skipped without being decoded. Only {@link #readBytes()} and
+ * {@link #readUtf8()} allocate.
+ *
+ * <pre>
+ * {@code
+ * TupleReader key = cursor.keyReadTuple();
+ * int tenant = key.readInt();
+ * key.skip();
+ * long timestamp = key.readLong();
+ * }
+ * </pre>
+ */
+public class TupleReader {
+  private DirectBuffer buffer;
+  private int position;
+  private int limit;
+  private int depth;
+
+  /**
+   * @param buffer buffer holding a whole tuple
+   * @return this
+   */
+  public TupleReader wrap(DirectBuffer buffer) {
+    checkArgNotNull(buffer, "buffer");
+    return wrap(buffer, 0, buffer.capacity());
+  }
+
+  /**
+   * @param buffer buffer holding a tuple
+   * @param offset index of the first byte of the tuple
+   * @param length length of the tuple
+   * @return this
+   */
+  public TupleReader wrap(DirectBuffer buffer, int offset, int length) {
+    checkArgNotNull(buffer, "buffer");
+    this.buffer = buffer;
+    this.position = offset;
+    this.limit = offset + length;
+    this.depth = 0;
+    return this;
+  }
+
+  /**
+   * @return index of the next element.
+   */
+  public int position() {
+    return position;
+  }
+
+  /**
+   * @return true if the tuple, or the nested tuple being read, has more elements.
+   */
+  public boolean hasNext() {
+    return position < limit && buffer.getByte(position) != TupleType.END;
+  }
+
+  /**
+   * @return type of the next element.
+   * @throws NoSuchElementException if there are no more elements.
+   */
+  public TupleType nextType() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return TupleType.of(buffer.getByte(position));
+  }
+
+  public int readInt() {
+    expect(TupleType.INT);
+    int value = buffer.getInt(position + 1, ByteOrder.BIG_ENDIAN) ^ Integer.MIN_VALUE;
+    position += 5;
+    return value;
+  }
+
+  public long readLong() {
+    expect(TupleType.LONG);
+    long value = buffer.getLong(position + 1, ByteOrder.BIG_ENDIAN) ^ Long.MIN_VALUE;
+    position += 9;
+    return value;
+  }
+
+  public double readDouble() {
+    expect(TupleType.DOUBLE);
+    long bits = buffer.getLong(position + 1, ByteOrder.BIG_ENDIAN);
+    position += 9;
+    return Double.longBitsToDouble(bits < 0 ? bits ^ Long.MIN_VALUE : ~bits);
+  }
+
+  public byte[] readBytes() {
+    expect(TupleType.BYTES);
+    return readString();
+  }
+
+  public String readUtf8() {
+    expect(TupleType.UTF8);
+    return new String(readString(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Read a byte string or the UTF-8 bytes of a string without allocating.
+   *
+   * @param dst buffer that receives the bytes
+   * @param offset index in dst of the first byte
+   * @return the number of bytes read.
+   */
+  public int readBytes(DirectBuffer dst, int offset) {
+    checkArgNotNull(dst, "dst");
+    TupleType type = nextType();
+    if (type != TupleType.BYTES && type != TupleType.UTF8) {
+      throw new IllegalStateException("Expected BYTES or UTF8 but found " + type);
+    }
+    int index = position + 1;
+    int length = 0;
+    while (index < limit) {
+      byte b = buffer.getByte(index++);
+      if (b == TupleType.END) {
+        if (index < limit && buffer.getByte(index) == TupleType.ESCAPE) {
+          index++;
+        } else {
+          break;
+        }
+      }
+      dst.putByte(offset + length++, b);
+    }
+    position = index;
+    return length;
+  }
+
+  /**
+   * Step into a nested tuple. {@link #hasNext()} returns false at the end
+   * of the nested tuple, until {@link #endTuple()} steps out of it.
+   */
+  public void beginTuple() {
+    expect(TupleType.TUPLE);
+    position++;
+    depth++;
+  }
+
+  /**
+   * Skip the rest of the nested tuple being read and step out of it.
+   */
+  public void endTuple() {
+    if (depth == 0) {
+      throw new IllegalStateException("Not in a nested tuple");
+    }
+    while (hasNext()) {
+      skip();
+    }
+    if (position < limit) {
+      position++;
+    }
+    depth--;
+  }
+
+  /**
+   * Skip the next element without decoding it.
+   */
+  public void skip() {
+    switch (nextType()) {
+      case INT:
+        position += 5;
+        break;
+      case LONG:
+      case DOUBLE:
+        position += 9;
+        break;
+      case TUPLE:
+        beginTuple();
+        endTuple();
+        break;
+      default:
+        position = Math.min(stringEnd(position + 1) + 1, limit);
+    }
+  }
+
+  private byte[] readString() {
+    int start = position + 1;
+    int end = stringEnd(start);
+    int length = end - start;
+    for (int i = start; i < end; i++) {
+      if (buffer.getByte(i) == TupleType.END) {
+        // skip the escape that follows
+        length--;
+        i++;
+      }
+    }
+    byte[] bytes = new byte[length];
+    for (int i = start, j = 0; j < length; i++) {
+      byte b = buffer.getByte(i);
+      bytes[j++] = b;
+      if (b == TupleType.END) {
+        i++;
+      }
+    }
+    position = Math.min(end + 1, limit);
+    return bytes;
+  }
+
+  /** Index of the terminator of a byte string that starts at index */
+  private int stringEnd(int index) {
+    while (index < limit) {
+      if (buffer.getByte(index) == TupleType.END) {
+        if (index + 1 < limit && buffer.getByte(index + 1) == TupleType.ESCAPE) {
+          index += 2;
+          continue;
+        }
+        return index;
+      }
+      index++;
+    }
+    return limit;
+  }
+
+  private void expect(TupleType type) {
+    TupleType next = nextType();
+    if (next != type) {
+      throw new IllegalStateException("Expected " + type + " but found " + next);
+    }
+  }
+}
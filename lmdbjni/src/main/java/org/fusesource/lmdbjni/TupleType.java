@@ -0,0 +1,60 @@
+package org.fusesource.lmdbjni;
+
+/**
+ * Types of the elements of a tuple key, written by {@link TupleWriter} and
+ * read by {@link TupleReader}.
+ * <p>
+ * Every element starts with the code of its type, so elements of different
+ * types sort in the order of their codes and elements of the same type sort
+ * by value.
+ * </p>
+ */
+public enum TupleType {
+  /** byte string, with 0x00 escaped as 0x00 0xFF and terminated by 0x00 */
+  BYTES(0x01),
+
+  /** UTF-8 string, escaped and terminated like {@link #BYTES} */
+  UTF8(0x02),
+
+  /** nested tuple, its elements followed by 0x00 */
+  TUPLE(0x05),
+
+  /** 4 byte big endian int with the sign bit flipped */
+  INT(0x10),
+
+  /** 8 byte big endian long with the sign bit flipped */
+  LONG(0x11),
+
+  /** 8 byte big endian IEEE 754 double, all bits flipped if negative or else the sign bit */
+  DOUBLE(0x21);
+
+  /** terminates byte strings and nested tuples */
+  static final byte END = 0x00;
+  /** follows a 0x00 byte inside a byte string */
+  static final byte ESCAPE = (byte) 0xff;
+
+  final byte code;
+
+  TupleType(int code) {
+    this.code = (byte) code;
+  }
+
+  static TupleType of(byte code) {
+    switch (code) {
+      case 0x01:
+        return BYTES;
+      case 0x02:
+        return UTF8;
+      case 0x05:
+        return TUPLE;
+      case 0x10:
+        return INT;
+      case 0x11:
+        return LONG;
+      case 0x21:
+        return DOUBLE;
+      default:
+        throw new IllegalStateException("Unknown tuple element type " + (code & 0xff));
+    }
+  }
+}
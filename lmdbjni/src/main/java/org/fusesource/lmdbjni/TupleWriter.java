@@ -0,0 +1,173 @@
+package org.fusesource.lmdbjni;
+
+import java.nio.ByteOrder;
+
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
+
+/**
+ * <p>
+ * Writes composite keys whose bytes sort in the same order as their
+ * elements, so they can be ordered by the default lexical comparator of
+ * LMDB instead of a Java comparator.
+ * </p>
+ *
+ * Tuples are compared element by element. Numbers sort numerically, including
+ * negative numbers, strings sort by code point and a tuple sorts before any
+ * longer tuple it is a prefix of. Elements of different types sort by their
+ * {@link TupleType}, so an int never compares equal to a long.
+ * <p>
+ * Nothing is allocated while writing. Write straight into the key of a cursor
+ * with {@link BufferCursor#keyWriteTuple()}, or into any buffer with
+ * {@link #wrap(DirectBuffer, int)}. Read keys back with {@link TupleReader}.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * cursor.keyWriteTuple().writeInt(tenant).writeUtf8(type).writeLong(timestamp).writeLong(id);
+ * cursor.valWriteBytes(value).put();
+ * }
+ * </pre>
+ */
+public class TupleWriter {
+  private final BufferCursor cursor;
+  private DirectBuffer buffer;
+  private int position;
+  private int depth;
+
+  public TupleWriter() {
+    this(null);
+  }
+
+  /**
+   * A writer that moves the key write index of the cursor along with its own position.
+   */
+  TupleWriter(BufferCursor cursor) {
+    this.cursor = cursor;
+  }
+
+  /**
+   * @param buffer buffer to write into
+   * @return this
+   */
+  public TupleWriter wrap(DirectBuffer buffer) {
+    return wrap(buffer, 0);
+  }
+
+  /**
+   * @param buffer buffer to write into
+   * @param offset index of the first byte to write
+   * @return this
+   */
+  public TupleWriter wrap(DirectBuffer buffer, int offset) {
+    checkArgNotNull(buffer, "buffer");
+    this.buffer = buffer;
+    this.position = offset;
+    this.depth = 0;
+    return this;
+  }
+
+  /**
+   * @return index after the last byte written.
+   */
+  public int position() {
+    return position;
+  }
+
+  public TupleWriter writeInt(int value) {
+    buffer.putByte(position, TupleType.INT.code);
+    buffer.putInt(position + 1, value ^ Integer.MIN_VALUE, ByteOrder.BIG_ENDIAN);
+    return advance(5);
+  }
+
+  public TupleWriter writeLong(long value) {
+    buffer.putByte(position, TupleType.LONG.code);
+    buffer.putLong(position + 1, value ^ Long.MIN_VALUE, ByteOrder.BIG_ENDIAN);
+    return advance(9);
+  }
+
+  /**
+   * Doubles sort from negative infinity to positive infinity, with -0.0
+   * before 0.0 and NaN last.
+   */
+  public TupleWriter writeDouble(double value) {
+    long bits = Double.doubleToLongBits(value);
+    bits = bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+    buffer.putByte(position, TupleType.DOUBLE.code);
+    buffer.putLong(position + 1, bits, ByteOrder.BIG_ENDIAN);
+    return advance(9);
+  }
+
+  public TupleWriter writeBytes(byte[] value) {
+    checkArgNotNull(value, "value");
+    return writeBytes(value, 0, value.length);
+  }
+
+  public TupleWriter writeBytes(byte[] value, int offset, int length) {
+    checkArgNotNull(value, "value");
+    int index = position;
+    buffer.putByte(index++, TupleType.BYTES.code);
+    for (int i = offset; i < offset + length; i++) {
+      index = putEscaped(index, value[i]);
+    }
+    buffer.putByte(index++, TupleType.END);
+    return advance(index - position);
+  }
+
+  public TupleWriter writeBytes(DirectBuffer value, int offset, int length) {
+    checkArgNotNull(value, "value");
+    int index = position;
+    buffer.putByte(index++, TupleType.BYTES.code);
+    for (int i = offset; i < offset + length; i++) {
+      index = putEscaped(index, value.getByte(i));
+    }
+    buffer.putByte(index++, TupleType.END);
+    return advance(index - position);
+  }
+
+  /**
+   * Write a string encoded as UTF-8. Unpaired surrogates are written as '?'.
+   */
+  public TupleWriter writeUtf8(CharSequence value) {
+    checkArgNotNull(value, "value");
+    int index = position;
+    buffer.putByte(index++, TupleType.UTF8.code);
+    index = Utf8.encode(value, buffer, index, true);
+    buffer.putByte(index++, TupleType.END);
+    return advance(index - position);
+  }
+
+  /**
+   * Start a nested tuple. Elements written until the matching
+   * {@link #endTuple()} belong to the nested tuple.
+   */
+  public TupleWriter beginTuple() {
+    buffer.putByte(position, TupleType.TUPLE.code);
+    depth++;
+    return advance(1);
+  }
+
+  public TupleWriter endTuple() {
+    if (depth == 0) {
+      throw new IllegalStateException("No nested tuple to end");
+    }
+    buffer.putByte(position, TupleType.END);
+    depth--;
+    return advance(1);
+  }
+
+  private int putEscaped(int index, byte b) {
+    buffer.putByte(index++, b);
+    if (b == TupleType.END) {
+      buffer.putByte(index++, TupleType.ESCAPE);
+    }
+    return index;
+  }
+
+  private TupleWriter advance(int length) {
+    position += length;
+    if (cursor != null) {
+      cursor.setKeyWriteIndex(position);
+    }
+    return this;
+  }
+}
@@ -0,0 +1,192 @@
+package org.fusesource.lmdbjni;
+
+import java.nio.ByteBuffer;
+
+import static org.fusesource.lmdbjni.JNI.MDB_KEYEXIST;
+import static org.fusesource.lmdbjni.JNI.MDB_NOTFOUND;
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
+
+/**
+ * <p>
+ * A database of typed keys and values, converted with a {@link ValueCodec}
+ * for each.
+ * </p>
+ *
+ * Keys are encoded into a buffer owned by the calling thread. Values with an
+ * exact encoded size are encoded straight into space reserved in the page
+ * with {@link org.fusesource.lmdbjni.Constants#RESERVE}, without an
+ * intermediate byte array. Values are decoded from the memory map.
+ * <p>
+ * LMDB does not reserve space in {@link org.fusesource.lmdbjni.Constants#DUPSORT}
+ * databases, values of those are encoded into a buffer of the calling
+ * thread like values without an exact size.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * TypedDatabase<String, Long> counts = new TypedDatabase<>(db, ValueCodecs.UTF8, ValueCodecs.LONG);
+ * try (Transaction tx = env.createWriteTransaction()) {
+ *   counts.put(tx, "visits", 1L);
+ *   tx.commit();
+ * }
+ * }
+ * </pre>
+ */
+public class TypedDatabase<K, V> {
+  private final Database db;
+  private final ValueCodec<K> keyCodec;
+  private final ValueCodec<V> valueCodec;
+  private final ThreadLocal<Buffers> buffers;
+  /** whether values can be encoded into reserved space, read on the first put */
+  private volatile Boolean reserve;
+
+  /**
+   * Buffers owned by one thread. The key and value views are wrapped for
+   * the duration of a single call.
+   */
+  private static final class Buffers {
+    final DirectBuffer keySpace;
+    final DirectBuffer key = new DirectBuffer(0, 0);
+    final DirectBuffer value = new DirectBuffer(0, 0);
+    DirectBuffer valueSpace;
+
+    Buffers(int maxKeySize) {
+      keySpace = new DirectBuffer(ByteBuffer.allocateDirect(maxKeySize));
+    }
+
+    DirectBuffer valueSpace(int size) {
+      if (valueSpace == null || valueSpace.capacity() < size) {
+        valueSpace = new DirectBuffer(ByteBuffer.allocateDirect(Math.max(size, 1024)));
+      }
+      return valueSpace;
+    }
+  }
+
+  /**
+   * @param db database to store keys and values in
+   * @param keyCodec converts keys, which must encode to at most
+   *                 {@link Env#getMaxKeySize()} bytes.
+   * @param valueCodec converts values
+   */
+  public TypedDatabase(Database db, ValueCodec<K> keyCodec, ValueCodec<V> valueCodec) {
+    checkArgNotNull(db, "db");
+    checkArgNotNull(keyCodec, "keyCodec");
+    checkArgNotNull(valueCodec, "valueCodec");
+    this.db = db;
+    this.keyCodec = keyCodec;
+    this.valueCodec = valueCodec;
+    final int maxKeySize = (int) db.env.getMaxKeySize();
+    this.buffers = new ThreadLocal<Buffers>() {
+      @Override
+      protected Buffers initialValue() {
+        return new Buffers(maxKeySize);
+      }
+    };
+  }
+
+  public Database getDatabase() {
+    return db;
+  }
+
+  /**
+   * @param tx transaction handle
+   * @param key key to look up
+   * @return the decoded value, or null if the key is not found.
+   */
+  public V get(Transaction tx, K key) {
+    checkArgNotNull(tx, "tx");
+    Buffers buffers = this.buffers.get();
+    if (db.get(tx, encodeKey(buffers, key), buffers.value) == MDB_NOTFOUND) {
+      return null;
+    }
+    return valueCodec.decode(buffers.value);
+  }
+
+  /**
+   * Store a value, replacing any previous value of the key.
+   *
+   * @param tx write transaction handle
+   * @param key key to store
+   * @param value value to store
+   */
+  public void put(Transaction tx, K key, V value) {
+    put(tx, key, value, 0);
+  }
+
+  /**
+   * Store a value unless the key already exists.
+   *
+   * @param tx write transaction handle
+   * @param key key to store
+   * @param value value to store
+   * @return true if the value was stored, false if the key already exists.
+   */
+  public boolean putIfAbsent(Transaction tx, K key, V value) {
+    return put(tx, key, value, Constants.NOOVERWRITE) != MDB_KEYEXIST;
+  }
+
+  private int put(Transaction tx, K key, V value, int flags) {
+    checkArgNotNull(tx, "tx");
+    checkArgNotNull(value, "value");
+    Buffers buffers = this.buffers.get();
+    DirectBuffer keyBuffer = encodeKey(buffers, key);
+    int size = valueCodec.encodedSize(value);
+    if (!canReserve(tx)) {
+      DirectBuffer valueSpace = buffers.valueSpace(size);
+      buffers.value.wrap(valueSpace.addressOffset(), size);
+      int length = valueCodec.encode(value, buffers.value);
+      buffers.value.wrap(valueSpace.addressOffset(), length);
+      try {
+        return db.put(tx, keyBuffer, buffers.value, flags);
+      } catch (LMDBException e) {
+        if (e.getErrorCode() == MDB_KEYEXIST) {
+          return MDB_KEYEXIST;
+        }
+        throw e;
+      }
+    }
+    int rc = db.reserve(tx, keyBuffer, size, flags, buffers.value);
+    if (rc == MDB_KEYEXIST) {
+      return rc;
+    }
+    int length = valueCodec.encode(value, buffers.value);
+    if (length != size) {
+      // LMDB expects the reserved space to be filled, the transaction should be aborted
+      throw new IllegalStateException("Encoded " + length + " bytes into " + size + " reserved bytes");
+    }
+    return rc;
+  }
+
+  private boolean canReserve(Transaction tx) {
+    Boolean reserve = this.reserve;
+    if (reserve == null) {
+      reserve = valueCodec.isExactSize() && (db.getFlags(tx) & Constants.DUPSORT) == 0;
+      this.reserve = reserve;
+    }
+    return reserve;
+  }
+
+  /**
+   * @param tx write transaction handle
+   * @param key key to delete
+   * @return true if the key was found and deleted.
+   */
+  public boolean delete(Transaction tx, K key) {
+    checkArgNotNull(tx, "tx");
+    return db.delete(tx, encodeKey(this.buffers.get(), key));
+  }
+
+  private DirectBuffer encodeKey(Buffers buffers, K key) {
+    checkArgNotNull(key, "key");
+    int capacity = buffers.keySpace.capacity();
+    int size = keyCodec.encodedSize(key);
+    if (size > capacity && keyCodec.isExactSize()) {
+      throw new IllegalArgumentException("Key of " + size + " bytes is longer than the maximum key size of "
+        + capacity + " bytes");
+    }
+    buffers.key.wrap(buffers.keySpace.addressOffset(), Math.min(size, capacity));
+    int length = keyCodec.encode(key, buffers.key);
+    buffers.key.wrap(buffers.keySpace.addressOffset(), length);
+    return buffers.key;
+  }
+}
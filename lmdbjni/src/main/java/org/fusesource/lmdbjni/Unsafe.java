@@ -45,4 +45,17 @@ class Unsafe {
   public static void getBytes(long address, int index, byte[] key) {
     UNSAFE.copyMemory(null, address + index, key, ARRAY_BASE_OFFSET, key.length);
   }
+
+  /**
+   * Copy the data of the MDB_val found at offset into a new array.
+   */
+  public static byte[] toByteArray(long address, int offset) {
+    long data = getAddress(address, offset + 1);
+    if (data == 0) {
+      return null;
+    }
+    byte[] bytes = new byte[(int) getLong(address, offset)];
+    getBytes(data, 0, bytes);
+    return bytes;
+  }
 }
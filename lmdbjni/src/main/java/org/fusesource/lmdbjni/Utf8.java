@@ -0,0 +1,72 @@
+package org.fusesource.lmdbjni;
+
+/**
+ * UTF-8 encoding straight into a buffer, without an intermediate byte array.
+ * Unpaired surrogates are replaced by '?' like String.getBytes does.
+ */
+final class Utf8 {
+  private Utf8() {
+  }
+
+  /**
+   * @return the number of bytes {@link #encode(CharSequence, DirectBuffer, int, boolean)}
+   * writes without escaping.
+   */
+  static int encodedLength(CharSequence value) {
+    int size = 0;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        size += 1;
+      } else if (c < 0x800) {
+        size += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        size += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        size += 1;
+      } else {
+        size += 3;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @param value string to encode
+   * @param buffer buffer to write into
+   * @param index index of the first byte to write
+   * @param escape follow every {@link TupleType#END} byte with
+   *               {@link TupleType#ESCAPE}, as tuple elements do.
+   * @return the index after the last byte written.
+   */
+  static int encode(CharSequence value, DirectBuffer buffer, int index, boolean escape) {
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer.putByte(index++, (byte) c);
+        if (escape && c == TupleType.END) {
+          buffer.putByte(index++, TupleType.ESCAPE);
+        }
+      } else if (c < 0x800) {
+        buffer.putByte(index++, (byte) (0xc0 | c >> 6));
+        buffer.putByte(index++, (byte) (0x80 | c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer.putByte(index++, (byte) (0xf0 | codePoint >> 18));
+        buffer.putByte(index++, (byte) (0x80 | codePoint >> 12 & 0x3f));
+        buffer.putByte(index++, (byte) (0x80 | codePoint >> 6 & 0x3f));
+        buffer.putByte(index++, (byte) (0x80 | codePoint & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        buffer.putByte(index++, (byte) '?');
+      } else {
+        buffer.putByte(index++, (byte) (0xe0 | c >> 12));
+        buffer.putByte(index++, (byte) (0x80 | c >> 6 & 0x3f));
+        buffer.putByte(index++, (byte) (0x80 | c & 0x3f));
+      }
+    }
+    return index;
+  }
+}
@@ -0,0 +1,47 @@
+package org.fusesource.lmdbjni;
+
+/**
+ * <p>
+ * Converts objects to and from their stored form for a {@link TypedDatabase}.
+ * </p>
+ *
+ * A codec that knows the exact encoded size of a value lets the value be
+ * encoded straight into space reserved in the database page with
+ * {@link org.fusesource.lmdbjni.Constants#RESERVE}, so it is written exactly
+ * once. A codec that can only estimate the size returns an upper bound and
+ * false from {@link #isExactSize()}. Its values are encoded into a scratch
+ * buffer and copied into the page.
+ * <p>
+ * Codecs are shared between threads and should be stateless.
+ * </p>
+ *
+ * @see ValueCodecs
+ */
+public interface ValueCodec<T> {
+  /**
+   * @return true if {@link #encodedSize(Object)} is exact.
+   */
+  boolean isExactSize();
+
+  /**
+   * @param value value to encode
+   * @return the number of bytes {@link #encode(Object, DirectBuffer)} will
+   * write, or an upper bound of it if the size is not exact.
+   */
+  int encodedSize(T value);
+
+  /**
+   * @param value value to encode
+   * @param buffer buffer with a capacity of {@link #encodedSize(Object)},
+   *               to be filled from index 0.
+   * @return the number of bytes written, the full capacity for exact sizes.
+   */
+  int encode(T value, DirectBuffer buffer);
+
+  /**
+   * @param buffer the stored bytes, often pointing into the memory map and
+   *               only valid until the transaction ends.
+   * @return the decoded value, which must not keep a reference to the buffer.
+   */
+  T decode(DirectBuffer buffer);
+}
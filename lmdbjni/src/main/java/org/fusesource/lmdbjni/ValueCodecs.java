@@ -0,0 +1,83 @@
+package org.fusesource.lmdbjni;
+
+import java.nio.ByteOrder;
+
+/**
+ * Codecs for common types, all with exact sizes.
+ */
+public final class ValueCodecs {
+  private ValueCodecs() {
+  }
+
+  /** byte arrays stored as is */
+  public static final ValueCodec<byte[]> BYTES = new ValueCodec<byte[]>() {
+    @Override
+    public boolean isExactSize() {
+      return true;
+    }
+
+    @Override
+    public int encodedSize(byte[] value) {
+      return value.length;
+    }
+
+    @Override
+    public int encode(byte[] value, DirectBuffer buffer) {
+      return buffer.putBytes(0, value);
+    }
+
+    @Override
+    public byte[] decode(DirectBuffer buffer) {
+      byte[] bytes = new byte[buffer.capacity()];
+      buffer.getBytes(0, bytes);
+      return bytes;
+    }
+  };
+
+  /** longs stored as 8 big endian bytes, which sort like unsigned numbers */
+  public static final ValueCodec<Long> LONG = new ValueCodec<Long>() {
+    @Override
+    public boolean isExactSize() {
+      return true;
+    }
+
+    @Override
+    public int encodedSize(Long value) {
+      return 8;
+    }
+
+    @Override
+    public int encode(Long value, DirectBuffer buffer) {
+      buffer.putLong(0, value, ByteOrder.BIG_ENDIAN);
+      return 8;
+    }
+
+    @Override
+    public Long decode(DirectBuffer buffer) {
+      return buffer.getLong(0, ByteOrder.BIG_ENDIAN);
+    }
+  };
+
+  /** strings stored as UTF-8, encoded without an intermediate byte array */
+  public static final ValueCodec<String> UTF8 = new ValueCodec<String>() {
+    @Override
+    public boolean isExactSize() {
+      return true;
+    }
+
+    @Override
+    public int encodedSize(String value) {
+      return Utf8.encodedLength(value);
+    }
+
+    @Override
+    public int encode(String value, DirectBuffer buffer) {
+      return Utf8.encode(value, buffer, 0, false);
+    }
+
+    @Override
+    public String decode(DirectBuffer buffer) {
+      return buffer.getStringWithoutLengthUtf8(0, buffer.capacity());
+    }
+  };
+}
@@ -0,0 +1,110 @@
+package org.fusesource.lmdbjni;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * <p>
+ * Streams a value straight out of the memory map, so a large value never
+ * has to be copied onto the Java heap as a whole.
+ * </p>
+ *
+ * The stream reads memory owned by the database and is only valid until the
+ * transaction ends or the value is changed.
+ *
+ * @see Database#openValueInputStream(Transaction, byte[])
+ */
+public class ValueInputStream extends InputStream implements ReadableByteChannel {
+  private final ByteBuffer source;
+  private boolean open = true;
+
+  ValueInputStream(ByteBuffer source) {
+    this.source = source;
+  }
+
+  @Override
+  public int read() throws IOException {
+    checkOpen();
+    return source.hasRemaining() ? source.get() & 0xff : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    checkOpen();
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (len == 0) {
+      return 0;
+    }
+    if (!source.hasRemaining()) {
+      return -1;
+    }
+    int length = Math.min(len, source.remaining());
+    source.get(b, off, length);
+    return length;
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    checkOpen();
+    if (!source.hasRemaining()) {
+      return -1;
+    }
+    int length = Math.min(dst.remaining(), source.remaining());
+    ByteBuffer slice = source.duplicate();
+    slice.limit(slice.position() + length);
+    dst.put(slice);
+    source.position(source.position() + length);
+    return length;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    checkOpen();
+    int length = (int) Math.max(0, Math.min(n, source.remaining()));
+    source.position(source.position() + length);
+    return length;
+  }
+
+  @Override
+  public int available() throws IOException {
+    checkOpen();
+    return source.remaining();
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+    source.mark();
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    checkOpen();
+    source.reset();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public void close() {
+    open = false;
+  }
+
+  private void checkOpen() throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package org.fusesource.lmdbjni;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * <p>
+ * Streams a value straight into space reserved for it in the database, so
+ * a large value never has to be held on the Java heap.
+ * </p>
+ *
+ * The size of the value is fixed when the stream is opened with
+ * {@link Database#openValueOutputStream(Transaction, byte[], int)} and
+ * exactly that many bytes must be written. The reserved space is only valid
+ * until the next update in the transaction, so close the stream before
+ * making other changes and before the transaction is committed.
+ */
+public class ValueOutputStream extends OutputStream implements WritableByteChannel {
+  private final ByteBuffer target;
+  private boolean open = true;
+
+  ValueOutputStream(ByteBuffer target) {
+    this.target = target;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    checkOpen();
+    ensureRemaining(1);
+    target.put((byte) b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    checkOpen();
+    ensureRemaining(len);
+    target.put(b, off, len);
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    checkOpen();
+    int length = src.remaining();
+    ensureRemaining(length);
+    target.put(src);
+    return length;
+  }
+
+  /**
+   * @return number of bytes left to write.
+   */
+  public int remaining() {
+    return target.remaining();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  /**
+   * @throws IOException if fewer bytes were written than reserved. The rest
+   * of the value is zeroed in that case.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!open) {
+      return;
+    }
+    open = false;
+    int missing = target.remaining();
+    if (missing > 0) {
+      // LMDB expects the reserved space to be filled
+      while (target.hasRemaining()) {
+        target.put((byte) 0);
+      }
+      throw new IOException("Only " + (target.capacity() - missing) + " of "
+        + target.capacity() + " reserved bytes were written");
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  private void ensureRemaining(int length) throws IOException {
+    if (length > target.remaining()) {
+      throw new IOException("Writing " + length + " bytes exceeds the reserved size by "
+        + (length - target.remaining()) + " bytes", new BufferOverflowException());
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package org.fusesource.lmdbjni;
+
+import java.nio.ByteBuffer;
+
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
+
+/**
+ * <p>
+ * Put and delete operations collected in off-heap memory and applied
+ * to a database in a single native call using
+ * {@link Database#write(Transaction, WriteBatch)}.
+ * </p>
+ *
+ * Records are copied into a growable direct buffer as they are added,
+ * so key and value buffers can be reused immediately. Each record is
+ * stored as four native order words the size of a pointer (operation, flags,
+ * key size, value size) followed by the key and value bytes, each padded to
+ * a word boundary.
+ * <p>
+ * After a batch has been written, {@link WriteBatch#result(int)} holds the
+ * result code of each record, which is non-zero for puts rejected with
+ * {@link org.fusesource.lmdbjni.LMDBException#KEYEXIST} and deletes of
+ * keys that did not exist {@link org.fusesource.lmdbjni.LMDBException#NOTFOUND}.
+ * </p>
+ * <p>
+ * A WriteBatch is not thread safe.
+ * </p>
+ * <pre>
+ * {@code
+ * WriteBatch batch = new WriteBatch();
+ * batch.put(key1, value1);
+ * batch.put(key2, value2, Constants.NOOVERWRITE);
+ * batch.delete(key3);
+ * try (Transaction tx = env.createWriteTransaction()) {
+ *   db.write(tx, batch);
+ *   tx.commit();
+ * }
+ * boolean existed = batch.result(1) == LMDBException.KEYEXIST;
+ * batch.clear();
+ * }
+ * </pre>
+ */
+public class WriteBatch {
+  static final int PUT = 0;
+  static final int DELETE = 1;
+  static final int DELETE_VALUE = 2;
+  /** size of the size_t fields read by the native side */
+  private static final int WORD_SIZE = Unsafe.ADDRESS_SIZE;
+  private static final int HEADER_SIZE = 4 * WORD_SIZE;
+
+  private DirectBuffer records;
+  private DirectBuffer results;
+  private int length = 0;
+  private int size = 0;
+
+  public WriteBatch() {
+    this(4096);
+  }
+
+  /**
+   * @param initialCapacity initial size in bytes of the off-heap record buffer.
+   */
+  public WriteBatch(int initialCapacity) {
+    this.records = new DirectBuffer(ByteBuffer.allocateDirect(Math.max(initialCapacity, HEADER_SIZE)));
+  }
+
+  /**
+   * @see org.fusesource.lmdbjni.WriteBatch#put(DirectBuffer, DirectBuffer, int)
+   */
+  public WriteBatch put(DirectBuffer key, DirectBuffer value) {
+    return put(key, value, 0);
+  }
+
+  /**
+   * Add a put record to the batch.
+   *
+   * @param key The key to store in the database
+   * @param value The value to store in the database
+   * @param flags Same flags as {@link Database#put(Transaction, byte[], byte[], int)}
+   *              except {@link org.fusesource.lmdbjni.Constants#RESERVE}.
+   * @return this
+   */
+  public WriteBatch put(DirectBuffer key, DirectBuffer value, int flags) {
+    checkArgNotNull(key, "key");
+    checkArgNotNull(value, "value");
+    if ((flags & Constants.RESERVE) != 0) {
+      throw new IllegalArgumentException("RESERVE is not supported in a batch");
+    }
+    int pos = append(PUT, flags, key.capacity(), value.capacity());
+    records.putBytes(pos, key, 0, key.capacity());
+    records.putBytes(pos + align(key.capacity()), value, 0, value.capacity());
+    return this;
+  }
+
+  /**
+   * @see org.fusesource.lmdbjni.WriteBatch#put(byte[], byte[], int)
+   */
+  public WriteBatch put(byte[] key, byte[] value) {
+    return put(key, value, 0);
+  }
+
+  /**
+   * @see org.fusesource.lmdbjni.WriteBatch#put(DirectBuffer, DirectBuffer, int)
+   */
+  public WriteBatch put(byte[] key, byte[] value, int flags) {
+    checkArgNotNull(key, "key");
+    checkArgNotNull(value, "value");
+    if ((flags & Constants.RESERVE) != 0) {
+      throw new IllegalArgumentException("RESERVE is not supported in a batch");
+    }
+    int pos = append(PUT, flags, key.length, value.length);
+    records.putBytes(pos, key);
+    records.putBytes(pos + align(key.length), value);
+    return this;
+  }
+
+  /**
+   * Add a delete record to the batch. All duplicates of
+   * the key are deleted.
+   *
+   * @param key The key to delete from the database.
+   * @return this
+   */
+  public WriteBatch delete(DirectBuffer key) {
+    checkArgNotNull(key, "key");
+    int pos = append(DELETE, 0, key.capacity(), 0);
+    records.putBytes(pos, key, 0, key.capacity());
+    return this;
+  }
+
+  /**
+   * Add a delete record of a key/data pair to the batch.
+   *
+   * @param key The key to delete from the database.
+   * @param value The value to delete from the database.
+   * @return this
+   * @see Database#delete(Transaction, byte[], byte[])
+   */
+  public WriteBatch delete(DirectBuffer key, DirectBuffer value) {
+    checkArgNotNull(key, "key");
+    checkArgNotNull(value, "value");
+    int pos = append(DELETE_VALUE, 0, key.capacity(), value.capacity());
+    records.putBytes(pos, key, 0, key.capacity());
+    records.putBytes(pos + align(key.capacity()), value, 0, value.capacity());
+    return this;
+  }
+
+  /**
+   * @see org.fusesource.lmdbjni.WriteBatch#delete(DirectBuffer)
+   */
+  public WriteBatch delete(byte[] key) {
+    checkArgNotNull(key, "key");
+    int pos = append(DELETE, 0, key.length, 0);
+    records.putBytes(pos, key);
+    return this;
+  }
+
+  /**
+   * @see org.fusesource.lmdbjni.WriteBatch#delete(DirectBuffer, DirectBuffer)
+   */
+  public WriteBatch delete(byte[] key, byte[] value) {
+    checkArgNotNull(key, "key");
+    checkArgNotNull(value, "value");
+    int pos = append(DELETE_VALUE, 0, key.length, value.length);
+    records.putBytes(pos, key);
+    records.putBytes(pos + align(key.length), value);
+    return this;
+  }
+
+  /**
+   * @return number of records in the batch.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return number of bytes used by the records in the batch.
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Result code of a record after the batch has been written.
+   *
+   * @param index record index, in the order records were added.
+   * @return 0 on success, {@link org.fusesource.lmdbjni.LMDBException#KEYEXIST}
+   * or {@link org.fusesource.lmdbjni.LMDBException#NOTFOUND}.
+   */
+  public int result(int index) {
+    if (results == null || index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("No result for record " + index);
+    }
+    return results.getInt(index * 4);
+  }
+
+  /**
+   * Remove all records, keeping the allocated memory for reuse.
+   */
+  public void clear() {
+    length = 0;
+    size = 0;
+  }
+
+  long recordsAddress() {
+    return records.addressOffset();
+  }
+
+  long resultsAddress() {
+    if (results == null || results.capacity() < size * 4) {
+      results = new DirectBuffer(ByteBuffer.allocateDirect(Math.max(size, 64) * 4));
+    }
+    return results.addressOffset();
+  }
+
+  private int append(int op, int flags, int keySize, int valueSize) {
+    int recordSize = HEADER_SIZE + align(keySize) + align(valueSize);
+    ensureWritableBytes(recordSize);
+    int pos = length;
+    putWord(pos, op);
+    putWord(pos + WORD_SIZE, flags & 0xFFFFFFFFL);
+    putWord(pos + 2 * WORD_SIZE, keySize);
+    putWord(pos + 3 * WORD_SIZE, valueSize);
+    length += recordSize;
+    size++;
+    return pos + HEADER_SIZE;
+  }
+
+  private void ensureWritableBytes(int minWritableBytes) {
+    if (minWritableBytes <= records.capacity() - length) {
+      return;
+    }
+    int newCapacity = records.capacity();
+    int minNewCapacity = length + minWritableBytes;
+    while (newCapacity < minNewCapacity) {
+      newCapacity <<= 1;
+      // exceeded maximum size of 2gb, then newCapacity == 0
+      if (newCapacity == 0) {
+        throw new IllegalStateException("Maximum size of 2gb exceeded");
+      }
+    }
+    DirectBuffer newRecords = new DirectBuffer(ByteBuffer.allocateDirect(newCapacity));
+    newRecords.putBytes(0, records, 0, length);
+    records = newRecords;
+  }
+
+  private void putWord(int index, long value) {
+    if (WORD_SIZE == 8) {
+      records.putLong(index, value);
+    } else {
+      records.putInt(index, (int) value);
+    }
+  }
+
+  private static int align(int size) {
+    return (size + WORD_SIZE - 1) & -WORD_SIZE;
+  }
+}
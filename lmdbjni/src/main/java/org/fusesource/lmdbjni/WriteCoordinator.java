@@ -0,0 +1,354 @@
+package org.fusesource.lmdbjni;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.fusesource.lmdbjni.Util.checkArgNotNull;
+
+/**
+ * <p>
+ * Group commit for many threads doing small writes. Writes submitted from
+ * any thread are applied back to back by a single writer thread in one
+ * write transaction, which is committed once per group. The future of each
+ * write completes after the group it belongs to has been committed.
+ * </p>
+ *
+ * A group is closed when it holds maxCount writes or maxBytes bytes, as
+ * estimated by the submitter, or when maxWait has passed since its first
+ * write was taken. With a maxWait of zero a group holds the writes that
+ * queued up while the previous group was being committed.
+ * <p>
+ * Each write runs in a nested transaction, so a write that throws is
+ * rolled back without affecting the rest of its group. Nested transactions
+ * are not available with {@link org.fusesource.lmdbjni.Constants#WRITEMAP},
+ * in which case the group is aborted and applied again without the failed write.
+ * </p>
+ * <p>
+ * If the environment is opened with {@link org.fusesource.lmdbjni.Constants#NOSYNC}
+ * the commit itself does not flush, and the coordinator calls {@link Env#sync(boolean)}
+ * once per group before completing its futures, so a completed write is durable.
+ * </p>
+ * <p>
+ * With a {@link MapGrowthPolicy} set on the environment, a group that fails with
+ * {@link org.fusesource.lmdbjni.LMDBException#MAP_FULL} is aborted and applied
+ * again after the map has been grown.
+ * </p>
+ * <pre>
+ * {@code
+ * WriteCoordinator coordinator = new WriteCoordinator(env);
+ * Future<Void> future = coordinator.submit(new WriteCoordinator.Write<Void>() {
+ *   public Void write(Transaction tx) {
+ *     db.put(tx, key, value);
+ *     return null;
+ *   }
+ * }, key.length + value.length);
+ * future.get();
+ * coordinator.close();
+ * }
+ * </pre>
+ */
+public class WriteCoordinator implements AutoCloseable {
+
+  /**
+   * A write applied by the writer thread.
+   *
+   * @param <T> result type
+   */
+  public interface Write<T> {
+    /**
+     * Apply the write. The transaction must not be committed, aborted
+     * or used after returning.
+     *
+     * @param tx write transaction handle
+     * @return result of the future
+     * @throws Exception to roll back the write and fail its future
+     */
+    T write(Transaction tx) throws Exception;
+  }
+
+  private static final Task<Object> SHUTDOWN = new Task<>(null, 0);
+
+  private final Env env;
+  private final int maxCount;
+  private final long maxBytes;
+  private final long maxWaitNanos;
+  private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+  private final Thread writer;
+  private boolean closed = false;
+
+  /**
+   * Groups of at most 1000 writes or 16 MB, without waiting for more writes.
+   *
+   * @param env an open environment
+   */
+  public WriteCoordinator(Env env) {
+    this(env, 1000, 16 * 1024 * 1024, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param env an open environment
+   * @param maxCount maximum number of writes in a group.
+   * @param maxBytes maximum number of bytes in a group, as estimated by submitters.
+   * @param maxWait maximum time to wait for more writes once a group is started.
+   * @param unit time unit of maxWait
+   */
+  public WriteCoordinator(Env env, int maxCount, long maxBytes, long maxWait, TimeUnit unit) {
+    checkArgNotNull(env, "env");
+    if (maxCount < 1 || maxBytes < 1 || maxWait < 0) {
+      throw new IllegalArgumentException("Group bounds must be positive");
+    }
+    this.env = env;
+    this.maxCount = maxCount;
+    this.maxBytes = maxBytes;
+    this.maxWaitNanos = unit.toNanos(maxWait);
+    this.writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeLoop();
+      }
+    }, "lmdbjni-write-coordinator");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * @see org.fusesource.lmdbjni.WriteCoordinator#submit(Write, int)
+   */
+  public <T> Future<T> submit(Write<T> write) {
+    return submit(write, 0);
+  }
+
+  /**
+   * Queue a write for the next group.
+   *
+   * @param write the write to apply
+   * @param bytes estimated number of bytes written, counted towards maxBytes.
+   * @return a future that completes when the group of the write has been committed.
+   * @throws IllegalStateException if the coordinator is closed.
+   */
+  public <T> Future<T> submit(Write<T> write, int bytes) {
+    checkArgNotNull(write, "write");
+    Task<T> task = new Task<>(write, bytes);
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("WriteCoordinator is closed");
+      }
+      queue.add(task);
+    }
+    return task;
+  }
+
+  /**
+   * Stop accepting writes, commit the writes already submitted
+   * and wait for the writer thread to finish.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      queue.add(SHUTDOWN);
+    }
+    boolean interrupted = false;
+    while (writer.isAlive()) {
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeLoop() {
+    List<Task<?>> group = new ArrayList<>();
+    boolean shutdown = false;
+    while (!shutdown) {
+      try {
+        Task<?> task = queue.take();
+        long deadline = System.nanoTime() + maxWaitNanos;
+        long bytes = 0;
+        while (task != null) {
+          if (task == SHUTDOWN) {
+            shutdown = true;
+            break;
+          }
+          group.add(task);
+          bytes += task.bytes;
+          if (group.size() >= maxCount || bytes >= maxBytes) {
+            break;
+          }
+          long remaining = deadline - System.nanoTime();
+          task = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+        }
+      } catch (InterruptedException e) {
+        // keep running until closed
+      }
+      if (!group.isEmpty()) {
+        commit(group);
+        group.clear();
+      }
+    }
+  }
+
+  private void commit(List<Task<?>> group) {
+    try {
+      boolean nested = (env.getFlags() & Constants.WRITEMAP) == 0;
+      while (true) {
+        long generation = env.mapGeneration();
+        try {
+          while (!commitGroup(group, nested)) {
+            // a failed write without nested transactions, applied again without it
+          }
+          break;
+        } catch (LMDBException e) {
+          if (!env.growMap(e, generation)) {
+            throw e;
+          }
+        }
+      }
+      if ((env.getFlags() & Constants.NOSYNC) != 0) {
+        env.sync(true);
+      }
+      for (Task<?> task : group) {
+        task.done();
+      }
+    } catch (Throwable e) {
+      for (Task<?> task : group) {
+        task.fail(e);
+      }
+    }
+  }
+
+  /**
+   * @return false if the group was aborted and should be applied again
+   */
+  private boolean commitGroup(List<Task<?>> group, boolean nested) {
+    Transaction tx = env.createWriteTransaction();
+    boolean applied = false;
+    try {
+      for (int i = 0; i < group.size(); i++) {
+        Task<?> task = group.get(i);
+        if (task.isDone()) {
+          continue;
+        }
+        if (nested) {
+          Transaction child = env.createTransaction(tx);
+          try {
+            task.apply(child);
+          } catch (Throwable e) {
+            child.abort();
+            if (isMapFull(e)) {
+              throw (LMDBException) e;
+            }
+            task.fail(e);
+            continue;
+          }
+          child.commit();
+        } else {
+          try {
+            task.apply(tx);
+          } catch (Throwable e) {
+            if (isMapFull(e)) {
+              throw (LMDBException) e;
+            }
+            task.fail(e);
+            group.remove(i);
+            return false;
+          }
+        }
+      }
+      applied = true;
+    } finally {
+      if (!applied) {
+        tx.abort();
+      }
+    }
+    // a failed commit frees the transaction
+    tx.commit();
+    return true;
+  }
+
+  /**
+   * A full map fails the whole group, which is replayed if the map can grow.
+   */
+  private boolean isMapFull(Throwable e) {
+    return e instanceof LMDBException && ((LMDBException) e).getErrorCode() == LMDBException.MAP_FULL
+      && env.getMapGrowthPolicy() != null;
+  }
+
+  private static class Task<T> implements Future<T> {
+    private final Write<T> write;
+    private final int bytes;
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private T value;
+    private Throwable error;
+
+    Task(Write<T> write, int bytes) {
+      this.write = write;
+      this.bytes = bytes;
+    }
+
+    void apply(Transaction tx) throws Exception {
+      value = write.write(tx);
+    }
+
+    void done() {
+      latch.countDown();
+    }
+
+    void fail(Throwable e) {
+      if (latch.getCount() > 0) {
+        error = e;
+        latch.countDown();
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    @Override
+    public boolean isDone() {
+      return latch.getCount() == 0;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+      latch.await();
+      return result();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      if (!latch.await(timeout, unit)) {
+        throw new TimeoutException();
+      }
+      return result();
+    }
+
+    private T result() throws ExecutionException {
+      if (error != null) {
+        throw new ExecutionException(error);
+      }
+      return value;
+    }
+  }
+}
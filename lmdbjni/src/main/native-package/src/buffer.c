@@ -17,7 +17,338 @@
  */
 
 #include "lmdbjni.h"
+#include <errno.h>
 
 void buffer_copy(const void *source, size_t source_pos, void *dest, size_t dest_pos, size_t length) {
   memmove(((char *)dest)+dest_pos, ((const char *)source)+source_pos, length);
 }
+
+int batch_get(MDB_txn *txn, MDB_dbi dbi, MDB_val *keys, size_t *results, size_t count, size_t *found) {
+  size_t i;
+  size_t n = 0;
+  int rc;
+  for (i = 0; i < count; i++) {
+    size_t *entry = results + 3 * i;
+    MDB_val *data = (MDB_val *)(entry + 1);
+    rc = mdb_get(txn, dbi, &keys[i], data);
+    if (rc == MDB_SUCCESS) {
+      entry[0] = 1;
+      n++;
+    } else if (rc == MDB_NOTFOUND) {
+      entry[0] = 0;
+      data->mv_size = 0;
+      data->mv_data = NULL;
+    } else {
+      *found = n;
+      return rc;
+    }
+  }
+  *found = n;
+  return MDB_SUCCESS;
+}
+
+#define BATCH_PUT 0
+#define BATCH_DELETE 1
+#define BATCH_DELETE_VALUE 2
+#define BATCH_ALIGN(size) (((size) + sizeof(size_t) - 1) & ~(sizeof(size_t) - 1))
+
+int batch_write(MDB_txn *txn, MDB_dbi dbi, char *records, size_t length, int *results, size_t *skipped) {
+  size_t pos = 0;
+  size_t i = 0;
+  size_t n = 0;
+  int rc;
+  while (pos < length) {
+    size_t *header = (size_t *)(records + pos);
+    MDB_val key, data;
+    key.mv_size = header[2];
+    key.mv_data = records + pos + 4 * sizeof(size_t);
+    data.mv_size = header[3];
+    data.mv_data = ((char *)key.mv_data) + BATCH_ALIGN(key.mv_size);
+    switch (header[0]) {
+      case BATCH_PUT:
+        rc = mdb_put(txn, dbi, &key, &data, (unsigned int)header[1]);
+        break;
+      case BATCH_DELETE:
+        rc = mdb_del(txn, dbi, &key, NULL);
+        break;
+      case BATCH_DELETE_VALUE:
+        rc = mdb_del(txn, dbi, &key, &data);
+        break;
+      default:
+        rc = EINVAL;
+    }
+    results[i] = rc;
+    if (rc == MDB_KEYEXIST || rc == MDB_NOTFOUND) {
+      n++;
+    } else if (rc != MDB_SUCCESS) {
+      *skipped = n;
+      return rc;
+    }
+    pos += 4 * sizeof(size_t) + BATCH_ALIGN(header[2]) + BATCH_ALIGN(header[3]);
+    i++;
+  }
+  *skipped = n;
+  return MDB_SUCCESS;
+}
+
+int cursor_get_batch(MDB_cursor *cursor, MDB_val *table, size_t max, int first_op, int op, size_t *count) {
+  size_t i = 0;
+  int rc = MDB_SUCCESS;
+  if (max > 0) {
+    rc = mdb_cursor_get(cursor, &table[0], &table[1], (MDB_cursor_op)first_op);
+    while (rc == MDB_SUCCESS && ++i < max) {
+      rc = mdb_cursor_get(cursor, &table[2 * i], &table[2 * i + 1], (MDB_cursor_op)op);
+    }
+  }
+  *count = i;
+  return rc;
+}
+
+static MDB_cursor_op key_op(int op) {
+  switch (op) {
+    case MDB_NEXT:
+      return MDB_NEXT_NODUP;
+    case MDB_PREV:
+      return MDB_PREV_NODUP;
+    default:
+      return (MDB_cursor_op)op;
+  }
+}
+
+int cursor_get_keys(MDB_cursor *cursor, MDB_val *keys, size_t max, int first_op, int op, size_t *count) {
+  MDB_val dup, *data = NULL;
+  unsigned int db_flags;
+  size_t i = 0;
+  int rc = mdb_dbi_flags(mdb_cursor_txn(cursor), mdb_cursor_dbi(cursor), &db_flags);
+  if (rc == MDB_SUCCESS && max > 0) {
+    if (db_flags & MDB_DUPSORT) {
+      /* the duplicate cursor is only set up when data is read. Duplicates are
+         never stored on overflow pages, and each key is returned once. */
+      data = &dup;
+      first_op = key_op(first_op);
+      op = key_op(op);
+    }
+    /* without data LMDB returns the key from the leaf node and leaves overflow pages untouched */
+    rc = mdb_cursor_get(cursor, &keys[0], data, (MDB_cursor_op)first_op);
+    while (rc == MDB_SUCCESS && ++i < max) {
+      rc = mdb_cursor_get(cursor, &keys[i], data, (MDB_cursor_op)op);
+    }
+  }
+  *count = i;
+  return rc;
+}
+
+int cursor_get_multiple(MDB_cursor *cursor, MDB_val *key, MDB_val *data, int op, size_t *elem_size) {
+  MDB_val current;
+  int rc;
+  data->mv_size = 0;
+  data->mv_data = NULL;
+  rc = mdb_cursor_get(cursor, key, data, (MDB_cursor_op)op);
+  if (rc != MDB_SUCCESS) {
+    return rc;
+  }
+  /* GET_MULTIPLE does not return the key, and leaves data untouched for a key with a single value */
+  rc = mdb_cursor_get(cursor, key, &current, MDB_GET_CURRENT);
+  if (rc != MDB_SUCCESS) {
+    return rc;
+  }
+  if (data->mv_data == NULL) {
+    *data = current;
+  }
+  *elem_size = current.mv_size;
+  return MDB_SUCCESS;
+}
+
+int array_get(MDB_txn *txn, MDB_dbi dbi, char *key, size_t key_size, MDB_val *data) {
+  MDB_val k;
+  k.mv_size = key_size;
+  k.mv_data = key;
+  return mdb_get(txn, dbi, &k, data);
+}
+
+int array_put(MDB_txn *txn, MDB_dbi dbi, char *key, size_t key_size, char *value, size_t value_size,
+              MDB_val *existing, unsigned int flags) {
+  MDB_val k;
+  int rc;
+  k.mv_size = key_size;
+  k.mv_data = key;
+  existing->mv_size = value_size;
+  existing->mv_data = value;
+  rc = mdb_put(txn, dbi, &k, existing, flags);
+  if (rc != MDB_KEYEXIST || existing->mv_data == value) {
+    /* only a rejected MDB_NOOVERWRITE insert points data at the existing value */
+    existing->mv_size = 0;
+    existing->mv_data = NULL;
+  }
+  return rc;
+}
+
+int array_cursor_get(MDB_cursor *cursor, char *key, size_t key_size, MDB_val *entry, MDB_cursor_op op) {
+  int rc;
+  entry[0].mv_size = key_size;
+  entry[0].mv_data = key;
+  rc = mdb_cursor_get(cursor, &entry[0], &entry[1], op);
+  if (entry[0].mv_data == key) {
+    /* the key was not replaced with the one in the database and is released on return */
+    entry[0].mv_data = NULL;
+  }
+  return rc;
+}
+
+#define RANGE_BACKWARD 1
+#define RANGE_START 2
+#define RANGE_START_EXCLUSIVE 4
+#define RANGE_STOP 8
+#define RANGE_STOP_EXCLUSIVE 16
+#define RANGE_STOP_PREFIX 32
+
+static int range_contains(MDB_txn *txn, MDB_dbi dbi, MDB_val *key, MDB_val *stop, int flags) {
+  int cmp;
+  if (flags & RANGE_STOP_PREFIX) {
+    return key->mv_size >= stop->mv_size && memcmp(key->mv_data, stop->mv_data, stop->mv_size) == 0;
+  }
+  cmp = mdb_cmp(txn, dbi, key, stop);
+  if (flags & RANGE_BACKWARD) {
+    cmp = -cmp;
+  }
+  return cmp < 0 || (cmp == 0 && !(flags & RANGE_STOP_EXCLUSIVE));
+}
+
+static int range_first(MDB_cursor *cursor, MDB_val *key, MDB_val *data, MDB_val *start, int flags) {
+  MDB_txn *txn = mdb_cursor_txn(cursor);
+  MDB_dbi dbi = mdb_cursor_dbi(cursor);
+  unsigned int db_flags;
+  int rc;
+  if (!(flags & RANGE_START)) {
+    return mdb_cursor_get(cursor, key, data, (flags & RANGE_BACKWARD) ? MDB_LAST : MDB_FIRST);
+  }
+  *key = *start;
+  rc = mdb_cursor_get(cursor, key, data, MDB_SET_RANGE);
+  if (!(flags & RANGE_BACKWARD)) {
+    if (rc == 0 && (flags & RANGE_START_EXCLUSIVE) && mdb_cmp(txn, dbi, key, start) == 0) {
+      rc = mdb_cursor_get(cursor, key, data, MDB_NEXT_NODUP);
+    }
+    return rc;
+  }
+  if (rc == MDB_NOTFOUND) {
+    /* every key is below the start */
+    return mdb_cursor_get(cursor, key, data, MDB_LAST);
+  }
+  if (rc != 0) {
+    return rc;
+  }
+  if (mdb_cmp(txn, dbi, key, start) != 0 || (flags & RANGE_START_EXCLUSIVE)) {
+    return mdb_cursor_get(cursor, key, data, MDB_PREV);
+  }
+  /* an inclusive backward scan starts at the last duplicate of the start key */
+  rc = mdb_dbi_flags(txn, dbi, &db_flags);
+  if (rc == 0 && (db_flags & MDB_DUPSORT)) {
+    rc = mdb_cursor_get(cursor, key, data, MDB_LAST_DUP);
+  }
+  return rc;
+}
+
+int cursor_get_range(MDB_cursor *cursor, MDB_val *key, MDB_val *data, MDB_val *bounds, int flags, int first) {
+  int rc;
+  if (first) {
+    rc = range_first(cursor, key, data, &bounds[0], flags);
+  } else {
+    rc = mdb_cursor_get(cursor, key, data, (flags & RANGE_BACKWARD) ? MDB_PREV : MDB_NEXT);
+  }
+  if (rc == 0 && (flags & RANGE_STOP) &&
+      !range_contains(mdb_cursor_txn(cursor), mdb_cursor_dbi(cursor), key, &bounds[1], flags)) {
+    rc = MDB_NOTFOUND;
+  }
+  return rc;
+}
+
+static int long_value(MDB_val *data, jlong *value) {
+  if (data->mv_size != sizeof(jlong)) {
+    return MDB_BAD_VALSIZE;
+  }
+  /* values in the map are not necessarily aligned */
+  memcpy(value, data->mv_data, sizeof(jlong));
+  return MDB_SUCCESS;
+}
+
+int long_get(MDB_txn *txn, MDB_dbi dbi, jlong key, jlong *value) {
+  MDB_val k, data;
+  int rc;
+  k.mv_size = sizeof(key);
+  k.mv_data = &key;
+  rc = mdb_get(txn, dbi, &k, &data);
+  return rc == MDB_SUCCESS ? long_value(&data, value) : rc;
+}
+
+int long_put(MDB_txn *txn, MDB_dbi dbi, jlong key, jlong value, unsigned int flags) {
+  MDB_val k, data;
+  k.mv_size = sizeof(key);
+  k.mv_data = &key;
+  data.mv_size = sizeof(value);
+  data.mv_data = &value;
+  return mdb_put(txn, dbi, &k, &data, flags);
+}
+
+int long_del(MDB_txn *txn, MDB_dbi dbi, jlong key) {
+  MDB_val k;
+  k.mv_size = sizeof(key);
+  k.mv_data = &key;
+  return mdb_del(txn, dbi, &k, NULL);
+}
+
+int long_get_batch(MDB_txn *txn, MDB_dbi dbi, jlong *keys, jlong *values, size_t count, jlong missing, size_t *found) {
+  size_t i;
+  int rc = MDB_SUCCESS;
+  *found = 0;
+  for (i = 0; i < count; i++) {
+    rc = long_get(txn, dbi, keys[i], &values[i]);
+    if (rc == MDB_NOTFOUND) {
+      values[i] = missing;
+      rc = MDB_SUCCESS;
+    } else if (rc != MDB_SUCCESS) {
+      break;
+    } else {
+      (*found)++;
+    }
+  }
+  return rc;
+}
+
+int long_put_batch(MDB_txn *txn, MDB_dbi dbi, jlong *keys, jlong *values, size_t count, unsigned int flags) {
+  size_t i;
+  int rc = MDB_SUCCESS;
+  for (i = 0; i < count && rc == MDB_SUCCESS; i++) {
+    rc = long_put(txn, dbi, keys[i], values[i], flags);
+  }
+  return rc;
+}
+
+int long_cursor_batch(MDB_cursor *cursor, jlong from, jlong to, jlong *table, size_t max, int first, size_t *count) {
+  MDB_val key, data;
+  jlong k;
+  size_t i = 0;
+  int rc;
+  key.mv_size = sizeof(from);
+  key.mv_data = &from;
+  rc = mdb_cursor_get(cursor, &key, &data, first ? MDB_SET_RANGE : MDB_NEXT);
+  while (rc == MDB_SUCCESS) {
+    if (key.mv_size != sizeof(jlong)) {
+      rc = MDB_BAD_VALSIZE;
+      break;
+    }
+    memcpy(&k, key.mv_data, sizeof(k));
+    /* INTEGERKEY orders keys as unsigned numbers */
+    if ((uint64_t) k > (uint64_t) to) {
+      rc = MDB_NOTFOUND;
+      break;
+    }
+    table[2 * i] = k;
+    rc = long_value(&data, &table[2 * i + 1]);
+    if (rc != MDB_SUCCESS || ++i == max) {
+      break;
+    }
+    rc = mdb_cursor_get(cursor, &key, &data, MDB_NEXT);
+  }
+  *count = i;
+  return rc;
+}
@@ -0,0 +1,104 @@
+#include "lmdbjni.h"
+
+/*
+ * Built-in key and data comparators that can be installed with
+ * mdb_set_compare() or mdb_set_dupsort() without calling back into Java.
+ */
+
+#define NATIVE_COMPARATOR_SIGNED_LONG_BE 0
+#define NATIVE_COMPARATOR_UNSIGNED_128 1
+#define NATIVE_COMPARATOR_DOUBLE_BE 2
+#define NATIVE_COMPARATOR_REVERSE 3
+
+static int compare_lexical(const void *a, size_t a_size, const void *b, size_t b_size) {
+  size_t len = a_size < b_size ? a_size : b_size;
+  int diff = len == 0 ? 0 : memcmp(a, b, len);
+  if (diff != 0) {
+    return diff;
+  }
+  return a_size < b_size ? -1 : a_size > b_size;
+}
+
+static uint64_t read_uint64_be(const unsigned char *p) {
+  return ((uint64_t)p[0] << 56) | ((uint64_t)p[1] << 48) | ((uint64_t)p[2] << 40) | ((uint64_t)p[3] << 32) |
+         ((uint64_t)p[4] << 24) | ((uint64_t)p[5] << 16) | ((uint64_t)p[6] << 8) | (uint64_t)p[7];
+}
+
+static uint64_t read_uint64_native(const unsigned char *p) {
+  uint64_t v;
+  memcpy(&v, p, sizeof(v));
+  return v;
+}
+
+static int compare_uint64(uint64_t a, uint64_t b) {
+  return a < b ? -1 : a > b;
+}
+
+/* Compare the remainder of two keys that have an equal fixed size prefix */
+static int compare_tail(const MDB_val *a, const MDB_val *b, size_t prefix) {
+  return compare_lexical((const char *)a->mv_data + prefix, a->mv_size - prefix,
+                         (const char *)b->mv_data + prefix, b->mv_size - prefix);
+}
+
+/* Big endian signed 64-bit integer prefix, remaining bytes compared lexically */
+static int compare_signed_long_be(const MDB_val *a, const MDB_val *b) {
+  int diff;
+  if (a->mv_size < 8 || b->mv_size < 8) {
+    return compare_lexical(a->mv_data, a->mv_size, b->mv_data, b->mv_size);
+  }
+  /* flipping the sign bit orders two's complement values as unsigned */
+  diff = compare_uint64(read_uint64_be(a->mv_data) ^ 0x8000000000000000ULL,
+                        read_uint64_be(b->mv_data) ^ 0x8000000000000000ULL);
+  return diff != 0 ? diff : compare_tail(a, b, 8);
+}
+
+/* Unsigned 128-bit integer prefix stored as two native order 64-bit words, most significant first */
+static int compare_unsigned_128(const MDB_val *a, const MDB_val *b) {
+  const unsigned char *pa = a->mv_data;
+  const unsigned char *pb = b->mv_data;
+  int diff;
+  if (a->mv_size < 16 || b->mv_size < 16) {
+    return compare_lexical(a->mv_data, a->mv_size, b->mv_data, b->mv_size);
+  }
+  diff = compare_uint64(read_uint64_native(pa), read_uint64_native(pb));
+  if (diff == 0) {
+    diff = compare_uint64(read_uint64_native(pa + 8), read_uint64_native(pb + 8));
+  }
+  return diff != 0 ? diff : compare_tail(a, b, 16);
+}
+
+/* Maps the bits of a double to an unsigned value with the same total order as Double.compare */
+static uint64_t double_order(uint64_t bits) {
+  return (bits & 0x8000000000000000ULL) ? ~bits : bits ^ 0x8000000000000000ULL;
+}
+
+/* Big endian IEEE 754 double prefix, remaining bytes compared lexically */
+static int compare_double_be(const MDB_val *a, const MDB_val *b) {
+  int diff;
+  if (a->mv_size < 8 || b->mv_size < 8) {
+    return compare_lexical(a->mv_data, a->mv_size, b->mv_data, b->mv_size);
+  }
+  diff = compare_uint64(double_order(read_uint64_be(a->mv_data)),
+                        double_order(read_uint64_be(b->mv_data)));
+  return diff != 0 ? diff : compare_tail(a, b, 8);
+}
+
+/* Descending lexical order */
+static int compare_reverse(const MDB_val *a, const MDB_val *b) {
+  return compare_lexical(b->mv_data, b->mv_size, a->mv_data, a->mv_size);
+}
+
+intptr_t native_comparator(int id) {
+  switch (id) {
+    case NATIVE_COMPARATOR_SIGNED_LONG_BE:
+      return (intptr_t)&compare_signed_long_be;
+    case NATIVE_COMPARATOR_UNSIGNED_128:
+      return (intptr_t)&compare_unsigned_128;
+    case NATIVE_COMPARATOR_DOUBLE_BE:
+      return (intptr_t)&compare_double_be;
+    case NATIVE_COMPARATOR_REVERSE:
+      return (intptr_t)&compare_reverse;
+    default:
+      return 0;
+  }
+}
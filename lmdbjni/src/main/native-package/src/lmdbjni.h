@@ -59,6 +59,23 @@ extern "C" {
 #endif
 
 void buffer_copy(const void *source, size_t source_pos, void *dest, size_t dest_pos, size_t length);
+int batch_get(MDB_txn *txn, MDB_dbi dbi, MDB_val *keys, size_t *results, size_t count, size_t *found);
+int batch_write(MDB_txn *txn, MDB_dbi dbi, char *records, size_t length, int *results, size_t *skipped);
+int cursor_get_batch(MDB_cursor *cursor, MDB_val *table, size_t max, int first_op, int op, size_t *count);
+int cursor_get_keys(MDB_cursor *cursor, MDB_val *keys, size_t max, int first_op, int op, size_t *count);
+int cursor_get_multiple(MDB_cursor *cursor, MDB_val *key, MDB_val *data, int op, size_t *elem_size);
+int array_get(MDB_txn *txn, MDB_dbi dbi, char *key, size_t key_size, MDB_val *data);
+int array_put(MDB_txn *txn, MDB_dbi dbi, char *key, size_t key_size, char *value, size_t value_size,
+              MDB_val *existing, unsigned int flags);
+int array_cursor_get(MDB_cursor *cursor, char *key, size_t key_size, MDB_val *entry, MDB_cursor_op op);
+int cursor_get_range(MDB_cursor *cursor, MDB_val *key, MDB_val *data, MDB_val *bounds, int flags, int first);
+int long_get(MDB_txn *txn, MDB_dbi dbi, jlong key, jlong *value);
+int long_put(MDB_txn *txn, MDB_dbi dbi, jlong key, jlong value, unsigned int flags);
+int long_del(MDB_txn *txn, MDB_dbi dbi, jlong key);
+int long_get_batch(MDB_txn *txn, MDB_dbi dbi, jlong *keys, jlong *values, size_t count, jlong missing, size_t *found);
+int long_put_batch(MDB_txn *txn, MDB_dbi dbi, jlong *keys, jlong *values, size_t count, unsigned int flags);
+int long_cursor_batch(MDB_cursor *cursor, jlong from, jlong to, jlong *table, size_t max, int first, size_t *count);
+intptr_t native_comparator(int id);
 
 #ifdef __cplusplus
 } /* extern "C" */
@@ -0,0 +1,202 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.*;
+
+public class BlobStoreTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+  BlobStore blobs;
+  byte[] data = new byte[1024 * 1024 + 123];
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env();
+    env.setMapSize(64 * 1024 * 1024);
+    env.open(path);
+    db = env.openDatabase();
+    blobs = new BlobStore(db);
+    new Random(3).nextBytes(data);
+    try (Transaction tx = env.createWriteTransaction()) {
+      try (OutputStream out = blobs.openOutputStream(tx, 2)) {
+        out.write(data[0]);
+        out.write(data, 1, data.length - 1);
+      }
+      try (OutputStream out = blobs.openOutputStream(tx, 1)) {
+        out.write(new byte[]{1, 2, 3});
+      }
+      try (OutputStream out = blobs.openOutputStream(tx, 3)) {
+        out.write(new byte[0]);
+      }
+      tx.commit();
+    }
+  }
+
+  @After
+  public void after() {
+    db.close();
+    env.close();
+  }
+
+  @Test
+  public void testChunks() {
+    assertThat(blobs.getChunkSize(), is(BlobStore.maxInlineChunkSize(env.stat().ms_psize)));
+    Stat stat = db.stat();
+    assertThat(stat.ms_overflow_pages, is(0L));
+    int chunks = (data.length + blobs.getChunkSize() - 1) / blobs.getChunkSize();
+    assertThat(stat.ms_entries, is(chunks + 1 + 2 + 1L));
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    try (Transaction tx = env.createReadTransaction()) {
+      assertThat(blobs.length(tx, 2), is((long) data.length));
+      assertThat(blobs.length(tx, 3), is(0L));
+      assertThat(blobs.length(tx, 4), is(-1L));
+      assertThat(blobs.openInputStream(tx, 4), nullValue());
+
+      byte[] copy = new byte[data.length];
+      try (InputStream in = blobs.openInputStream(tx, 2)) {
+        copy[0] = (byte) in.read();
+        int offset = 1;
+        for (int n; (n = in.read(copy, offset, Math.min(5000, copy.length - offset))) > 0; ) {
+          offset += n;
+        }
+        assertThat(offset, is(data.length));
+        assertThat(in.read(), is(-1));
+      }
+      assertArrayEquals(data, copy);
+
+      try (InputStream in = blobs.openInputStream(tx, 1)) {
+        assertThat(in.read(), is(1));
+        assertThat(in.skip(5), is(2L));
+        assertThat(in.read(), is(-1));
+      }
+      try (InputStream in = blobs.openInputStream(tx, 3)) {
+        assertThat(in.read(), is(-1));
+      }
+    }
+  }
+
+  @Test
+  public void testRange() throws IOException {
+    int chunkSize = blobs.getChunkSize();
+    try (Transaction tx = env.createReadTransaction()) {
+      byte[] range = new byte[3 * chunkSize];
+      long offset = 100L * chunkSize - 10;
+      assertThat(blobs.read(tx, 2, offset, range, 0, range.length), is(range.length));
+      assertArrayEquals(Arrays.copyOfRange(data, (int) offset, (int) offset + range.length), range);
+
+      assertThat(blobs.read(tx, 2, data.length - 5, range, 1, 10), is(5));
+      assertArrayEquals(Arrays.copyOfRange(data, data.length - 5, data.length), Arrays.copyOfRange(range, 1, 6));
+      assertThat(blobs.read(tx, 2, data.length + 5, range, 0, 10), is(0));
+      assertThat(blobs.read(tx, 9, 0, range, 0, 10), is(-1));
+
+      try (InputStream in = blobs.openInputStream(tx, 2, 10, 4 * chunkSize)) {
+        assertThat(in.read(), is(data[10] & 0xff));
+        assertThat(in.skip(2L * chunkSize), is(2L * chunkSize));
+        assertThat(in.read(), is(data[11 + 2 * chunkSize] & 0xff));
+        assertThat(in.skip(10 * chunkSize), is(2L * chunkSize - 2));
+        assertThat(in.read(), is(-1));
+      }
+    }
+  }
+
+  @Test
+  public void testReplaceAndDelete() throws IOException {
+    try (Transaction tx = env.createWriteTransaction()) {
+      try (OutputStream out = blobs.openOutputStream(tx, 2)) {
+        out.write(new byte[]{9});
+      }
+      assertTrue(blobs.delete(tx, 1));
+      assertFalse(blobs.delete(tx, 1));
+      tx.commit();
+    }
+    assertThat(db.stat().ms_entries, is(2 + 1L));
+    try (Transaction tx = env.createReadTransaction()) {
+      byte[] copy = new byte[2];
+      assertThat(blobs.read(tx, 2, 0, copy, 0, 2), is(1));
+      assertThat(copy[0], is((byte) 9));
+      assertThat(blobs.length(tx, 1), is(-1L));
+    }
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      int chunks = (data.length + blobs.getChunkSize() - 1) / blobs.getChunkSize();
+      assertThat(blobs.prefetch(2, 0, Long.MAX_VALUE, executor, 4), is((long) chunks));
+      assertThat(blobs.prefetch(2, blobs.getChunkSize() - 1, 2, executor, 4), is(2L));
+      assertThat(blobs.prefetch(1, 0, 10, executor, 4), is(1L));
+      assertThat(blobs.prefetch(3, 0, 10, executor, 4), is(0L));
+      assertThat(blobs.prefetch(4, 0, 10, executor, 4), is(0L));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPrefetchNegativeOffset() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      blobs.prefetch(2, -1, 10, executor, 1);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testPrefetchReplaced() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // replaces the blob after its header is read, before the slices run
+      executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          Thread.sleep(200);
+          try (Transaction tx = env.createWriteTransaction()) {
+            try (OutputStream out = blobs.openOutputStream(tx, 2)) {
+              out.write(new byte[10]);
+            }
+            tx.commit();
+          }
+          return null;
+        }
+      });
+      assertThat(blobs.prefetch(2, 0, Long.MAX_VALUE, executor, 1), is(0L));
+      assertThat(blobs.prefetch(2, 0, Long.MAX_VALUE, executor, 1), is(1L));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullDatabase() {
+    new BlobStore(null);
+  }
+}
@@ -14,6 +14,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.*;
 
 public class BufferCursorTest {
@@ -53,6 +54,196 @@ public class BufferCursorTest {
     env.close();
   }
 
+  @Test
+  public void testMultiple() throws IOException {
+    Env env = new Env(tmp.newFolder().getCanonicalPath());
+    Database dupFixed = env.openDatabase("dupfixed", Constants.DUPSORT | Constants.DUPFIXED | Constants.CREATE);
+    byte[] postings = new byte[]{1};
+    for (int i = 0; i < 2000; i++) {
+      dupFixed.put(postings, Bytes.fromLong(i));
+    }
+    byte[] single = new byte[]{2};
+    dupFixed.put(single, Bytes.fromLong(42));
+
+    Transaction tx = env.createReadTransaction();
+    try (BufferCursor cursor = dupFixed.bufferCursor(tx)) {
+      cursor.keyWriteBytes(postings);
+      assertTrue(cursor.seekKey());
+      assertThat(cursor.dupFixedCount(), is(0));
+      assertTrue(cursor.getMultiple());
+      assertThat(cursor.keyByte(0), is((byte) 1));
+      assertThat(cursor.dupFixedSize(), is(8));
+      int pages = 1;
+      long expected = 0;
+      do {
+        for (int i = 0; i < cursor.dupFixedCount(); i++) {
+          assertThat(cursor.dupFixedLong(i), is(expected++));
+        }
+      } while (cursor.nextMultiple() && ++pages > 0);
+      assertThat(expected, is(2000L));
+      assertTrue(pages > 1);
+      assertThat(cursor.dupFixedCount(), is(0));
+
+      cursor.keyWriteBytes(single);
+      assertTrue(cursor.seekKey());
+      assertTrue(cursor.getMultiple());
+      assertThat(cursor.dupFixedCount(), is(1));
+      assertThat(cursor.dupFixedLong(0), is(42L));
+      assertFalse(cursor.nextMultiple());
+    } finally {
+      tx.abort();
+    }
+
+    tx = env.createWriteTransaction();
+    try (BufferCursor cursor = dupFixed.bufferCursor(tx)) {
+      cursor.keyWriteBytes(single);
+      for (int i = 0; i < 10; i++) {
+        cursor.valWriteLong(100 + i);
+      }
+      assertThat(cursor.putMultiple(8), is(10));
+    }
+    tx.commit();
+
+    tx = env.createReadTransaction();
+    try (BufferCursor cursor = dupFixed.bufferCursor(tx)) {
+      cursor.keyWriteBytes(single);
+      assertTrue(cursor.seekKey());
+      assertTrue(cursor.getMultiple());
+      assertThat(cursor.dupFixedCount(), is(11));
+      assertThat(cursor.dupFixedLong(0), is(42L));
+      assertThat(cursor.dupFixedLong(10), is(109L));
+    } finally {
+      tx.abort();
+    }
+    dupFixed.close();
+    env.close();
+  }
+
+  @Test
+  public void testCachedBufferCursor() {
+    BufferCursor first;
+    try (Transaction tx = env.createReadTransaction()) {
+      first = db.cachedBufferCursor(tx);
+      assertTrue(first.last());
+      first.close();
+    }
+    try (Transaction tx = env.createReadTransaction()) {
+      try (BufferCursor cursor = db.cachedBufferCursor(tx)) {
+        assertThat(cursor, sameInstance(first));
+        assertThat(cursor.keyLength(), is(0));
+        assertTrue(cursor.first());
+        assertThat(cursor.keyLong(0), is(0L));
+      }
+    }
+  }
+
+  @Test
+  public void testBatch() {
+    Transaction tx = env.createReadTransaction();
+    try (BufferCursor cursor = db.bufferCursor(tx)) {
+      assertThat(cursor.firstBatch(3), is(3));
+      assertThat(cursor.batchKey(0).getLong(0), is(0L));
+      assertThat(cursor.batchVal(2).getByte(7), is((byte) 2));
+      assertThat(cursor.keyByte(7), is((byte) 2));
+
+      int count = 3;
+      int n;
+      while ((n = cursor.nextBatch(4)) > 0) {
+        for (int i = 0; i < n; i++) {
+          assertThat(cursor.batchKey(i).capacity(), is(cursor.batchVal(i).capacity()));
+        }
+        count += n;
+      }
+      assertThat(count, is(keys.size()));
+      assertThat(cursor.batchSize(), is(0));
+      assertThat(cursor.keyLength(), is(0));
+
+      assertThat(cursor.lastBatch(2), is(2));
+      assertThat(cursor.batchKey(0).getByte(0), is((byte) 9));
+      assertThat(cursor.batchKey(1).getByte(0), is((byte) 8));
+      assertThat(cursor.prevBatch(100), is(keys.size() - 2));
+      assertThat(cursor.keyLength(), is(8));
+      assertThat(cursor.keyLong(0), is(0L));
+      try {
+        cursor.batchKey(keys.size());
+        fail();
+      } catch (IndexOutOfBoundsException e) {
+        // expected
+      }
+    } finally {
+      tx.abort();
+    }
+  }
+
+  @Test
+  public void testKeyOnly() {
+    // a second duplicate is skipped by the key only methods
+    db.put(new byte[]{1}, new byte[]{2});
+    Transaction tx = env.createReadTransaction();
+    try (BufferCursor cursor = db.bufferCursor(tx)) {
+      int count = 0;
+      for (boolean found = cursor.firstKey(); found; found = cursor.nextKey()) {
+        assertThat(cursor.valLength(), is(0));
+        count++;
+      }
+      assertThat(count, is(keys.size()));
+      assertThat(cursor.keyLength(), is(0));
+
+      assertTrue(cursor.lastKey());
+      assertThat(cursor.keyByte(0), is((byte) 9));
+      assertTrue(cursor.prevKey());
+      assertThat(cursor.keyByte(0), is((byte) 8));
+
+      cursor.keyWriteBytes(new byte[]{5});
+      assertTrue(cursor.seekRangeKey());
+      assertThat(cursor.keyByte(0), is((byte) 5));
+      assertThat(cursor.valLength(), is(0));
+
+      assertThat(cursor.firstKeyBatch(3), is(3));
+      assertThat(cursor.batchKey(0).getLong(0), is(0L));
+      assertThat(cursor.keyByte(7), is((byte) 2));
+      assertThat(cursor.nextKeyBatch(100), is(keys.size() - 3));
+      assertThat(cursor.batchKey(keys.size() - 4).getByte(0), is((byte) 9));
+      try {
+        cursor.batchVal(0);
+        fail();
+      } catch (IllegalStateException e) {
+        // expected
+      }
+      assertThat(cursor.lastKeyBatch(2), is(2));
+      assertThat(cursor.batchKey(1).getByte(0), is((byte) 8));
+      assertThat(cursor.prevKeyBatch(100), is(keys.size() - 2));
+      assertThat(cursor.keyLong(0), is(0L));
+    } finally {
+      tx.abort();
+    }
+  }
+
+  @Test
+  public void testKeyOnlyOverflow() throws IOException {
+    Env env = new Env(tmp.newFolder().getCanonicalPath());
+    Database db = env.openDatabase();
+    byte[] large = new byte[64 * 1024];
+    for (int i = 0; i < 10; i++) {
+      db.put(Bytes.fromLong(i), large);
+    }
+    try (Transaction tx = env.createReadTransaction();
+         BufferCursor cursor = db.bufferCursor(tx)) {
+      assertThat(cursor.firstKeyBatch(100), is(10));
+      for (int i = 0; i < 10; i++) {
+        assertThat(cursor.batchKey(i).getLong(0, ByteOrder.BIG_ENDIAN), is((long) i));
+      }
+      assertTrue(cursor.firstKey());
+      assertTrue(cursor.nextKey());
+      assertThat(cursor.keyLong(0), is(1L));
+      assertTrue(cursor.next());
+      assertThat(cursor.valLength(), is(large.length));
+    } finally {
+      db.close();
+      env.close();
+    }
+  }
+
   @Test
   public void testBufferCursor() {
     Transaction tx = env.createReadTransaction();
@@ -7,6 +7,8 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Comparator;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -172,4 +174,120 @@ public class ComparatorTest {
       }
     }
   }
+
+  @Test
+  public void testNativeSignedLong() {
+    long[] keys = {Long.MIN_VALUE, -1000, -1, 0, 1, 1000, Long.MAX_VALUE};
+    Transaction tx = env.createWriteTransaction();
+    db.setNativeComparator(tx, NativeComparator.SIGNED_LONG_BE);
+    for (int i = keys.length - 1; i >= 0; i--) {
+      db.put(tx, Bytes.fromLong(keys[i]), data);
+    }
+    tx.commit();
+    int i = 0;
+    try (EntryIterator it = db.iterate(env.createReadTransaction())) {
+      while (it.hasNext()) {
+        assertThat(Bytes.getLong(it.next().getKey()), is(keys[i++]));
+      }
+    }
+    assertThat(i, is(keys.length));
+  }
+
+  @Test
+  public void testNativeDouble() {
+    double[] keys = {Double.NEGATIVE_INFINITY, -2.5, -0.0, 0.0, 1e-9, 3.75, Double.POSITIVE_INFINITY};
+    Transaction tx = env.createWriteTransaction();
+    db.setNativeComparator(tx, NativeComparator.DOUBLE_BE);
+    for (int i = keys.length - 1; i >= 0; i--) {
+      db.put(tx, ByteBuffer.allocate(8).putDouble(keys[i]).array(), data);
+    }
+    tx.commit();
+    int i = 0;
+    try (EntryIterator it = db.iterate(env.createReadTransaction())) {
+      while (it.hasNext()) {
+        double key = ByteBuffer.wrap(it.next().getKey()).getDouble();
+        assertThat(Double.compare(key, keys[i++]), is(0));
+      }
+    }
+    assertThat(i, is(keys.length));
+  }
+
+  @Test
+  public void testNativeUnsigned128() {
+    long[][] keys = {{0, 5}, {0, -1}, {1, 0}, {-1, 0}, {-1, -1}};
+    Transaction tx = env.createWriteTransaction();
+    db.setNativeComparator(tx, NativeComparator.UNSIGNED_128);
+    DirectBuffer key = new DirectBuffer(ByteBuffer.allocateDirect(16));
+    DirectBuffer value = new DirectBuffer(ByteBuffer.allocateDirect(3));
+    for (int i = keys.length - 1; i >= 0; i--) {
+      key.putLong(0, keys[i][0]);
+      key.putLong(8, keys[i][1]);
+      db.put(tx, key, value);
+    }
+    tx.commit();
+    int i = 0;
+    try (EntryIterator it = db.iterate(env.createReadTransaction())) {
+      while (it.hasNext()) {
+        DirectBuffer found = new DirectBuffer(it.next().getKey());
+        assertThat(found.getLong(0), is(keys[i][0]));
+        assertThat(found.getLong(8), is(keys[i][1]));
+        i++;
+      }
+    }
+    assertThat(i, is(keys.length));
+  }
+
+  @Test
+  public void testNativeReverse() {
+    Transaction tx = env.createWriteTransaction();
+    db.setNativeComparator(tx, NativeComparator.REVERSE);
+    for (String key : new String[] {"a", "ab", "b", "c"}) {
+      db.put(tx, Constants.bytes(key), data);
+    }
+    tx.commit();
+    StringBuilder order = new StringBuilder();
+    try (EntryIterator it = db.iterate(env.createReadTransaction())) {
+      while (it.hasNext()) {
+        order.append(Constants.string(it.next().getKey())).append(' ');
+      }
+    }
+    assertThat(order.toString(), is("c b ab a "));
+  }
+
+  @Test
+  public void testSetKeyComparatorDesc() {
+    if (Util.isAndroid()) {
+      return;
+    }
+    final DirectBuffer key1 = new DirectBuffer();
+    final DirectBuffer key2 = new DirectBuffer();
+    Transaction writeTransaction = env.createWriteTransaction();
+    db.setKeyComparator(writeTransaction, new KeyComparator() {
+      @Override
+      public int compare(long addressA, int lengthA, long addressB, int lengthB) {
+        key1.wrap(addressA, lengthA);
+        key2.wrap(addressB, lengthB);
+        return Long.compare(key2.getLong(0, ByteOrder.BIG_ENDIAN), key1.getLong(0, ByteOrder.BIG_ENDIAN));
+      }
+    });
+    writeTransaction.commit();
+    writeTransaction = env.createWriteTransaction();
+
+    for (int i = 0; i < 1000; i++) {
+      db.put(writeTransaction, Bytes.fromLong(i), Bytes.fromLong(i));
+    }
+    writeTransaction.commit();
+    try (EntryIterator it = db.iterate(env.createReadTransaction()) ){
+      long prev = -1;
+      while(it.hasNext()) {
+        if (prev == -1) {
+          prev = Bytes.getLong(it.next().getKey());
+        } else {
+          long now = Bytes.getLong(it.next().getKey());
+          assertThat((prev-1), is(now));
+          prev = now;
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,252 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.*;
+
+public class CompressedDatabaseTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+  Database dictionaries;
+  Random random = new Random(11);
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env();
+    env.setMapSize(64 * 1024 * 1024);
+    env.setMaxDbs(2);
+    env.open(path);
+    db = env.openDatabase("values");
+    dictionaries = env.openDatabase("dictionaries");
+  }
+
+  @After
+  public void after() {
+    db.close();
+    dictionaries.close();
+    env.close();
+  }
+
+  @Test
+  public void testCompressor() {
+    LzCompressor compressor = new LzCompressor();
+    byte[][] inputs = {new byte[0], new byte[]{1}, new byte[100_000], json(5000), noise(3000), json(20)};
+    for (byte[] input : inputs) {
+      DirectBuffer src = new DirectBuffer(input);
+      DirectBuffer compressed = new DirectBuffer(ByteBuffer.allocateDirect(
+        LzCompressor.maxCompressedLength(input.length)));
+      int length = compressor.compress(src, 0, input.length, compressed, 0);
+      DirectBuffer dst = new DirectBuffer(ByteBuffer.allocateDirect(input.length));
+      LzCompressor.decompress(compressed, 0, length, dst, 0, input.length);
+      byte[] output = new byte[input.length];
+      dst.getBytes(0, output);
+      assertArrayEquals(input, output);
+    }
+    DirectBuffer bad = new DirectBuffer(new byte[]{0x0f, 1, 0});
+    try {
+      LzCompressor.decompress(bad, 0, 3, new DirectBuffer(new byte[10]), 0, 10);
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCompressorDictionary() {
+    LzCompressor compressor = new LzCompressor();
+    byte[] dictionaryBytes = json(100);
+    DirectBuffer dictionary = new DirectBuffer(ByteBuffer.allocateDirect(dictionaryBytes.length));
+    dictionary.putBytes(0, dictionaryBytes);
+    int[] table = LzCompressor.hashTable(dictionary, dictionaryBytes.length);
+    int[] copy = table.clone();
+    byte[][] inputs = {new byte[0], json(1), json(1), json(300), noise(500), json(3)};
+    for (byte[] input : inputs) {
+      DirectBuffer src = new DirectBuffer(input);
+      DirectBuffer compressed = new DirectBuffer(ByteBuffer.allocateDirect(
+        LzCompressor.maxCompressedLength(input.length)));
+      int length = compressor.compress(src, 0, input.length, dictionary, dictionaryBytes.length, table,
+        compressed, 0);
+      DirectBuffer dst = new DirectBuffer(ByteBuffer.allocateDirect(input.length));
+      LzCompressor.decompress(compressed, 0, length, dst, 0, input.length, dictionary, dictionaryBytes.length);
+      byte[] output = new byte[input.length];
+      dst.getBytes(0, output);
+      assertArrayEquals(input, output);
+    }
+    assertArrayEquals(copy, table);
+  }
+
+  @Test
+  public void testCompression() {
+    CompressedDatabase compressed = new CompressedDatabase(db);
+    byte[] small = json(1);
+    byte[] large = json(200);
+    byte[] random = noise(1000);
+    try (Transaction tx = env.createWriteTransaction()) {
+      compressed.put(tx, "small".getBytes(), small);
+      compressed.put(tx, "large".getBytes(), large);
+      compressed.put(tx, "random".getBytes(), random);
+      compressed.put(tx, "empty".getBytes(), new byte[0]);
+      tx.commit();
+    }
+    assertThat(db.get("small".getBytes()).length, is(small.length + 1));
+    assertThat(db.get("random".getBytes()).length, is(random.length + 1));
+    assertTrue(db.get("large".getBytes()).length < large.length / 3);
+
+    try (Transaction tx = env.createReadTransaction()) {
+      assertArrayEquals(small, compressed.get(tx, "small".getBytes()));
+      assertArrayEquals(large, compressed.get(tx, "large".getBytes()));
+      assertArrayEquals(random, compressed.get(tx, "random".getBytes()));
+      assertArrayEquals(new byte[0], compressed.get(tx, "empty".getBytes()));
+      assertThat(compressed.get(tx, "missing".getBytes()), nullValue());
+
+      DirectBuffer key = new DirectBuffer(ByteBuffer.allocateDirect(5));
+      key.putBytes(0, "large".getBytes());
+      DirectBuffer value = new DirectBuffer();
+      assertThat(compressed.get(tx, key, value), is(0));
+      byte[] copy = new byte[value.capacity()];
+      value.getBytes(0, copy);
+      assertArrayEquals(large, copy);
+    }
+  }
+
+  @Test
+  public void testDictionary() {
+    List<byte[]> samples = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      samples.add(json(3));
+    }
+    byte[] value = json(3);
+    CompressedDatabase plain = new CompressedDatabase(db);
+    CompressedDatabase compressed = new CompressedDatabase(db, dictionaries);
+    int id;
+    try (Transaction tx = env.createWriteTransaction()) {
+      plain.put(tx, "plain".getBytes(), value);
+      id = compressed.trainDictionary(tx, samples, 4096);
+      compressed.put(tx, "dictionary".getBytes(), value);
+      tx.commit();
+    }
+    assertTrue(db.get("dictionary".getBytes()).length < db.get("plain".getBytes()).length * 2 / 3);
+
+    // a new instance finds the active dictionary
+    CompressedDatabase reopened = new CompressedDatabase(db, dictionaries);
+    try (Transaction tx = env.createWriteTransaction()) {
+      assertArrayEquals(value, reopened.get(tx, "dictionary".getBytes()));
+      assertArrayEquals(value, reopened.get(tx, "plain".getBytes()));
+      reopened.put(tx, "reopened".getBytes(), value);
+      assertTrue(reopened.delete(tx, "plain".getBytes()));
+      tx.commit();
+    }
+    assertArrayEquals(db.get("dictionary".getBytes()), db.get("reopened".getBytes()));
+    assertThat(dictionaries.get(ByteBuffer.allocate(4).putInt(id).array()).length <= 4096, is(true));
+  }
+
+  @Test
+  public void testDictionaryAborted() {
+    List<byte[]> samples = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      samples.add(json(3));
+    }
+    byte[] value = json(3);
+    CompressedDatabase compressed = new CompressedDatabase(db, dictionaries);
+    try (Transaction tx = env.createWriteTransaction()) {
+      assertThat(compressed.trainDictionary(tx, samples, 4096), is(1));
+      tx.abort();
+    }
+    try (Transaction tx = env.createWriteTransaction()) {
+      compressed.put(tx, "a".getBytes(), value);
+      tx.commit();
+    }
+    assertThat(db.get("a".getBytes())[0], is((byte) 1));
+    try (Transaction tx = env.createReadTransaction()) {
+      assertArrayEquals(value, compressed.get(tx, "a".getBytes()));
+    }
+
+    // ids are reused after an abort and the cached dictionary is replaced
+    byte[] other = json(3);
+    samples.clear();
+    for (int i = 0; i < 200; i++) {
+      samples.add(other);
+    }
+    try (Transaction tx = env.createWriteTransaction()) {
+      assertThat(compressed.trainDictionary(tx, samples, 4096), is(1));
+      assertThat(compressed.setDictionary(tx, "second".getBytes()), is(2));
+      assertThat(compressed.trainDictionary(tx, samples, 4096), is(3));
+      compressed.put(tx, "b".getBytes(), other);
+      tx.commit();
+    }
+    CompressedDatabase reopened = new CompressedDatabase(db, dictionaries);
+    try (Transaction tx = env.createReadTransaction()) {
+      assertArrayEquals(other, reopened.get(tx, "b".getBytes()));
+      assertArrayEquals(other, compressed.get(tx, "b".getBytes()));
+      assertArrayEquals(value, reopened.get(tx, "a".getBytes()));
+    }
+  }
+
+  @Test
+  public void testDictionaryReusedByAnotherInstance() {
+    byte[] value = json(3);
+    List<byte[]> samples = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      samples.add(json(3));
+    }
+    CompressedDatabase first = new CompressedDatabase(db, dictionaries);
+    CompressedDatabase second = new CompressedDatabase(db, dictionaries);
+    try (Transaction tx = env.createWriteTransaction()) {
+      assertThat(first.setDictionary(tx, noise(4096)), is(1));
+      tx.abort();
+    }
+    try (Transaction tx = env.createWriteTransaction()) {
+      assertThat(second.trainDictionary(tx, samples, 4096), is(1));
+      second.put(tx, "a".getBytes(), value);
+      tx.commit();
+    }
+    assertThat(db.get("a".getBytes())[0], is((byte) 2));
+    // the first instance still caches its aborted dictionary under id 1
+    try (Transaction tx = env.createWriteTransaction()) {
+      assertArrayEquals(value, first.get(tx, "a".getBytes()));
+      first.put(tx, "b".getBytes(), value);
+      tx.commit();
+    }
+    try (Transaction tx = env.createReadTransaction()) {
+      assertArrayEquals(value, second.get(tx, "b".getBytes()));
+    }
+  }
+
+  private byte[] json(int records) {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < records; i++) {
+      json.append("{\"id\":").append(random.nextInt(100000))
+        .append(",\"name\":\"user").append(random.nextInt(1000))
+        .append("\",\"email\":\"user").append(random.nextInt(1000)).append("@example.com\"")
+        .append(",\"active\":").append(random.nextBoolean())
+        .append(",\"tags\":[\"alpha\",\"beta\",\"gamma\"]},");
+    }
+    return json.append("]").toString().getBytes();
+  }
+
+  private byte[] noise(int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -7,9 +7,18 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import static junit.framework.Assert.assertNull;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class CursorTest {
   static {
@@ -46,6 +55,163 @@ public class CursorTest {
     assertArrayEquals(db.get(Bytes.fromLong(1)), Bytes.fromLong(1));
   }
 
+  @Test
+  public void testSeek() {
+    byte[] existing = db.put(Bytes.fromLong(1), Bytes.fromLong(10), Constants.NOOVERWRITE);
+    assertNull(existing);
+    existing = db.put(Bytes.fromLong(1), Bytes.fromLong(11), Constants.NOOVERWRITE);
+    assertArrayEquals(Bytes.fromLong(10), existing);
+    db.put(Bytes.fromLong(3), Bytes.fromLong(30));
+    try (Transaction tx = env.createReadTransaction(); Cursor cursor = db.openCursor(tx)) {
+      Entry entry = cursor.seek(SeekOp.KEY, Bytes.fromLong(1));
+      assertArrayEquals(Bytes.fromLong(1), entry.getKey());
+      assertArrayEquals(Bytes.fromLong(10), entry.getValue());
+      assertNull(cursor.seek(SeekOp.KEY, Bytes.fromLong(2)));
+      entry = cursor.seek(SeekOp.RANGE, Bytes.fromLong(2));
+      assertArrayEquals(Bytes.fromLong(3), entry.getKey());
+      assertArrayEquals(Bytes.fromLong(30), entry.getValue());
+      assertNull(cursor.seek(SeekOp.RANGE, Bytes.fromLong(4)));
+    }
+  }
+
+  @Test
+  public void testPutMultiple() {
+    Database dupFixed = env.openDatabase("dupfixed", Constants.DUPSORT | Constants.DUPFIXED | Constants.CREATE);
+    DirectBuffer key = new DirectBuffer(ByteBuffer.allocateDirect(1));
+    DirectBuffer values = new DirectBuffer(ByteBuffer.allocateDirect(1000 * 8));
+    for (int i = 0; i < 1000; i++) {
+      values.putLong(i * 8, i, ByteOrder.BIG_ENDIAN);
+    }
+    try (Transaction tx = env.createWriteTransaction()) {
+      try (Cursor cursor = dupFixed.openCursor(tx)) {
+        assertThat(cursor.putMultiple(key, values, 8, 1000), is(1000));
+        assertThat(cursor.count(), is(1000L));
+      }
+      tx.commit();
+    }
+    try (Transaction tx = env.createReadTransaction()) {
+      try (Cursor cursor = dupFixed.openCursor(tx)) {
+        DirectBuffer k = new DirectBuffer();
+        DirectBuffer v = new DirectBuffer();
+        int count = 0;
+        for (int rc = cursor.position(k, v, GetOp.FIRST); rc == 0; rc = cursor.position(k, v, GetOp.NEXT)) {
+          assertThat(v.getLong(0, ByteOrder.BIG_ENDIAN), is((long) count++));
+        }
+        assertThat(count, is(1000));
+      }
+    }
+    dupFixed.close();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPutMultipleTooFewValues() {
+    try (Transaction tx = env.createWriteTransaction()) {
+      try (Cursor cursor = db.openCursor(tx)) {
+        cursor.putMultiple(new DirectBuffer(ByteBuffer.allocateDirect(1)),
+          new DirectBuffer(ByteBuffer.allocateDirect(8)), 8, 2);
+      }
+    }
+  }
+
+  @Test
+  public void testCachedCursor() {
+    db.put(Bytes.fromLong(1), Bytes.fromLong(1));
+    Cursor first;
+    try (Transaction tx = env.createReadTransaction()) {
+      first = db.openCachedCursor(tx);
+      assertArrayEquals(Bytes.fromLong(1), first.get(GetOp.FIRST).getKey());
+      first.close();
+      assertTrue(first.isAllocated());
+    }
+
+    db.put(Bytes.fromLong(2), Bytes.fromLong(2));
+    try (Transaction tx = env.createReadTransaction()) {
+      try (Cursor cursor = db.openCachedCursor(tx)) {
+        assertThat(cursor, sameInstance(first));
+        assertArrayEquals(Bytes.fromLong(2), cursor.get(GetOp.LAST).getKey());
+        try (Cursor other = db.openCachedCursor(tx)) {
+          assertThat(other, not(sameInstance(first)));
+        }
+      }
+    }
+
+    try (Transaction tx = env.createWriteTransaction()) {
+      Cursor cursor = db.openCachedCursor(tx);
+      assertThat(cursor, not(sameInstance(first)));
+      cursor.close();
+      assertFalse(cursor.isAllocated());
+    }
+
+    db.setCursorCacheSize(0);
+    try (Transaction tx = env.createReadTransaction()) {
+      Cursor cursor = db.openCachedCursor(tx);
+      cursor.close();
+      assertFalse(cursor.isAllocated());
+    }
+  }
+
+  @Test
+  public void testPutErrors() {
+    db.put(Bytes.fromLong(1), Bytes.fromLong(1));
+    try (Transaction tx = env.createWriteTransaction();
+         Cursor cursor = db.openCursor(tx)) {
+      // KEYEXIST is still returned rather than thrown
+      cursor.put(Bytes.fromLong(1), Bytes.fromLong(2), Constants.NOOVERWRITE);
+    }
+    assertArrayEquals(Bytes.fromLong(1), db.get(Bytes.fromLong(1)));
+    try (Transaction tx = env.createReadTransaction();
+         Cursor cursor = db.openCursor(tx)) {
+      cursor.put(Bytes.fromLong(2), Bytes.fromLong(2), 0);
+      fail();
+    } catch (LMDBException e) {
+      assertThat(e.getErrorCode(), is(LMDBException.EACCES));
+    }
+  }
+
+  @Test
+  public void testCachedCursorClosedAgain() {
+    try (Transaction tx = env.createReadTransaction()) {
+      Cursor first = db.openCachedCursor(tx);
+      first.close();
+      first.close();
+      Cursor taken = db.openCachedCursor(tx);
+      assertThat(taken, sameInstance(first));
+      try (Cursor other = db.openCachedCursor(tx)) {
+        assertThat(other, not(sameInstance(first)));
+      }
+      taken.close();
+    }
+  }
+
+  @Test
+  public void testCachedCursorClosedByAnotherThread() throws InterruptedException {
+    try (Transaction tx = env.createReadTransaction()) {
+      final Cursor cursor = db.openCachedCursor(tx);
+      final BufferCursor bufferCursor = db.cachedBufferCursor(tx);
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          cursor.close();
+          bufferCursor.close();
+          bufferCursor.close();
+        }
+      });
+      thread.start();
+      thread.join();
+      // released to the cache rather than leaked
+      Cursor taken = db.openCachedCursor(tx);
+      assertThat(taken, sameInstance(cursor));
+      assertTrue(taken.isAllocated());
+      BufferCursor takenBuffer = db.cachedBufferCursor(tx);
+      assertThat(takenBuffer, sameInstance(bufferCursor));
+      try (BufferCursor other = db.cachedBufferCursor(tx)) {
+        assertThat(other, not(sameInstance(bufferCursor)));
+      }
+      taken.close();
+      takenBuffer.close();
+    }
+  }
+
   @Test
   public void testCursorRenew() {
     Transaction read = env.createReadTransaction();
@@ -7,6 +7,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
@@ -197,4 +198,49 @@ public class EntryIteratorTest {
     }
     assertTrue(keys.isEmpty());
   }
+
+  @Test
+  public void testIterateBuffers() {
+    LinkedList<Entry> copies = new LinkedList<>();
+    try (Transaction tx = env.createReadTransaction(); BufferEntryIterator it = db.iterateBuffers(tx)) {
+      BufferEntry first = null;
+      for (BufferEntry next : it.iterable()) {
+        if (first == null) {
+          first = next;
+        }
+        assertSame(first, next);
+        assertThat(next.getKey().capacity(), is(1));
+        assertThat(next.getValue().getByte(0), is(next.getKey().getByte(0)));
+        copies.add(next.copy());
+      }
+      assertFalse(it.hasNext());
+    }
+    for (Entry copy : copies) {
+      byte[] key = keys.pollFirst();
+      assertArrayEquals(key, copy.getKey());
+      assertArrayEquals(key, copy.getValue());
+    }
+    assertTrue(keys.isEmpty());
+  }
+
+  @Test
+  public void testSeekBuffersBackward() {
+    keys.pollLast();
+    keys.pollLast();
+    keys.pollLast();
+    keys.pollLast();
+    DirectBuffer key = new DirectBuffer(ByteBuffer.allocateDirect(1));
+    key.putByte(0, (byte) 5);
+    try (Transaction tx = env.createReadTransaction(); BufferEntryIterator it = db.seekBuffersBackward(tx, key)) {
+      while (it.hasNext()) {
+        assertArrayEquals(keys.pollLast(), it.next().getKeyBytes());
+      }
+      try {
+        it.next();
+        fail("should throw NoSuchElementException");
+      } catch (NoSuchElementException e) {
+      }
+    }
+    assertTrue(keys.isEmpty());
+  }
 }
@@ -0,0 +1,154 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class KeyRangeTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env(path);
+    db = env.openDatabase();
+    for (int i = 0; i < 10; i++) {
+      db.put(new byte[]{(byte) i}, new byte[]{(byte) i});
+      db.put(new byte[]{5, (byte) i}, new byte[]{(byte) i});
+    }
+    db.put(new byte[]{5, (byte) 0xff, 1}, new byte[]{0});
+  }
+
+  @After
+  public void after() {
+    db.close();
+    env.close();
+  }
+
+  @Test
+  public void testForward() {
+    assertThat(keys(KeyRange.all()).size(), is(21));
+    assertThat(keys(KeyRange.closedOpen(new byte[]{2}, new byte[]{4})), is(list("2", "3")));
+    assertThat(keys(KeyRange.closed(new byte[]{2}, new byte[]{4})), is(list("2", "3", "4")));
+    assertThat(keys(KeyRange.range(new byte[]{2}, false, new byte[]{4}, false)), is(list("3")));
+    assertThat(keys(KeyRange.range(new byte[]{8}, false, null, false)), is(list("9")));
+    assertThat(keys(KeyRange.range(null, true, new byte[]{1}, true)), is(list("0", "1")));
+    assertTrue(keys(KeyRange.closed(new byte[]{4, 1}, new byte[]{4, 2})).isEmpty());
+  }
+
+  @Test
+  public void testBackward() {
+    assertThat(keys(KeyRange.allBackward()).get(0), is("9"));
+    assertThat(keys(KeyRange.rangeBackward(new byte[]{4}, true, new byte[]{2}, true)), is(list("4", "3", "2")));
+    assertThat(keys(KeyRange.rangeBackward(new byte[]{4}, false, new byte[]{2}, false)), is(list("3")));
+    assertThat(keys(KeyRange.rangeBackward(new byte[]{4, 5}, true, new byte[]{3}, true)), is(list("4", "3")));
+    assertThat(keys(KeyRange.rangeBackward(new byte[]{20}, true, new byte[]{9}, true)), is(list("9")));
+    assertThat(keys(KeyRange.rangeBackward(new byte[]{1}, true, null, true)), is(list("1", "0")));
+  }
+
+  @Test
+  public void testPrefix() {
+    List<String> forward = keys(KeyRange.prefix(new byte[]{5}));
+    assertThat(forward.size(), is(12));
+    assertThat(forward.get(0), is("5"));
+    assertThat(forward.get(11), is("5,-1,1"));
+    List<String> backward = keys(KeyRange.prefixBackward(new byte[]{5}));
+    assertThat(backward.size(), is(12));
+    assertThat(backward.get(0), is("5,-1,1"));
+    assertThat(backward.get(11), is("5"));
+    assertThat(keys(KeyRange.prefixBackward(new byte[]{5, (byte) 0xff})), is(list("5,-1,1")));
+    assertTrue(keys(KeyRange.prefix(new byte[]{11})).isEmpty());
+  }
+
+  @Test
+  public void testBufferCursor() {
+    KeyRange range = KeyRange.closedOpen(new byte[]{5, 8}, new byte[]{6});
+    List<String> keys = new ArrayList<>();
+    try (Transaction tx = env.createReadTransaction(); BufferCursor cursor = db.bufferCursor(tx)) {
+      for (boolean found = cursor.first(range); found; found = cursor.next(range)) {
+        keys.add(Arrays.toString(cursor.keyBytes()));
+      }
+    }
+    assertThat(keys, is(Arrays.asList("[5, 8]", "[5, 9]", "[5, -1, 1]")));
+  }
+
+  @Test
+  public void testBufferIterator() {
+    int count = 0;
+    try (Transaction tx = env.createReadTransaction();
+         BufferEntryIterator it = db.iterateBuffers(tx, KeyRange.rangeBackward(new byte[]{3}, true, null, true))) {
+      for (BufferEntry entry : it.iterable()) {
+        assertThat(entry.getKey().getByte(0), is((byte) (3 - count++)));
+      }
+    }
+    assertThat(count, is(4));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullTransaction() {
+    db.iterate(null, KeyRange.all());
+  }
+
+  @Test
+  public void testDuplicates() throws IOException {
+    Env dupEnv = new Env(tmp.newFolder().getCanonicalPath());
+    Database dups = dupEnv.openDatabase("dups", Constants.CREATE | Constants.DUPSORT);
+    for (int i = 1; i <= 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        dups.put(new byte[]{(byte) i}, new byte[]{(byte) j});
+      }
+    }
+    List<String> entries = new ArrayList<>();
+    try (Transaction tx = dupEnv.createReadTransaction();
+         EntryIterator it = dups.iterate(tx, KeyRange.rangeBackward(new byte[]{2}, true, new byte[]{1}, false))) {
+      for (Entry entry : it.iterable()) {
+        entries.add(entry.getKey()[0] + ":" + entry.getValue()[0]);
+      }
+    }
+    assertThat(entries, is(Arrays.asList("2:2", "2:1", "2:0")));
+    entries.clear();
+    try (Transaction tx = dupEnv.createReadTransaction();
+         EntryIterator it = dups.iterate(tx, KeyRange.range(new byte[]{1}, false, null, true))) {
+      for (Entry entry : it.iterable()) {
+        entries.add(entry.getKey()[0] + ":" + entry.getValue()[0]);
+      }
+    }
+    assertThat(entries.size(), is(6));
+    assertThat(entries.get(0), is("2:0"));
+    dups.close();
+    dupEnv.close();
+  }
+
+  private List<String> keys(KeyRange range) {
+    List<String> keys = new ArrayList<>();
+    try (Transaction tx = env.createReadTransaction(); EntryIterator it = db.iterate(tx, range)) {
+      for (Entry entry : it.iterable()) {
+        String key = Arrays.toString(entry.getKey());
+        keys.add(key.substring(1, key.length() - 1).replace(" ", ""));
+      }
+    }
+    return keys;
+  }
+
+  private static List<String> list(String... keys) {
+    return Arrays.asList(keys);
+  }
+}
@@ -0,0 +1,187 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class LongLongStoreTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+  LongLongStore store;
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env(path);
+    db = env.openDatabase("longs", Constants.CREATE | Constants.INTEGERKEY);
+    store = new LongLongStore(db);
+  }
+
+  @After
+  public void after() {
+    db.close();
+    env.close();
+  }
+
+  @Test
+  public void testGetPutDelete() {
+    try (Transaction tx = env.createWriteTransaction()) {
+      store.put(tx, 1, 10);
+      store.put(tx, -1, -10);
+      store.put(tx, 1, 11);
+      tx.commit();
+    }
+    try (Transaction tx = env.createWriteTransaction()) {
+      assertThat(store.get(tx, 1, 0), is(11L));
+      assertThat(store.get(tx, -1, 0), is(-10L));
+      assertThat(store.get(tx, 2, -99), is(-99L));
+      assertTrue(store.delete(tx, 1));
+      assertFalse(store.delete(tx, 1));
+      assertThat(store.get(tx, 1, -99), is(-99L));
+      tx.commit();
+    }
+  }
+
+  @Test
+  public void testBatch() {
+    long[] keys = new long[1000];
+    long[] values = new long[1000];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = i * 2;
+      values[i] = i * 3;
+    }
+    try (Transaction tx = env.createWriteTransaction()) {
+      store.putBatch(tx, keys, values, keys.length);
+      tx.commit();
+    }
+    long[] lookup = {0, 1, 2, 1998, 2000};
+    long[] found = new long[lookup.length];
+    try (Transaction tx = env.createReadTransaction()) {
+      assertThat(store.getBatch(tx, lookup, found, lookup.length, -1), is(3));
+      assertArrayEquals(new long[]{0, -1, 3, 2997, -1}, found);
+      assertThat(store.getBatch(tx, lookup, found, 1, -1), is(1));
+    }
+  }
+
+  @Test
+  public void testForEach() {
+    try (Transaction tx = env.createWriteTransaction()) {
+      // more entries than one native call fetches
+      for (long i = 0; i < 1000; i++) {
+        store.append(tx, i, i * i);
+      }
+      store.put(tx, -1, 1);
+      tx.commit();
+    }
+    final List<Long> keys = new ArrayList<>();
+    try (Transaction tx = env.createReadTransaction()) {
+      store.forEach(tx, 10, 600, new LongLongStore.EntryConsumer() {
+        @Override
+        public boolean accept(long key, long value) {
+          assertThat(value, is(key * key));
+          keys.add(key);
+          return true;
+        }
+      });
+      assertThat(keys.size(), is(591));
+      assertThat(keys.get(0), is(10L));
+      assertThat(keys.get(590), is(600L));
+
+      keys.clear();
+      store.forEach(tx, new LongLongStore.EntryConsumer() {
+        @Override
+        public boolean accept(long key, long value) {
+          keys.add(key);
+          return keys.size() < 300;
+        }
+      });
+      assertThat(keys.size(), is(300));
+
+      keys.clear();
+      store.forEach(tx, 900, -1, new LongLongStore.EntryConsumer() {
+        @Override
+        public boolean accept(long key, long value) {
+          keys.add(key);
+          return true;
+        }
+      });
+      // unsigned order puts negative keys last
+      assertThat(keys.size(), is(101));
+      assertThat(keys.get(100), is(-1L));
+    }
+  }
+
+  @Test
+  public void testForEachConsumerUsesTransaction() {
+    try (Transaction tx = env.createWriteTransaction()) {
+      for (long i = 0; i < 1000; i++) {
+        store.append(tx, i, i);
+      }
+      tx.commit();
+    }
+    // enough keys to grow the scratch space of the transaction
+    final DirectBuffer[] keys = new DirectBuffer[500];
+    final DirectBuffer[] values = new DirectBuffer[500];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = new DirectBuffer(ByteBuffer.allocateDirect(8));
+      keys[i].putLong(0, i, ByteOrder.nativeOrder());
+      values[i] = new DirectBuffer();
+    }
+    final long[] sums = new long[2];
+    try (final Transaction tx = env.createReadTransaction()) {
+      store.forEach(tx, new LongLongStore.EntryConsumer() {
+        @Override
+        public boolean accept(long key, long value) {
+          assertThat(value, is(key));
+          sums[0] += value;
+          if (key % 300 == 0) {
+            assertThat(db.getMany(tx, keys, values), is(500));
+            store.forEach(tx, 0, 9, new LongLongStore.EntryConsumer() {
+              @Override
+              public boolean accept(long key, long value) {
+                sums[1] += value;
+                return true;
+              }
+            });
+          }
+          return true;
+        }
+      });
+    }
+    assertThat(sums[0], is(999L * 1000 / 2));
+    assertThat(sums[1], is(4 * 45L));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRequiresIntegerKey() throws IOException {
+    Env env = new Env();
+    env.setMaxDbs(2);
+    env.open(tmp.newFolder().getCanonicalPath());
+    try {
+      Database bytes = env.openDatabase("bytes", Constants.CREATE);
+      try (Transaction tx = env.createWriteTransaction()) {
+        new LongLongStore(bytes).put(tx, 1, 1);
+      }
+    } finally {
+      env.close();
+    }
+  }
+}
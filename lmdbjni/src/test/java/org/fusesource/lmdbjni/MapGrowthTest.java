@@ -0,0 +1,163 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.fusesource.lmdbjni.Bytes.fromLong;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class MapGrowthTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  private static final long MB = 1024 * 1024;
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+  final List<Long> grown = new ArrayList<>();
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env();
+    env.setMapSize(MB);
+    env.open(path);
+    db = env.openDatabase();
+    env.setMapGrowthPolicy(MapGrowthPolicy.fixedStep(MB, 8 * MB).setListener(new MapGrowthPolicy.Listener() {
+      @Override
+      public void mapGrown(long oldSize, long newSize) {
+        grown.add(newSize);
+      }
+    }));
+  }
+
+  @After
+  public void after() {
+    db.close();
+    env.close();
+  }
+
+  @Test
+  public void testWriteIsReplayed() throws Exception {
+    final byte[] value = new byte[1024];
+    int count = env.write(new WriteCoordinator.Write<Integer>() {
+      @Override
+      public Integer write(Transaction tx) {
+        for (int i = 0; i < 2000; i++) {
+          db.put(tx, fromLong(i), value);
+        }
+        return 2000;
+      }
+    });
+    assertThat(count, is(2000));
+    assertThat(db.stat().ms_entries, is(2000L));
+    assertFalse(grown.isEmpty());
+    assertThat(env.info().getMapSize(), is(grown.get(grown.size() - 1)));
+  }
+
+  @Test
+  public void testConveniencePut() {
+    byte[] value = new byte[64 * 1024];
+    for (int i = 0; i < 40; i++) {
+      db.put(fromLong(i), value);
+    }
+    assertThat(db.stat().ms_entries, is(40L));
+    assertThat(grown.get(0), is(2 * MB));
+  }
+
+  @Test
+  public void testCeiling() throws Exception {
+    final byte[] value = new byte[1024];
+    try {
+      env.write(new WriteCoordinator.Write<Void>() {
+        @Override
+        public Void write(Transaction tx) {
+          for (int i = 0; i < 20000; i++) {
+            db.put(tx, fromLong(i), value);
+          }
+          return null;
+        }
+      });
+      fail();
+    } catch (LMDBException e) {
+      assertThat(e.getErrorCode(), is(LMDBException.MAP_FULL));
+    }
+    assertThat(env.info().getMapSize(), is(8 * MB));
+    assertThat(db.stat().ms_entries, is(0L));
+  }
+
+  @Test
+  public void testWaitsForReaders() throws Exception {
+    db.put(fromLong(-1), new byte[]{42});
+    env.getMapGrowthPolicy().setReaderWait(100, TimeUnit.MILLISECONDS);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (Transaction tx = env.createReadTransaction()) {
+      DirectBuffer key = new DirectBuffer(ByteBuffer.allocateDirect(8));
+      key.putBytes(0, fromLong(-1));
+      DirectBuffer view = new DirectBuffer();
+      db.get(tx, key, view);
+
+      // the reader does not end in time, the map is not remapped under it
+      try {
+        executor.submit(fill(0)).get();
+        fail();
+      } catch (ExecutionException e) {
+        assertThat(((LMDBException) e.getCause()).getErrorCode(), is(LMDBException.MAP_FULL));
+      }
+      assertTrue(grown.isEmpty());
+      assertThat(view.getByte(0), is((byte) 42));
+
+      env.getMapGrowthPolicy().setReaderWait(10, TimeUnit.SECONDS);
+      Future<Void> fill = executor.submit(fill(100));
+      Thread.sleep(100);
+      assertFalse(fill.isDone());
+      assertThat(view.getByte(0), is((byte) 42));
+      tx.abort();
+      fill.get();
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(grown.get(0), is(2 * MB));
+    assertArrayEquals(new byte[]{42}, db.get(fromLong(-1)));
+  }
+
+  private Callable<Void> fill(final int from) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() {
+        byte[] value = new byte[64 * 1024];
+        for (int i = from; i < from + 40; i++) {
+          db.put(fromLong(i), value);
+        }
+        return null;
+      }
+    };
+  }
+
+  @Test
+  public void testPolicy() {
+    MapGrowthPolicy geometric = MapGrowthPolicy.geometric(2, 10 * MB);
+    assertThat(geometric.nextSize(MB), is(2 * MB));
+    assertThat(geometric.nextSize(6 * MB), is(10 * MB));
+    assertThat(geometric.nextSize(10 * MB), is(-1L));
+  }
+}
@@ -0,0 +1,137 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.fusesource.lmdbjni.Bytes.fromLong;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class ParallelScanTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env();
+    env.open(path, Constants.NOTLS);
+    db = env.openDatabase();
+    try (Transaction tx = env.createWriteTransaction()) {
+      for (int i = 0; i < 10000; i++) {
+        db.put(tx, fromLong(i), fromLong(i), Constants.APPEND);
+      }
+      tx.commit();
+    }
+  }
+
+  @After
+  public void after() {
+    db.close();
+    env.close();
+  }
+
+  @Test
+  public void testSplit() {
+    try (Transaction tx = env.createReadTransaction()) {
+      List<KeyRange> ranges = ParallelScan.split(tx, db, 8);
+      assertThat(ranges.size(), is(8));
+      assertNull(ranges.get(0).getStart());
+      assertNull(ranges.get(7).getStop());
+      for (int i = 1; i < ranges.size(); i++) {
+        assertArrayEquals(ranges.get(i - 1).getStop(), ranges.get(i).getStart());
+        long size = Bytes.getLong(ranges.get(i).getStart()) - (i == 1 ? 0 : Bytes.getLong(ranges.get(i - 1).getStart()));
+        assertThat(size, is(1250L));
+      }
+      assertThat(ParallelScan.split(tx, db, 1).size(), is(1));
+    }
+  }
+
+  @Test
+  public void testScan() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    long[] result = new ParallelScan(env, db).setPool(pool).setSplits(16).scan(new ParallelScan.Scanner<long[]>() {
+      @Override
+      public long[] scan(BufferEntryIterator entries) {
+        long[] countAndSum = new long[2];
+        for (BufferEntry entry : entries.iterable()) {
+          countAndSum[0]++;
+          countAndSum[1] += entry.getValue().getLong(0, ByteOrder.BIG_ENDIAN);
+        }
+        return countAndSum;
+      }
+
+      @Override
+      public long[] combine(long[] left, long[] right) {
+        return new long[]{left[0] + right[0], left[1] + right[1]};
+      }
+    });
+    pool.shutdown();
+    assertThat(result[0], is(10000L));
+    assertThat(result[1], is(9999L * 10000 / 2));
+  }
+
+  @Test
+  public void testSplitIntegerKey() throws IOException {
+    try (Env intEnv = new Env(tmp.newFolder().getCanonicalPath());
+         Database ints = intEnv.openDatabase("ints", Constants.CREATE | Constants.INTEGERKEY)) {
+      DirectBuffer key = new DirectBuffer(ByteBuffer.allocateDirect(8));
+      try (Transaction tx = intEnv.createWriteTransaction()) {
+        for (long i = 0; i < 10000; i++) {
+          key.putLong(0, i, ByteOrder.nativeOrder());
+          ints.put(tx, key, key);
+        }
+        tx.commit();
+      }
+      try (Transaction tx = intEnv.createReadTransaction()) {
+        List<KeyRange> ranges = ParallelScan.split(tx, ints, 8);
+        assertThat(ranges.size(), is(8));
+        long expected = 0;
+        for (KeyRange range : ranges) {
+          long count = 0;
+          try (BufferEntryIterator it = ints.iterateBuffers(tx, range)) {
+            for (BufferEntry entry : it.iterable()) {
+              assertThat(entry.getKey().getLong(0, ByteOrder.nativeOrder()), is(expected++));
+              count++;
+            }
+          }
+          assertTrue("range of " + count, Math.abs(count - 1250) <= 1);
+        }
+        assertThat(expected, is(10000L));
+      }
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRequiresNoTls() throws IOException {
+    try (Env tlsEnv = new Env(tmp.newFolder().getCanonicalPath()); Database tlsDb = tlsEnv.openDatabase()) {
+      new ParallelScan(tlsEnv, tlsDb).scan(new ParallelScan.Scanner<Object>() {
+        @Override
+        public Object scan(BufferEntryIterator entries) {
+          return null;
+        }
+
+        @Override
+        public Object combine(Object left, Object right) {
+          return null;
+        }
+      });
+    }
+  }
+}
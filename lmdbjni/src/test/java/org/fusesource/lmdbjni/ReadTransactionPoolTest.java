@@ -0,0 +1,116 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.fusesource.lmdbjni.Bytes.fromLong;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.*;
+
+public class ReadTransactionPoolTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env(path);
+    db = env.openDatabase();
+  }
+
+  @After
+  public void after() {
+    db.close();
+    env.close();
+  }
+
+  @Test
+  public void testReuse() {
+    ReadTransactionPool pool = env.enableReadTransactionPool(1, TimeUnit.MINUTES);
+    Transaction tx = env.borrowReadTransaction();
+    env.releaseReadTransaction(tx);
+    assertThat(pool.idleCount(), is(1));
+    assertTrue(tx.isAllocated());
+
+    db.put(fromLong(1), fromLong(1));
+    Transaction renewed = env.borrowReadTransaction();
+    assertThat(renewed, sameInstance(tx));
+    assertThat(pool.idleCount(), is(0));
+    assertArrayEquals(fromLong(1), db.get(renewed, fromLong(1)));
+    env.releaseReadTransaction(renewed);
+
+    assertArrayEquals(fromLong(1), db.get(fromLong(1)));
+    assertThat(db.stat().ms_entries, is(1L));
+    assertThat(pool.idleCount(), is(1));
+    assertThat(env.borrowReadTransaction(), sameInstance(tx));
+    env.releaseReadTransaction(tx);
+  }
+
+  @Test
+  public void testEvictIdle() throws InterruptedException {
+    ReadTransactionPool pool = env.enableReadTransactionPool(1, TimeUnit.MILLISECONDS);
+    Transaction tx = env.borrowReadTransaction();
+    env.releaseReadTransaction(tx);
+    Thread.sleep(10);
+    pool.evictIdle();
+    assertThat(pool.idleCount(), is(0));
+    assertFalse(tx.isAllocated());
+    Transaction fresh = env.borrowReadTransaction();
+    assertThat(fresh, not(sameInstance(tx)));
+    env.releaseReadTransaction(fresh);
+  }
+
+  @Test
+  public void testClosedNotParked() {
+    ReadTransactionPool pool = env.enableReadTransactionPool(1, TimeUnit.MINUTES);
+    Transaction tx = env.borrowReadTransaction();
+    tx.close();
+    env.releaseReadTransaction(tx);
+    assertThat(pool.idleCount(), is(0));
+    env.disableReadTransactionPool();
+    assertNull(env.getReadTransactionPool());
+    assertNull(db.get(fromLong(1)));
+  }
+
+  @Test
+  public void testNoTlsSharedBetweenThreads() throws Exception {
+    Env notls = new Env();
+    notls.open(tmp.newFolder().getCanonicalPath(), Constants.NOTLS);
+    try {
+      final ReadTransactionPool pool = notls.enableReadTransactionPool(1, TimeUnit.MINUTES);
+      final Transaction tx = pool.borrow();
+      pool.release(tx);
+      final AtomicReference<Transaction> borrowed = new AtomicReference<>();
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          Transaction other = pool.borrow();
+          borrowed.set(other);
+          pool.release(other);
+        }
+      });
+      thread.start();
+      thread.join();
+      assertThat(borrowed.get(), sameInstance(tx));
+      assertThat(pool.idleCount(), is(1));
+    } finally {
+      notls.close();
+    }
+  }
+}
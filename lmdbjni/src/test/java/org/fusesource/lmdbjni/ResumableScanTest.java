@@ -0,0 +1,173 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.fusesource.lmdbjni.Bytes.fromLong;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class ResumableScanTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env(path);
+    db = env.openDatabase();
+    for (int i = 0; i < 100; i++) {
+      db.put(fromLong(i), fromLong(i));
+    }
+  }
+
+  @After
+  public void after() {
+    db.close();
+    env.close();
+  }
+
+  @Test
+  public void testRecycle() {
+    List<Long> keys = new ArrayList<>();
+    try (ResumableScan scan = new ResumableScan(env, db, KeyRange.all()).setRecycleRows(7)) {
+      for (BufferEntry entry : scan.iterable()) {
+        long key = Bytes.getLong(entry.getKeyBytes());
+        keys.add(key);
+        assertArrayEquals(fromLong(key), entry.getValueBytes());
+        if (key == 50) {
+          // visible once the read transaction is renewed
+          db.put(fromLong(1000), fromLong(1000));
+        }
+      }
+      assertThat(scan.getRecycleCount(), is(14L));
+      assertNull(scan.continuationToken());
+    }
+    assertThat(keys.size(), is(101));
+    for (int i = 0; i < 100; i++) {
+      assertThat(keys.get(i), is((long) i));
+    }
+    assertThat(keys.get(100), is(1000L));
+  }
+
+  @Test
+  public void testRecycleTime() throws InterruptedException {
+    try (ResumableScan scan = new ResumableScan(env, db, KeyRange.all()).setRecycleTime(1, TimeUnit.MILLISECONDS)) {
+      assertTrue(scan.hasNext());
+      Thread.sleep(5);
+      assertThat(Bytes.getLong(scan.next().getKeyBytes()), is(0L));
+      assertThat(Bytes.getLong(scan.next().getKeyBytes()), is(1L));
+      assertThat(scan.getRecycleCount(), is(1L));
+    }
+  }
+
+  @Test
+  public void testContinuationToken() {
+    List<Long> keys = new ArrayList<>();
+    byte[] token = null;
+    int pages = 0;
+    do {
+      KeyRange range = KeyRange.rangeBackward(fromLong(89), true, fromLong(10), false);
+      try (ResumableScan scan = token == null ? new ResumableScan(env, db, range) : ResumableScan.resume(env, db, token)) {
+        for (int i = 0; i < 7 && scan.hasNext(); i++) {
+          keys.add(Bytes.getLong(scan.next().getKeyBytes()));
+        }
+        token = scan.continuationToken();
+      }
+      pages++;
+    } while (token != null);
+    assertThat(pages, is(12));
+    assertThat(keys.size(), is(79));
+    for (int i = 0; i < keys.size(); i++) {
+      assertThat(keys.get(i), is(89L - i));
+    }
+  }
+
+  @Test
+  public void testTokenAfterHasNext() {
+    byte[] token;
+    try (ResumableScan scan = new ResumableScan(env, db, KeyRange.prefix(new byte[7]))) {
+      scan.next();
+      assertTrue(scan.hasNext());
+      token = scan.continuationToken();
+    }
+    try (ResumableScan scan = ResumableScan.resume(env, db, token)) {
+      int count = 0;
+      for (BufferEntry entry : scan.iterable()) {
+        assertThat(Bytes.getLong(entry.getKeyBytes()), is(count + 1L));
+        count++;
+      }
+      assertThat(count, is(99));
+    }
+  }
+
+  @Test
+  public void testTokenAfterClose() {
+    ResumableScan scan = new ResumableScan(env, db, KeyRange.all());
+    for (int i = 0; i < 10; i++) {
+      scan.next();
+    }
+    assertTrue(scan.hasNext());
+    scan.close();
+    assertFalse(scan.hasNext());
+    byte[] token = scan.continuationToken();
+    scan.close();
+    assertArrayEquals(token, scan.continuationToken());
+    try (ResumableScan rest = ResumableScan.resume(env, db, token)) {
+      int count = 0;
+      for (BufferEntry entry : rest.iterable()) {
+        assertThat(Bytes.getLong(entry.getKeyBytes()), is(count + 10L));
+        count++;
+      }
+      assertThat(count, is(90));
+      assertNull(rest.continuationToken());
+      rest.close();
+      assertNull(rest.continuationToken());
+    }
+  }
+
+  @Test
+  public void testTokenBeforeFirstUse() {
+    ResumableScan scan = new ResumableScan(env, db, KeyRange.range(fromLong(95), true, null, true));
+    scan.close();
+    try (ResumableScan rest = ResumableScan.resume(env, db, scan.continuationToken())) {
+      int count = 0;
+      while (rest.hasNext()) {
+        rest.next();
+        count++;
+      }
+      assertThat(count, is(5));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidToken() {
+    ResumableScan.resume(env, db, new byte[]{9, 0, 0, 0, 0, 0});
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testDupSort() throws IOException {
+    Env env = new Env(tmp.newFolder().getCanonicalPath());
+    try {
+      Database dups = env.openDatabase("dups", Constants.CREATE | Constants.DUPSORT);
+      new ResumableScan(env, dups, KeyRange.all()).hasNext();
+    } finally {
+      env.close();
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class TupleTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  DirectBuffer buffer = new DirectBuffer(ByteBuffer.allocateDirect(512));
+  TupleWriter writer = new TupleWriter();
+  TupleReader reader = new TupleReader();
+
+  @Test
+  public void testRoundTrip() {
+    int length = writer.wrap(buffer)
+      .writeInt(-7)
+      .writeLong(Long.MIN_VALUE)
+      .writeDouble(-0.5)
+      .writeBytes(new byte[]{0, 1, 0})
+      .beginTuple().writeUtf8("a\u0000é€😀").beginTuple().endTuple().endTuple()
+      .writeLong(42)
+      .position();
+
+    reader.wrap(buffer, 0, length);
+    assertThat(reader.nextType(), is(TupleType.INT));
+    assertThat(reader.readInt(), is(-7));
+    assertThat(reader.readLong(), is(Long.MIN_VALUE));
+    assertThat(reader.readDouble(), is(-0.5));
+    assertArrayEquals(new byte[]{0, 1, 0}, reader.readBytes());
+    reader.beginTuple();
+    assertThat(reader.readUtf8(), is("a\u0000é€😀"));
+    reader.beginTuple();
+    assertFalse(reader.hasNext());
+    reader.endTuple();
+    assertFalse(reader.hasNext());
+    reader.endTuple();
+    assertThat(reader.readLong(), is(42L));
+    assertFalse(reader.hasNext());
+
+    reader.wrap(buffer, 0, length);
+    reader.skip();
+    reader.skip();
+    reader.skip();
+    DirectBuffer dst = new DirectBuffer(ByteBuffer.allocateDirect(8));
+    assertThat(reader.readBytes(dst, 0), is(3));
+    assertThat(dst.getByte(1), is((byte) 1));
+    reader.skip();
+    assertThat(reader.readLong(), is(42L));
+
+    reader.wrap(buffer, 0, length);
+    try {
+      reader.readLong();
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testOrder() {
+    List<byte[]> keys = new ArrayList<>();
+    keys.add(key(writer.wrap(buffer).writeBytes(new byte[0])));
+    keys.add(key(writer.wrap(buffer).writeBytes(new byte[]{0})));
+    keys.add(key(writer.wrap(buffer).writeBytes(new byte[]{0, 0})));
+    keys.add(key(writer.wrap(buffer).writeBytes(new byte[]{1})));
+    keys.add(key(writer.wrap(buffer).writeUtf8("a")));
+    keys.add(key(writer.wrap(buffer).writeUtf8("a").writeInt(0)));
+    keys.add(key(writer.wrap(buffer).writeUtf8("ab")));
+    keys.add(key(writer.wrap(buffer).writeUtf8("￿")));
+    keys.add(key(writer.wrap(buffer).writeUtf8("😀")));
+    keys.add(key(writer.wrap(buffer).beginTuple().endTuple()));
+    keys.add(key(writer.wrap(buffer).beginTuple().writeInt(1).endTuple()));
+    keys.add(key(writer.wrap(buffer).beginTuple().writeInt(1).endTuple().writeInt(1)));
+    keys.add(key(writer.wrap(buffer).beginTuple().writeInt(2).endTuple()));
+    for (int i : new int[]{Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE}) {
+      keys.add(key(writer.wrap(buffer).writeInt(i)));
+    }
+    for (long l : new long[]{Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE}) {
+      keys.add(key(writer.wrap(buffer).writeLong(l)));
+    }
+    for (double d : new double[]{Double.NEGATIVE_INFINITY, -1.5, -Double.MIN_VALUE, -0.0, 0.0,
+      Double.MIN_VALUE, 1.5, Double.POSITIVE_INFINITY, Double.NaN}) {
+      keys.add(key(writer.wrap(buffer).writeDouble(d)));
+    }
+    for (int i = 1; i < keys.size(); i++) {
+      assertTrue("key " + i, compare(keys.get(i - 1), keys.get(i)) < 0);
+    }
+  }
+
+  @Test
+  public void testBufferCursor() throws IOException {
+    Env env = new Env(tmp.newFolder().getCanonicalPath());
+    Database db = env.openDatabase();
+    try (Transaction tx = env.createWriteTransaction();
+         BufferCursor cursor = db.bufferCursor(tx)) {
+      for (long id = -2; id <= 2; id++) {
+        cursor.keyWriteTuple().writeInt(7).writeUtf8("event").writeLong(id);
+        cursor.valWriteLong(id);
+        cursor.put();
+      }
+      tx.commit();
+    }
+    try (Transaction tx = env.createReadTransaction();
+         BufferCursor cursor = db.bufferCursor(tx)) {
+      long expected = -2;
+      for (boolean found = cursor.first(); found; found = cursor.next()) {
+        TupleReader key = cursor.keyReadTuple();
+        assertThat(key.readInt(), is(7));
+        key.skip();
+        assertThat(key.readLong(), is(expected));
+        assertFalse(key.hasNext());
+        expected++;
+      }
+      assertThat(expected, is(3L));
+
+      cursor.keyWriteTuple().writeInt(7).writeUtf8("event").writeLong(0);
+      assertTrue(cursor.seekKey());
+      assertThat(cursor.valLong(0), is(0L));
+    } finally {
+      db.close();
+      env.close();
+    }
+  }
+
+  private byte[] key(TupleWriter writer) {
+    byte[] key = new byte[writer.position()];
+    buffer.getBytes(0, key);
+    return key;
+  }
+
+  private static int compare(byte[] a, byte[] b) {
+    for (int i = 0; i < Math.min(a.length, b.length); i++) {
+      int diff = (a[i] & 0xff) - (b[i] & 0xff);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return a.length - b.length;
+  }
+}
@@ -0,0 +1,131 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.*;
+
+public class TypedDatabaseTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env(path);
+    db = env.openDatabase();
+  }
+
+  @After
+  public void after() {
+    db.close();
+    env.close();
+  }
+
+  @Test
+  public void testExactSize() {
+    TypedDatabase<String, String> typed = new TypedDatabase<>(db, ValueCodecs.UTF8, ValueCodecs.UTF8);
+    String value = "zürich €😀\ud800";
+    try (Transaction tx = env.createWriteTransaction()) {
+      typed.put(tx, "a", value);
+      typed.put(tx, "b", "");
+      assertFalse(typed.putIfAbsent(tx, "a", "other"));
+      assertTrue(typed.putIfAbsent(tx, "c", "other"));
+      tx.commit();
+    }
+    try (Transaction tx = env.createWriteTransaction()) {
+      assertThat(typed.get(tx, "a"), is("zürich €😀?"));
+      assertThat(typed.get(tx, "b"), is(""));
+      assertThat(typed.get(tx, "c"), is("other"));
+      assertThat(typed.get(tx, "d"), nullValue());
+      assertTrue(typed.delete(tx, "c"));
+      assertFalse(typed.delete(tx, "c"));
+      tx.commit();
+    }
+    assertArrayEquals("zürich €😀?".getBytes(StandardCharsets.UTF_8), db.get("a".getBytes()));
+  }
+
+  @Test
+  public void testEstimatedSize() {
+    // stores a long in as few bytes as it needs, with room for all 8
+    ValueCodec<Long> compact = new ValueCodec<Long>() {
+      @Override
+      public boolean isExactSize() {
+        return false;
+      }
+
+      @Override
+      public int encodedSize(Long value) {
+        return 8;
+      }
+
+      @Override
+      public int encode(Long value, DirectBuffer buffer) {
+        int length = 0;
+        for (long v = value; v != 0; v >>>= 8) {
+          buffer.putByte(length++, (byte) v);
+        }
+        return length;
+      }
+
+      @Override
+      public Long decode(DirectBuffer buffer) {
+        long value = 0;
+        for (int i = buffer.capacity() - 1; i >= 0; i--) {
+          value = value << 8 | buffer.getByte(i) & 0xff;
+        }
+        return value;
+      }
+    };
+    TypedDatabase<Long, Long> typed = new TypedDatabase<>(db, ValueCodecs.LONG, compact);
+    try (Transaction tx = env.createWriteTransaction()) {
+      typed.put(tx, 1L, 300L);
+      typed.put(tx, 2L, -1L);
+      assertFalse(typed.putIfAbsent(tx, 1L, 1L));
+      tx.commit();
+    }
+    try (Transaction tx = env.createReadTransaction()) {
+      assertThat(typed.get(tx, 1L), is(300L));
+      assertThat(typed.get(tx, 2L), is(-1L));
+    }
+    assertThat(db.get(Bytes.fromLong(1)).length, is(2));
+  }
+
+  @Test
+  public void testDupSort() throws IOException {
+    Env env = new Env();
+    env.setMaxDbs(2);
+    env.open(tmp.newFolder().getCanonicalPath());
+    try {
+      Database dups = env.openDatabase("dups", Constants.CREATE | Constants.DUPSORT);
+      TypedDatabase<String, Long> typed = new TypedDatabase<>(dups, ValueCodecs.UTF8, ValueCodecs.LONG);
+      try (Transaction tx = env.createWriteTransaction()) {
+        typed.put(tx, "a", 2L);
+        typed.put(tx, "a", 1L);
+        assertFalse(typed.putIfAbsent(tx, "a", 3L));
+        tx.commit();
+      }
+      try (Transaction tx = env.createReadTransaction()) {
+        assertThat(typed.get(tx, "a"), is(1L));
+        assertThat(dups.stat(tx).ms_entries, is(2L));
+      }
+    } finally {
+      env.close();
+    }
+  }
+}
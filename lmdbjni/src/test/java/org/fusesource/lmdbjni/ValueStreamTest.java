@@ -0,0 +1,122 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.*;
+
+public class ValueStreamTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+  byte[] data = new byte[3 * 1024 * 1024 + 17];
+  byte[] key = "blob".getBytes();
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env();
+    env.setMapSize(64 * 1024 * 1024);
+    env.open(path);
+    db = env.openDatabase();
+    new Random(7).nextBytes(data);
+  }
+
+  @After
+  public void after() {
+    db.close();
+    env.close();
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    try (Transaction tx = env.createWriteTransaction()) {
+      try (ValueOutputStream out = db.openValueOutputStream(tx, key, data.length)) {
+        out.write(data[0]);
+        out.write(data, 1, 1000);
+        out.write(ByteBuffer.wrap(data, 1001, data.length - 1001));
+        assertThat(out.remaining(), is(0));
+      }
+      tx.commit();
+    }
+    assertArrayEquals(data, db.get(key));
+
+    try (Transaction tx = env.createReadTransaction()) {
+      assertThat(db.openValueInputStream(tx, "missing".getBytes()), nullValue());
+      assertThat(db.getByteBuffer(tx, "missing".getBytes()), nullValue());
+
+      ByteBuffer view = db.getByteBuffer(tx, key);
+      assertTrue(view.isReadOnly());
+      assertThat(view.remaining(), is(data.length));
+      assertThat(view.get(data.length - 1), is(data[data.length - 1]));
+
+      byte[] copy = new byte[data.length];
+      try (InputStream in = db.openValueInputStream(tx, key)) {
+        assertThat(in.read(), is(data[0] & 0xff));
+        in.mark(0);
+        assertThat(in.skip(10), is(10L));
+        in.reset();
+        copy[0] = data[0];
+        int offset = 1;
+        for (int n; (n = in.read(copy, offset, Math.min(4096, copy.length - offset))) > 0; ) {
+          offset += n;
+        }
+        assertThat(offset, is(data.length));
+        assertThat(in.read(), is(-1));
+      }
+      assertArrayEquals(data, copy);
+
+      ByteBuffer dst = ByteBuffer.allocateDirect(data.length);
+      try (ReadableByteChannel channel = db.openValueInputStream(tx, key)) {
+        ByteBuffer chunk = ByteBuffer.allocate(65536);
+        while (channel.read(chunk) != -1) {
+          chunk.flip();
+          dst.put(chunk);
+          chunk.clear();
+        }
+      }
+      dst.flip();
+      assertThat(dst, is(ByteBuffer.wrap(data)));
+    }
+  }
+
+  @Test
+  public void testSizeMismatch() throws IOException {
+    try (Transaction tx = env.createWriteTransaction()) {
+      ValueOutputStream out = db.openValueOutputStream(tx, key, 4);
+      try {
+        out.write(new byte[5]);
+        fail();
+      } catch (IOException e) {
+        // expected
+      }
+      out.write(new byte[]{1, 2});
+      try {
+        out.close();
+        fail();
+      } catch (IOException e) {
+        // expected
+      }
+      assertFalse(out.isOpen());
+      tx.commit();
+    }
+    assertArrayEquals(new byte[]{1, 2, 0, 0}, db.get(key));
+  }
+}
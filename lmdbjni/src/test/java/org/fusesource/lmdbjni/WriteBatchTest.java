@@ -0,0 +1,114 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.fusesource.lmdbjni.Bytes.fromLong;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class WriteBatchTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env(path);
+    db = env.openDatabase();
+  }
+
+  @After
+  public void after() {
+    db.close();
+    env.close();
+  }
+
+  @Test
+  public void testPutAndDelete() {
+    db.put(fromLong(1), fromLong(1));
+    db.put(fromLong(2), fromLong(2));
+
+    DirectBuffer key = new DirectBuffer(ByteBuffer.allocateDirect(8));
+    DirectBuffer value = new DirectBuffer(ByteBuffer.allocateDirect(3));
+    key.putLong(0, 3);
+    value.putBytes(0, new byte[]{1, 2, 3});
+
+    WriteBatch batch = new WriteBatch(32);
+    batch.put(key, value);
+    batch.put(fromLong(1), fromLong(10), Constants.NOOVERWRITE);
+    batch.put(fromLong(4), new byte[0]);
+    batch.delete(fromLong(2));
+    batch.delete(fromLong(5));
+    assertThat(batch.size(), is(5));
+
+    assertThat(db.write(batch), is(2));
+    assertThat(batch.result(0), is(0));
+    assertThat(batch.result(1), is(LMDBException.KEYEXIST));
+    assertThat(batch.result(2), is(0));
+    assertThat(batch.result(3), is(0));
+    assertThat(batch.result(4), is(LMDBException.NOTFOUND));
+
+    assertArrayEquals(new byte[]{1, 2, 3}, db.get(Bytes.fromLong(0x0300000000000000L)));
+    assertArrayEquals(fromLong(1), db.get(fromLong(1)));
+    assertArrayEquals(new byte[0], db.get(fromLong(4)));
+    assertNull(db.get(fromLong(2)));
+
+    batch.clear();
+    assertThat(batch.size(), is(0));
+    batch.delete(fromLong(1), fromLong(1));
+    assertThat(db.write(batch), is(0));
+    assertNull(db.get(fromLong(1)));
+  }
+
+  @Test
+  public void testRecordLayout() {
+    int word = Unsafe.ADDRESS_SIZE;
+    WriteBatch batch = new WriteBatch();
+    batch.put(new byte[]{1, 2, 3}, new byte[]{4});
+    batch.delete(new byte[]{5, 6, 7, 8, 9});
+    int keyPadded = (3 + word - 1) / word * word;
+    int valuePadded = word;
+    int deletePadded = (5 + word - 1) / word * word;
+    assertThat(batch.length(), is(4 * word + keyPadded + valuePadded + 4 * word + deletePadded));
+
+    db.put(new byte[]{5, 6, 7, 8, 9}, new byte[]{1});
+    assertThat(db.write(batch), is(0));
+    assertArrayEquals(new byte[]{4}, db.get(new byte[]{1, 2, 3}));
+    assertNull(db.get(new byte[]{5, 6, 7, 8, 9}));
+  }
+
+  @Test
+  public void testGrow() {
+    WriteBatch batch = new WriteBatch(64);
+    for (int i = 0; i < 1000; i++) {
+      batch.put(fromLong(i), new byte[i % 13]);
+    }
+    try (Transaction tx = env.createWriteTransaction()) {
+      assertThat(db.write(tx, batch), is(0));
+      tx.commit();
+    }
+    assertThat(db.stat().ms_entries, is(1000L));
+    for (int i = 0; i < 1000; i++) {
+      assertThat(db.get(fromLong(i)).length, is(i % 13));
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testNoResult() {
+    new WriteBatch().put(fromLong(1), fromLong(1)).result(0);
+  }
+}
@@ -0,0 +1,121 @@
+package org.fusesource.lmdbjni;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.fusesource.lmdbjni.Bytes.fromLong;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.*;
+
+public class WriteCoordinatorTest {
+  static {
+    Setup.setLmdbLibraryPath();
+  }
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  Env env;
+  Database db;
+
+  @Before
+  public void before() throws IOException {
+    String path = tmp.newFolder().getCanonicalPath();
+    env = new Env();
+    env.open(path, Constants.NOSYNC);
+    db = env.openDatabase();
+  }
+
+  @After
+  public void after() {
+    db.close();
+    env.close();
+  }
+
+  @Test
+  public void testConcurrentWrites() throws Exception {
+    final WriteCoordinator coordinator = new WriteCoordinator(env, 64, 1024, 1, TimeUnit.MILLISECONDS);
+    final List<Future<Long>> futures = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      final int offset = t * 100;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = offset; i < offset + 100; i++) {
+            Future<Long> future = coordinator.submit(put(i), 16);
+            synchronized (futures) {
+              futures.add(future);
+            }
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long sum = 0;
+    for (Future<Long> future : futures) {
+      sum += future.get(10, TimeUnit.SECONDS);
+    }
+    assertThat(sum, is(399L * 400 / 2));
+    assertThat(db.stat().ms_entries, is(400L));
+    coordinator.close();
+  }
+
+  @Test
+  public void testFailedWriteIsRolledBack() throws Exception {
+    WriteCoordinator coordinator = new WriteCoordinator(env, 10, 1024, 100, TimeUnit.MILLISECONDS);
+    Future<Long> first = coordinator.submit(put(1));
+    Future<Long> failed = coordinator.submit(new WriteCoordinator.Write<Long>() {
+      @Override
+      public Long write(Transaction tx) {
+        db.put(tx, fromLong(2), fromLong(2));
+        throw new IllegalStateException("fail");
+      }
+    });
+    Future<Long> last = coordinator.submit(put(3));
+    coordinator.close();
+
+    assertThat(first.get(), is(1L));
+    assertThat(last.get(), is(3L));
+    try {
+      failed.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+    }
+    assertNull(db.get(fromLong(2)));
+    assertArrayEquals(fromLong(3), db.get(fromLong(3)));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSubmitAfterClose() {
+    WriteCoordinator coordinator = new WriteCoordinator(env);
+    coordinator.close();
+    coordinator.submit(put(1));
+  }
+
+  private WriteCoordinator.Write<Long> put(final long i) {
+    return new WriteCoordinator.Write<Long>() {
+      @Override
+      public Long write(Transaction tx) {
+        db.put(tx, fromLong(i), fromLong(i));
+        return i;
+      }
+    };
+  }
+}
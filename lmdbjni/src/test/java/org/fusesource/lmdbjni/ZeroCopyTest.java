@@ -17,6 +17,7 @@ import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class ZeroCopyTest {
   static {
@@ -72,6 +73,73 @@ public class ZeroCopyTest {
     }
   }
 
+  @Test
+  public void testDelete() throws Exception {
+    DirectBuffer key = new DirectBuffer(ByteBuffer.allocateDirect(8));
+    DirectBuffer value = new DirectBuffer(ByteBuffer.allocateDirect(8));
+    for (long i = 0; i < 3; i++) {
+      key.putLong(0, i);
+      value.putLong(0, i);
+      db.put(key, value);
+    }
+    try (Transaction tx = env.createWriteTransaction()) {
+      key.putLong(0, 0);
+      assertThat(db.delete(tx, key), is(true));
+      assertThat(db.delete(tx, key), is(false));
+      key.putLong(0, 1);
+      value.putLong(0, 1);
+      assertThat(db.delete(tx, key, value), is(true));
+      DirectBuffer heapKey = new DirectBuffer(new byte[8]);
+      heapKey.putLong(0, 2);
+      assertThat(db.delete(tx, heapKey), is(true));
+      tx.commit();
+    }
+    assertThat(db.stat().ms_entries, is(0L));
+  }
+
+  @Test
+  public void testGetMany() throws Exception {
+    k1.putLong(0, 10);
+    v1.putLong(0, 11);
+    k2.putLong(0, 12);
+    v2.putLong(0, 13);
+    db.put(k1, v1);
+    db.put(k2, v2);
+
+    DirectBuffer missing = new DirectBuffer();
+    missing.putLong(0, 14);
+    DirectBuffer[] keys = new DirectBuffer[]{k2, missing, k1};
+    DirectBuffer[] values = new DirectBuffer[]{new DirectBuffer(), new DirectBuffer(), new DirectBuffer()};
+
+    try (Transaction tx = env.createReadTransaction()) {
+      assertThat(db.getMany(tx, keys, values), is(2));
+      assertThat(values[0].getLong(0), is(13L));
+      assertThat(values[1].addressOffset(), is(0L));
+      assertThat(values[1].capacity(), is(0));
+      assertThat(values[2].getLong(0), is(11L));
+
+      DirectBuffer table = new DirectBuffer(ByteBuffer.allocateDirect(2 * 16));
+      DirectBuffer results = new DirectBuffer(ByteBuffer.allocateDirect(2 * 24));
+      table.putLong(0, missing.capacity());
+      table.putLong(8, missing.addressOffset());
+      table.putLong(16, k1.capacity());
+      table.putLong(24, k1.addressOffset());
+      assertThat(db.getMany(tx, table, results, 2), is(1));
+      assertThat(results.getLong(0), is(0L));
+      assertThat(results.getLong(24), is(1L));
+      assertThat(results.getLong(32), is((long) v1.capacity()));
+      DirectBuffer value = new DirectBuffer(results.getLong(40), (int) results.getLong(32));
+      assertThat(value.getLong(0), is(11L));
+
+      try {
+        db.getMany(tx, table, results, -1);
+        fail();
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
   @Test
   public void testCursorPutAndGet() throws Exception {
     k1.putLong(0, 14);